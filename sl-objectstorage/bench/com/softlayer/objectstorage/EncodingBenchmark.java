@@ -0,0 +1,102 @@
+package com.softlayer.objectstorage;
+
+import java.util.Hashtable;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.EncoderException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.restlet.resource.ClientResource;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * benchmarks of the work done on every request before it reaches the wire:
+ * encoding names into urls, building search queries and attaching headers.
+ * 
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+	private static final String ASCII_NAME = "photos/2012/holiday-001.jpg";
+	private static final String UNICODE_NAME =
+			"fotos/a\u00f1o nuevo/\u00e9t\u00e9 + \u65e5\u672c.jpg";
+
+	private Client client;
+
+	@Setup
+	public void setUp() {
+		client = new Client(new Session("http://127.0.0.1", "bench", "bench"));
+	}
+
+	@Benchmark
+	public String encodeAscii() throws EncoderException {
+		return client.saferUrlEncode(ASCII_NAME);
+	}
+
+	@Benchmark
+	public String encodeUnicode() throws EncoderException {
+		return client.saferUrlEncode(UNICODE_NAME);
+	}
+
+	@Benchmark
+	public String searchUrl() {
+		return Client.makeSearchUrl("holiday", Long.valueOf(100),
+				Long.valueOf(200), "name", "object", "json", null, true);
+	}
+
+	@Benchmark
+	public ClientResource headers() {
+		Hashtable<String, String> params = new Hashtable<String, String>();
+		params.put(Client.X_AUTH_TOKEN, "AUTH_tk0123456789abcdef0123456789ab");
+		params.put(Client.X_OBJECT_META + "owner", "bench");
+		params.put(Client.X_OBJECT_META + "camera", "x100");
+		params.put(Client.X_OBJECT_META + "taken", "2012-06-01");
+		ClientResource resource = new ClientResource(
+				"http://127.0.0.1/v1/AUTH_bench/bench/object");
+		Client.setCustomHttpHeader(params, resource);
+		return resource;
+	}
+
+}
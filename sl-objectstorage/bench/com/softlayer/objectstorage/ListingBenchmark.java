@@ -0,0 +1,105 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * benchmarks of listing containers and objects. Parsing a page is measured
+ * on its own and together with the round trip to a loopback server.
+ * 
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListingBenchmark {
+
+	@Param({ "1000", "10000" })
+	public int entries;
+
+	private LoopbackServer server;
+	private Session session;
+	private Container container;
+	private String page;
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new LoopbackServer(entries);
+		session = new Session(server.getBaseUrl(), "bench", "bench");
+		container = new Container(LoopbackServer.CONTAINER, session);
+		page = new String(LoopbackServer.containerListing(entries), "UTF-8");
+	}
+
+	@TearDown
+	public void tearDown() {
+		session.close();
+		server.stop();
+	}
+
+	@Benchmark
+	public List<ObjectEntry> parseObjectPage() throws IOException {
+		return container.parsePage(page);
+	}
+
+	@Benchmark
+	public int listObjects() {
+		int count = 0;
+		for (ObjectEntry entry : container.listObjects()) {
+			if (entry != null)
+				count++;
+		}
+		return count;
+	}
+
+	@Benchmark
+	public List<Container> listAllContainers() throws IOException {
+		return new Account(session).listAllContainers();
+	}
+
+}
@@ -0,0 +1,276 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * minimal object storage endpoint on the loopback interface for the
+ * benchmarks. It answers auth, account and container listings, and serves
+ * GET of "/bench/&lt;size&gt;" as size bytes of filler; uploaded bodies are
+ * read and thrown away, so only the client side is measured. Uploads and
+ * downloads carry the ETag of their bytes like swift's, so the client's
+ * integrity checks run as they would against a cluster, and a share of GETs
+ * can be failed to put the retry path under load too. Uploaded streams
+ * cannot be replayed, so PUTs are never failed.
+ * 
+ * 
+ */
+final class LoopbackServer {
+
+	static final String CONTAINER = "bench";
+	private static final String ACCOUNT_PATH = "/v1/AUTH_bench";
+
+	static {
+		// without it small responses wait out the peer's delayed ACK
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final byte[] accountListing;
+	private final byte[] containerListing;
+	private final byte[] filler = new byte[64 * 1024];
+	private final Map<Long, String> fillerEtags = new ConcurrentHashMap<Long, String>();
+	private final Random random = new Random(42);
+	private volatile double errorRate;
+
+	/**
+	 * constructor starting the server on a free port
+	 * 
+	 * @param entries
+	 *            number of containers and objects the listings return
+	 * @throws IOException
+	 */
+	LoopbackServer(int entries) throws IOException {
+		this.accountListing = accountListing(entries);
+		this.containerListing = containerListing(entries);
+		Arrays.fill(filler, (byte) 'x');
+		this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "loopback-server");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0),
+				64);
+		this.server.setExecutor(executor);
+		this.server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					LoopbackServer.this.handle(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		this.server.start();
+	}
+
+	/**
+	 * returns the url to pass to a session
+	 * 
+	 * @return the base url of the server
+	 */
+	String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * answer a random share of GETs with 503 before sending any body; the
+	 * random sequence is seeded so runs repeat
+	 * 
+	 * @param rate
+	 *            share of GETs to fail, between 0 and 1
+	 */
+	void setErrorRate(double rate) {
+		this.errorRate = rate;
+	}
+
+	/**
+	 * stop the server and its threads
+	 */
+	void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Utility for answering one request
+	 * 
+	 * @param exchange
+	 *            the request and its response
+	 * @throws IOException
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		String method = exchange.getRequestMethod();
+		String path = exchange.getRequestURI().getPath();
+		String query = exchange.getRequestURI().getRawQuery();
+
+		InputStream in = exchange.getRequestBody();
+		MessageDigest digest = Digests.md5();
+		byte[] buffer = new byte[64 * 1024];
+		for (int n; (n = in.read(buffer)) >= 0;)
+			digest.update(buffer, 0, n);
+
+		if (path.equals("/auth/v1.0")) {
+			exchange.getResponseHeaders().add("X-Auth-Token", "bench");
+			exchange.getResponseHeaders().add("X-Storage-Url",
+					getBaseUrl() + ACCOUNT_PATH);
+			empty(exchange, 204);
+		} else if (method.equals("PUT")) {
+			exchange.getResponseHeaders().add("ETag",
+					"\"" + Digests.hex(digest) + "\"");
+			empty(exchange, 201);
+		} else if (!method.equals("GET")) {
+			empty(exchange, 204);
+		} else if (errorRate > 0 && this.fail()) {
+			empty(exchange, 503);
+		} else if (path.equals(ACCOUNT_PATH)) {
+			body(exchange, accountListing);
+		} else if (path.equals(ACCOUNT_PATH + "/" + CONTAINER)) {
+			// every listing fits on the first page
+			body(exchange, query != null && query.contains("marker=")
+					? new byte[] { '[', ']' } : containerListing);
+		} else {
+			String name = path.substring(path.lastIndexOf('/') + 1);
+			long size = Long.parseLong(name);
+			exchange.getResponseHeaders().add("ETag",
+					"\"" + this.fillerEtag(size) + "\"");
+			exchange.sendResponseHeaders(200, size);
+			OutputStream out = exchange.getResponseBody();
+			for (long left = size; left > 0; left -= filler.length)
+				out.write(filler, 0, (int) Math.min(filler.length, left));
+		}
+	}
+
+	/**
+	 * Utility for deciding whether to fail a GET
+	 */
+	private synchronized boolean fail() {
+		return random.nextDouble() < errorRate;
+	}
+
+	/**
+	 * Utility for the MD5 of size bytes of filler, worked out once per size
+	 */
+	private String fillerEtag(long size) {
+		String etag = fillerEtags.get(size);
+		if (etag == null) {
+			MessageDigest digest = Digests.md5();
+			for (long left = size; left > 0; left -= filler.length)
+				digest.update(filler, 0, (int) Math.min(filler.length, left));
+			etag = Digests.hex(digest);
+			fillerEtags.put(size, etag);
+		}
+		return etag;
+	}
+
+	/**
+	 * Utility for sending a response without a body
+	 */
+	private static void empty(HttpExchange exchange, int status)
+			throws IOException {
+		exchange.getResponseHeaders().add("Content-Length", "0");
+		exchange.sendResponseHeaders(status, -1);
+	}
+
+	/**
+	 * Utility for sending a response with a fixed body
+	 */
+	private static void body(HttpExchange exchange, byte[] body)
+			throws IOException {
+		exchange.sendResponseHeaders(200, body.length);
+		exchange.getResponseBody().write(body);
+	}
+
+	/**
+	 * Utility for building a plain text account listing
+	 * 
+	 * @param entries
+	 *            number of containers
+	 * @return the listing body
+	 */
+	private static byte[] accountListing(int entries) {
+		StringBuilder listing = new StringBuilder();
+		for (int i = 0; i < entries; i++)
+			listing.append("container-").append(i).append('\n');
+		return listing.toString().getBytes();
+	}
+
+	/**
+	 * Utility for building a JSON container listing
+	 * 
+	 * @param entries
+	 *            number of objects
+	 * @return the listing body
+	 */
+	static byte[] containerListing(int entries) {
+		try {
+			JSONArray listing = new JSONArray();
+			for (int i = 0; i < entries; i++) {
+				JSONObject entry = new JSONObject();
+				entry.put("name", String.format("photos/2012/%06d.jpg", i));
+				entry.put("hash", "d41d8cd98f00b204e9800998ecf8427e");
+				entry.put("bytes", 1024L * i);
+				entry.put("content_type", i % 2 == 0 ? "image/jpeg"
+						: "application/octet-stream");
+				entry.put("last_modified", "2012-06-01T12:00:00.000000");
+				listing.put(entry);
+			}
+			return listing.toString().getBytes("UTF-8");
+		} catch (JSONException e) {
+			throw new IllegalStateException(e);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,148 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.codec.EncoderException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * benchmarks of streaming uploads and downloads through a loopback server.
+ * Scores are milliseconds per object, throughput is the size divided by the
+ * score. Bodies are generated and discarded on the fly so even the largest
+ * size runs in a small heap. Every transfer is checked against the ETag the
+ * server sends, and with a non-zero error rate some downloads are retried.
+ * 
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferBenchmark {
+
+	@Param({ "1024", "1048576", "1073741824" })
+	public long size;
+
+	@Param({ "0", "0.05" })
+	public double errorRate;
+
+	private LoopbackServer server;
+	private Session session;
+	private final Map<String, String> tags = new HashMap<String, String>();
+
+	@Setup
+	public void setUp() throws IOException {
+		server = new LoopbackServer(0);
+		server.setErrorRate(errorRate);
+		session = new Session(server.getBaseUrl(), "bench", "bench");
+	}
+
+	@TearDown
+	public void tearDown() {
+		session.close();
+		server.stop();
+	}
+
+	@Benchmark
+	public String upload() throws EncoderException, IOException {
+		return new ObjectFile(String.valueOf(size), LoopbackServer.CONTAINER,
+				session).uploadStream(new FillerInputStream(size), size, tags);
+	}
+
+	@Benchmark
+	public long download() throws EncoderException, IOException {
+		return new ObjectFile(String.valueOf(size), LoopbackServer.CONTAINER,
+				session).downloadTo(new NullOutputStream());
+	}
+
+	/**
+	 * stream of a fixed number of filler bytes
+	 */
+	private static final class FillerInputStream extends InputStream {
+		private long left;
+
+		FillerInputStream(long size) {
+			this.left = size;
+		}
+
+		@Override
+		public int read() {
+			if (left <= 0)
+				return -1;
+			left--;
+			return 'x';
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (left <= 0)
+				return -1;
+			int n = (int) Math.min(len, left);
+			Arrays.fill(b, off, off + n, (byte) 'x');
+			left -= n;
+			return n;
+		}
+	}
+
+	/**
+	 * stream that discards everything written to it
+	 */
+	private static final class NullOutputStream extends OutputStream {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+
+}
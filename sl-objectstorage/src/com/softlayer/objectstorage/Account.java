@@ -1,14 +1,18 @@
 package com.softlayer.objectstorage;
 
+import java.util.Arrays;
 import java.util.List;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Hashtable;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.lang.text.StrTokenizer;
 
+import org.restlet.data.Status;
 import org.restlet.representation.Representation;
 import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
 
 /**
  * Unless otherwise noted, all files are released under the MIT license,
@@ -49,8 +53,7 @@ import org.restlet.resource.ClientResource;
  */
 public class Account extends Client {
 
-	String username;
-	String password;
+	private static final int DEFAULT_STATS_THREADS = 8;
 
 	/**
 	 * constructor for setting up an account object
@@ -66,11 +69,20 @@ public class Account extends Client {
 	public Account(String baseUrl, String username, String password)
 			throws IOException {
 		super(baseUrl, username, password, true);
-		this.username = username;
-		this.password = password;
 
 	}
 
+	/**
+	 * constructor for an account object on an existing session
+	 * 
+	 * @param session
+	 *            the session to share with every container made from this
+	 *            account
+	 */
+	public Account(Session session) {
+		super(session);
+	}
+
 	/**
 	 * list all containers on this account
 	 * 
@@ -79,7 +91,7 @@ public class Account extends Client {
 	 */
 	public List<Container> listAllContainers() throws IOException {
 		Hashtable<String, String> params = super.createAuthParams();
-		ClientResource client = super.get(params, super.storageurl);
+		ClientResource client = super.list(params, session.getStorageUrl());
 		Representation entity = client.getResponseEntity();
 		String containers = entity.getText();
 		StrTokenizer tokenize = new StrTokenizer(containers);
@@ -88,8 +100,7 @@ public class Account extends Client {
 		ArrayList<Container> conts = new ArrayList<Container>();
 		for (String token : cont) {
 
-			conts.add(new Container(token, super.baseurl, this.username,
-					this.password, false));
+			conts.add(new Container(token, session));
 
 		}
 
@@ -97,6 +108,59 @@ public class Account extends Client {
 
 	}
 
+	/**
+	 * add up the statistics of every container in this account, see
+	 * {@link #getStats(int)}
+	 * 
+	 * @return the totals and the statistics of each container
+	 * @throws IOException
+	 */
+	public AccountStats getStats() throws IOException {
+		return this.getStats(DEFAULT_STATS_THREADS);
+	}
+
+	/**
+	 * add up the statistics of every container in this account. The
+	 * containers are listed, then each one is sent a HEAD request, several at
+	 * a time; no object is listed or downloaded. A container removed while
+	 * this runs is left out.
+	 * 
+	 * @param threads
+	 *            number of HEAD requests sent at the same time
+	 * @return the totals and the statistics of each container
+	 * @throws IOException
+	 */
+	public AccountStats getStats(int threads) throws IOException {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1");
+		List<Container> containers = this.listAllContainers();
+		final ContainerStats[] stats = new ContainerStats[containers.size()];
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(
+				containers.size());
+		for (int i = 0; i < stats.length; i++) {
+			final int index = i;
+			final Container container = containers.get(i);
+			tasks.add(new Callable<Void>() {
+				public Void call() throws IOException {
+					try {
+						stats[index] = container.getStats();
+					} catch (ResourceException e) {
+						if (!Status.CLIENT_ERROR_NOT_FOUND.equals(e
+								.getStatus()))
+							throw e;
+					}
+					return null;
+				}
+			});
+		}
+		Tasks.runAll(tasks, threads);
+
+		List<ContainerStats> found = new ArrayList<ContainerStats>(
+				Arrays.asList(stats));
+		found.removeAll(Arrays.asList((ContainerStats) null));
+		return new AccountStats(found);
+	}
+
 	/**
 	 * list all CDN enabled containers for this account
 	 * 
@@ -106,7 +170,7 @@ public class Account extends Client {
 	public List<Container> listAllCDNContainers() throws IOException {
 		Hashtable<String, String> params = super.createAuthParams();
 		params.put(X_CONTENT, "cdn");
-		ClientResource client = super.get(params, super.storageurl);
+		ClientResource client = super.list(params, session.getStorageUrl());
 		Representation entity = client.getResponseEntity();
 		String containers = entity.getText();
 		StrTokenizer tokenize = new StrTokenizer(containers);
@@ -115,8 +179,7 @@ public class Account extends Client {
 		ArrayList<Container> conts = new ArrayList<Container>();
 		for (String token : cont) {
 
-			conts.add(new Container(token, super.baseurl, this.username,
-					this.password, false));
+			conts.add(new Container(token, session));
 
 		}
 
@@ -133,7 +196,7 @@ public class Account extends Client {
 	public List<String> listCDNUrls() throws IOException {
 		Hashtable<String, String> params = super.createAuthParams();
 		params.put(X_CONTENT, "cdn");
-		ClientResource client = super.head(params, super.storageurl);
+		ClientResource client = super.head(params, session.getStorageUrl());
 		ArrayList<String> urls = new ArrayList<String>();
 		urls.add(getCustomHttpHeader(X_CDN_URL, client));
 		urls.add(getCustomHttpHeader(X_CDN_SSL_URL, client));
@@ -152,8 +215,7 @@ public class Account extends Client {
 	 */
 	public Container getContainer(String containerName) throws IOException {
 
-		Container container = new Container(containerName, super.baseurl,
-				this.username, this.password, false);
+		Container container = new Container(containerName, session);
 
 		return container;
 	}
@@ -186,7 +248,7 @@ public class Account extends Client {
 
 		Hashtable<String, String> params = super.createAuthParams();
 		params.put(X_CONTEXT, "search");
-		String url = super.storageurl
+		String url = session.getStorageUrl()
 				+ super.makeSearchUrl(query, limit, start, field, type, format,
 						marker, recursive);
 
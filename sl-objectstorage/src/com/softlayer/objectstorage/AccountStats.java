@@ -0,0 +1,107 @@
+package com.softlayer.objectstorage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * totals for an account, added up from the statistics of each of its
+ * containers.
+ * 
+ * 
+ */
+public final class AccountStats {
+
+	private final List<ContainerStats> containers;
+	private final long objectCount;
+	private final long bytesUsed;
+
+	/**
+	 * constructor adding up the statistics of every container
+	 * 
+	 * @param containers
+	 *            the statistics of each container, in name order
+	 */
+	AccountStats(List<ContainerStats> containers) {
+		this.containers = Collections.unmodifiableList(containers);
+		long objects = 0;
+		long bytes = 0;
+		for (ContainerStats stats : containers) {
+			objects += Math.max(0, stats.getObjectCount());
+			bytes += Math.max(0, stats.getBytesUsed());
+		}
+		this.objectCount = objects;
+		this.bytesUsed = bytes;
+	}
+
+	/**
+	 * returns the number of containers in the account
+	 * 
+	 * @return the container count
+	 */
+	public int getContainerCount() {
+		return containers.size();
+	}
+
+	/**
+	 * returns the number of objects in all containers
+	 * 
+	 * @return the object count
+	 */
+	public long getObjectCount() {
+		return objectCount;
+	}
+
+	/**
+	 * returns the bytes used by all containers
+	 * 
+	 * @return bytes used
+	 */
+	public long getBytesUsed() {
+		return bytesUsed;
+	}
+
+	/**
+	 * returns the statistics of each container
+	 * 
+	 * @return the statistics in container name order
+	 */
+	public List<ContainerStats> getContainers() {
+		return containers;
+	}
+
+	@Override
+	public String toString() {
+		return containers.size() + " containers, " + objectCount
+				+ " objects, " + bytesUsed + " bytes";
+	}
+
+}
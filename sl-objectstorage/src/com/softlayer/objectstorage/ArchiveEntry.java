@@ -0,0 +1,155 @@
+package com.softlayer.objectstorage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * one object of a BulkUpload: its name in the container and where its
+ * content comes from. A file is only opened while its archive is being
+ * sent; a stream is read once and closed when it has been written.
+ * 
+ * 
+ */
+public final class ArchiveEntry {
+
+	private final String name;
+	private final File file;
+	private final InputStream in;
+	private final long size;
+	private final long lastModified;
+
+	/**
+	 * constructor for an entry read from a local file
+	 * 
+	 * @param name
+	 *            the object name
+	 * @param file
+	 *            the local file
+	 */
+	public ArchiveEntry(String name, File file) {
+		if (name == null || name.length() == 0)
+			throw new IllegalArgumentException("name is required");
+		this.name = name;
+		this.file = file;
+		this.in = null;
+		this.size = file.length();
+		this.lastModified = file.lastModified();
+	}
+
+	/**
+	 * constructor for an entry read from a stream
+	 * 
+	 * @param name
+	 *            the object name
+	 * @param in
+	 *            the content, closed once written
+	 * @param size
+	 *            number of bytes in the stream, or -1 to read it ahead
+	 *            first, into memory if small and a temporary file otherwise
+	 */
+	public ArchiveEntry(String name, InputStream in, long size) {
+		if (name == null || name.length() == 0)
+			throw new IllegalArgumentException("name is required");
+		this.name = name;
+		this.file = null;
+		this.in = in;
+		this.size = size;
+		this.lastModified = System.currentTimeMillis();
+	}
+
+	/**
+	 * returns the object name
+	 * 
+	 * @return the name in the container
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * returns the size of the content
+	 * 
+	 * @return size in bytes, or -1 if not known in advance
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * returns when the content was last modified
+	 * 
+	 * @return milliseconds since the epoch
+	 */
+	long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * returns whether the content can be read more than once
+	 * 
+	 * @return true for a file
+	 */
+	boolean isReplayable() {
+		return file != null;
+	}
+
+	/**
+	 * open the content for writing into an archive
+	 * 
+	 * @return the content, to be closed by the caller
+	 * @throws IOException
+	 */
+	InputStream open() throws IOException {
+		return file != null ? new FileInputStream(file) : in;
+	}
+
+	/**
+	 * close a stream that was never written, a file needs nothing
+	 */
+	void release() {
+		if (in == null)
+			return;
+		try {
+			in.close();
+		} catch (IOException e) {
+			Client.logger.debug("could not close " + name, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,241 @@
+package com.softlayer.objectstorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * asynchronous view of a container on the objectstorage server. Every method
+ * returns at once with a Future and, if a callback is given, reports the
+ * outcome to it as well. Calls run and are limited as configured on the
+ * session.
+ * 
+ * 
+ */
+public class AsyncContainer {
+
+	private final String name;
+	private final Session session;
+
+	/**
+	 * constructor for an asynchronous container handle on an existing
+	 * session
+	 * 
+	 * @param name
+	 *            the name of the server side objectstorage container
+	 * @param session
+	 *            the session to make calls with
+	 */
+	public AsyncContainer(String name, Session session) {
+		this.name = name;
+		this.session = session;
+	}
+
+	/**
+	 * returns the name of this container on the objectstorage server
+	 * 
+	 * @return the container name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * returns an asynchronous handle on a file in this container, no call is
+	 * made
+	 * 
+	 * @param fileName
+	 *            the name of the file
+	 * @return the file handle
+	 */
+	public AsyncObjectFile getObjectFile(String fileName) {
+		return new AsyncObjectFile(fileName, name, session);
+	}
+
+	/**
+	 * create this container on the server
+	 * 
+	 * @param callback
+	 *            told when the container exists, may be null
+	 * @return the pending creation
+	 */
+	public Future<Void> create(Callback<? super Void> callback) {
+		return this.submit(new Call<Void>() {
+			Void call(Container container) throws Exception {
+				container.create();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * remove this container from the server
+	 * 
+	 * @param callback
+	 *            told when the container is removed, may be null
+	 * @return the pending removal
+	 */
+	public Future<Void> remove(Callback<? super Void> callback) {
+		return this.submit(new Call<Void>() {
+			Void call(Container container) throws Exception {
+				container.remove();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * list the objects in this container, see
+	 * {@link Container#listObjects(String, String)}; all pages are collected
+	 * before the result is handed over
+	 * 
+	 * @param prefix
+	 *            only list names starting with this, or null for all
+	 * @param delimiter
+	 *            roll names up to the first delimiter after the prefix into
+	 *            directory entries, or null to list every object
+	 * @param callback
+	 *            told the entries, may be null
+	 * @return the pending entries
+	 */
+	public Future<List<ObjectEntry>> listObjects(final String prefix,
+			final String delimiter,
+			Callback<? super List<ObjectEntry>> callback) {
+		return this.submit(new Call<List<ObjectEntry>>() {
+			List<ObjectEntry> call(Container container) throws Exception {
+				List<ObjectEntry> entries = new ArrayList<ObjectEntry>();
+				for (ObjectEntry entry : container.listObjects(prefix,
+						delimiter))
+					entries.add(entry);
+				return entries;
+			}
+		}, callback);
+	}
+
+	/**
+	 * enable CDN access to the files in this container
+	 * 
+	 * @param ttl
+	 *            the ttl for the CDN objects in this container
+	 * @param callback
+	 *            told when CDN is enabled, may be null
+	 * @return the pending change
+	 */
+	public Future<Void> enableCDN(final Integer ttl,
+			Callback<? super Void> callback) {
+		return this.submit(new Call<Void>() {
+			Void call(Container container) throws Exception {
+				container.enableCDN(ttl);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * update the CDN ttl of this container
+	 * 
+	 * @param ttl
+	 *            the new ttl for the CDN objects in this container
+	 * @param callback
+	 *            told when the ttl is updated, may be null
+	 * @return the pending change
+	 */
+	public Future<Void> updateCDNTTL(final int ttl,
+			Callback<? super Void> callback) {
+		return this.submit(new Call<Void>() {
+			Void call(Container container) throws Exception {
+				container.updateCDNTTL(ttl);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * disable CDN access to the files in this container
+	 * 
+	 * @param callback
+	 *            told when CDN is disabled, may be null
+	 * @return the pending change
+	 */
+	public Future<Void> disableCDN(Callback<? super Void> callback) {
+		return this.submit(new Call<Void>() {
+			Void call(Container container) throws Exception {
+				container.disableCDN();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * purge this container from CDN
+	 * 
+	 * @param callback
+	 *            told when the purge is done, may be null
+	 * @return the pending purge
+	 */
+	public Future<Void> purgeCDN(Callback<? super Void> callback) {
+		return this.submit(new Call<Void>() {
+			Void call(Container container) throws Exception {
+				container.purgeCDN();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Utility for running a call on a fresh Container through the session
+	 * dispatcher
+	 * 
+	 * @param call
+	 *            the work to do
+	 * @param callback
+	 *            told the outcome, may be null
+	 * @return the pending result
+	 */
+	private <T> Future<T> submit(final Call<T> call,
+			Callback<? super T> callback) {
+		return session.getDispatcher().submit(new Callable<T>() {
+			public T call() throws Exception {
+				return call.call(new Container(name, session));
+			}
+		}, callback);
+	}
+
+	/**
+	 * one operation on a container
+	 */
+	private abstract static class Call<T> {
+		abstract T call(Container container) throws Exception;
+	}
+
+}
@@ -0,0 +1,236 @@
+package com.softlayer.objectstorage;
+
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * runs the asynchronous calls of a session. Calls beyond the in-flight limit
+ * wait in a queue instead of holding a thread, so any number of them can be
+ * submitted without exhausting sockets. By default calls run on virtual
+ * threads when the runtime has them and on the session's daemon pool
+ * otherwise.
+ * 
+ * 
+ */
+class AsyncDispatcher {
+
+	static final int DEFAULT_MAX_IN_FLIGHT = 64;
+
+	private final Session session;
+	private final Queue<AsyncTask<?>> queue = new ConcurrentLinkedQueue<AsyncTask<?>>();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private volatile int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+	private volatile Executor executor;
+	private ExecutorService virtualThreads;
+	private boolean virtualThreadsChecked;
+
+	/**
+	 * constructor for the dispatcher of a session
+	 * 
+	 * @param session
+	 *            the session whose pool is used when there are no virtual
+	 *            threads
+	 */
+	AsyncDispatcher(Session session) {
+		this.session = session;
+	}
+
+	/**
+	 * set the executor calls run on, null to go back to the default
+	 * 
+	 * @param executor
+	 *            the executor to use
+	 */
+	void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * set how many calls may run at the same time
+	 * 
+	 * @param max
+	 *            calls in flight
+	 */
+	void setMaxInFlight(int max) {
+		if (max <= 0)
+			throw new IllegalArgumentException(
+					"max in flight must be positive");
+		this.maxInFlight = max;
+		this.drain();
+	}
+
+	/**
+	 * queue a call
+	 * 
+	 * @param call
+	 *            the call to run
+	 * @param callback
+	 *            told the outcome of the call, may be null
+	 * @return the pending result of the call
+	 */
+	<T> Future<T> submit(Callable<T> call, Callback<? super T> callback) {
+		AsyncTask<T> task = new AsyncTask<T>(call, callback);
+		queue.add(task);
+		this.drain();
+		return task;
+	}
+
+	/**
+	 * stop the default virtual thread executor, if one was started
+	 */
+	synchronized void stop() {
+		if (virtualThreads != null) {
+			virtualThreads.shutdownNow();
+			virtualThreads = null;
+		}
+		virtualThreadsChecked = false;
+	}
+
+	/**
+	 * Utility for starting queued calls while there is room for them
+	 */
+	private void drain() {
+		while (!queue.isEmpty()) {
+			int n = inFlight.get();
+			if (n >= maxInFlight)
+				return;
+			if (!inFlight.compareAndSet(n, n + 1))
+				continue;
+			final AsyncTask<?> task = queue.poll();
+			if (task == null) {
+				// another thread took it, give the slot back and look again
+				inFlight.decrementAndGet();
+				continue;
+			}
+			try {
+				this.getExecutor().execute(new Runnable() {
+					public void run() {
+						try {
+							task.run();
+						} finally {
+							inFlight.decrementAndGet();
+							drain();
+						}
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				inFlight.decrementAndGet();
+				task.fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Utility for picking the executor to run a call on
+	 * 
+	 * @return the configured executor or the default one
+	 */
+	private Executor getExecutor() {
+		Executor configured = executor;
+		if (configured != null)
+			return configured;
+		synchronized (this) {
+			if (!virtualThreadsChecked) {
+				virtualThreads = newVirtualThreadExecutor();
+				virtualThreadsChecked = true;
+			}
+			if (virtualThreads != null)
+				return virtualThreads;
+		}
+		return session.getExecutor();
+	}
+
+	/**
+	 * Utility for creating a virtual thread per task executor on runtimes
+	 * that have one, looked up reflectively so the library still runs on
+	 * older ones
+	 * 
+	 * @return the executor, or null if virtual threads are not available
+	 */
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod(
+					"newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	/**
+	 * a queued call that reports its outcome to a callback
+	 */
+	private static final class AsyncTask<T> extends FutureTask<T> {
+
+		private final Callback<? super T> callback;
+
+		AsyncTask(Callable<T> call, Callback<? super T> callback) {
+			super(call);
+			this.callback = callback;
+		}
+
+		void fail(Throwable error) {
+			setException(error);
+		}
+
+		@Override
+		protected void done() {
+			if (callback == null)
+				return;
+			T result;
+			try {
+				result = get();
+			} catch (CancellationException e) {
+				callback.onFailure(e);
+				return;
+			} catch (ExecutionException e) {
+				callback.onFailure(e.getCause());
+				return;
+			} catch (InterruptedException e) {
+				// cannot happen, the task is done
+				Thread.currentThread().interrupt();
+				return;
+			}
+			callback.onSuccess(result);
+		}
+	}
+
+}
@@ -0,0 +1,252 @@
+package com.softlayer.objectstorage;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * asynchronous view of a file on the objectstorage server. Every method
+ * returns at once with a Future and, if a callback is given, reports the
+ * outcome to it as well. Each call works on its own ObjectFile so calls on
+ * the same file can safely run at the same time; they run and are limited
+ * as configured on the session.
+ * 
+ * 
+ */
+public class AsyncObjectFile {
+
+	private final String name;
+	private final Container container;
+	private final Session session;
+
+	/**
+	 * constructor for an asynchronous file handle on an existing session
+	 * 
+	 * @param name
+	 *            the name of the server side objectstorage object
+	 * @param containerName
+	 *            the name of the container this object resides in
+	 * @param session
+	 *            the session to make calls with
+	 */
+	public AsyncObjectFile(String name, String containerName, Session session) {
+		this(name, new Container(containerName, session));
+	}
+
+	/**
+	 * constructor for an asynchronous file handle sharing a container
+	 * handle's session and encoded url prefix
+	 * 
+	 * @param name
+	 *            the name of the server side objectstorage object
+	 * @param container
+	 *            the container this object resides in
+	 */
+	AsyncObjectFile(String name, Container container) {
+		this.name = name;
+		this.container = container;
+		this.session = container.getSession();
+	}
+
+	/**
+	 * returns the name of this file on the objectstorage server
+	 * 
+	 * @return the file name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * upload this file from a local file, see
+	 * {@link ObjectFile#uploadFile(File, Map)}
+	 * 
+	 * @param file
+	 *            the local file
+	 * @param tags
+	 *            Map of tags to attach to this file
+	 * @param callback
+	 *            told the etag value of the upload, may be null
+	 * @return the pending etag value of the upload
+	 */
+	public Future<String> uploadFile(final File file, Map<String, String> tags,
+			Callback<? super String> callback) {
+		final Map<String, String> copy = new HashMap<String, String>(tags);
+		return this.submit(new Call<String>() {
+			String call(ObjectFile objectFile) throws Exception {
+				return objectFile.uploadFile(file, copy);
+			}
+		}, callback);
+	}
+
+	/**
+	 * upload this file from a stream, see
+	 * {@link ObjectFile#uploadStream(InputStream, long, Map)}
+	 * 
+	 * @param in
+	 *            the stream to upload
+	 * @param length
+	 *            the number of bytes in the stream, or -1 if unknown
+	 * @param tags
+	 *            Map of tags to attach to this file
+	 * @param callback
+	 *            told the etag value of the upload, may be null
+	 * @return the pending etag value of the upload
+	 */
+	public Future<String> uploadStream(final InputStream in, final long length,
+			Map<String, String> tags, Callback<? super String> callback) {
+		final Map<String, String> copy = new HashMap<String, String>(tags);
+		return this.submit(new Call<String>() {
+			String call(ObjectFile objectFile) throws Exception {
+				return objectFile.uploadStream(in, length, copy);
+			}
+		}, callback);
+	}
+
+	/**
+	 * download this file into a local file, see
+	 * {@link ObjectFile#downloadTo(File)}
+	 * 
+	 * @param file
+	 *            the local file to write
+	 * @param callback
+	 *            told the number of bytes written, may be null
+	 * @return the pending number of bytes written
+	 */
+	public Future<Long> downloadTo(final File file,
+			Callback<? super Long> callback) {
+		return this.submit(new Call<Long>() {
+			Long call(ObjectFile objectFile) throws Exception {
+				return objectFile.downloadTo(file);
+			}
+		}, callback);
+	}
+
+	/**
+	 * download this file into memory, see {@link ObjectFile#getBytes()}
+	 * 
+	 * @param callback
+	 *            told the content of the file, may be null
+	 * @return the pending content of the file
+	 */
+	public Future<byte[]> getBytes(Callback<? super byte[]> callback) {
+		return this.submit(new Call<byte[]>() {
+			byte[] call(ObjectFile objectFile) throws Exception {
+				return objectFile.getBytes();
+			}
+		}, callback);
+	}
+
+	/**
+	 * make this file a copy of another file, see
+	 * {@link ObjectFile#copyFrom(String, String)}
+	 * 
+	 * @param container
+	 *            the source container to copy from
+	 * @param objectName
+	 *            the source file to copy from
+	 * @param callback
+	 *            told when the copy is done, may be null
+	 * @return the pending copy
+	 */
+	public Future<Void> copyFrom(final String container,
+			final String objectName, Callback<? super Void> callback) {
+		return this.submit(new Call<Void>() {
+			Void call(ObjectFile objectFile) throws Exception {
+				objectFile.copyFrom(container, objectName);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * remove this file from the objectstorage server
+	 * 
+	 * @param callback
+	 *            told when the file is removed, may be null
+	 * @return the pending removal
+	 */
+	public Future<Void> remove(Callback<? super Void> callback) {
+		return this.submit(new Call<Void>() {
+			Void call(ObjectFile objectFile) throws Exception {
+				objectFile.remove();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * purge this file from CDN
+	 * 
+	 * @param callback
+	 *            told when the purge is done, may be null
+	 * @return the pending purge
+	 */
+	public Future<Void> purgeCDN(Callback<? super Void> callback) {
+		return this.submit(new Call<Void>() {
+			Void call(ObjectFile objectFile) throws Exception {
+				objectFile.purgeCDN();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * Utility for running a call on a fresh ObjectFile through the session
+	 * dispatcher
+	 * 
+	 * @param call
+	 *            the work to do
+	 * @param callback
+	 *            told the outcome, may be null
+	 * @return the pending result
+	 */
+	private <T> Future<T> submit(final Call<T> call,
+			Callback<? super T> callback) {
+		return session.getDispatcher().submit(new Callable<T>() {
+			public T call() throws Exception {
+				return call.call(new ObjectFile(name, container));
+			}
+		}, callback);
+	}
+
+	/**
+	 * one operation on a file
+	 */
+	private abstract static class Call<T> {
+		abstract T call(ObjectFile objectFile) throws Exception;
+	}
+
+}
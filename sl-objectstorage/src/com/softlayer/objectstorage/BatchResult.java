@@ -0,0 +1,107 @@
+package com.softlayer.objectstorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * outcome of an operation applied to many objects: which objects it
+ * succeeded on and why it failed on the others. One failure does not stop
+ * the rest of the batch.
+ * 
+ * 
+ */
+public final class BatchResult {
+
+	private final List<String> succeeded = Collections
+			.synchronizedList(new ArrayList<String>());
+	private final Map<String, Exception> failures = Collections
+			.synchronizedMap(new TreeMap<String, Exception>());
+
+	/**
+	 * constructor for the result of a new batch
+	 */
+	BatchResult() {
+	}
+
+	/**
+	 * returns whether the operation succeeded on every object
+	 * 
+	 * @return true if there were no failures
+	 */
+	public boolean isSuccess() {
+		return failures.isEmpty();
+	}
+
+	/**
+	 * returns the names of the objects the operation succeeded on
+	 * 
+	 * @return a copy of the list, in completion order
+	 */
+	public List<String> getSucceeded() {
+		synchronized (succeeded) {
+			return new ArrayList<String>(succeeded);
+		}
+	}
+
+	/**
+	 * returns the objects the operation failed on and why
+	 * 
+	 * @return a copy of the failures by name, empty if all went well
+	 */
+	public Map<String, Exception> getFailures() {
+		synchronized (failures) {
+			return new TreeMap<String, Exception>(failures);
+		}
+	}
+
+	void succeeded(String name) {
+		succeeded.add(name);
+	}
+
+	void failed(String name, Exception e) {
+		failures.put(name, e);
+	}
+
+	void addAll(BatchResult other) {
+		succeeded.addAll(other.getSucceeded());
+		failures.putAll(other.getFailures());
+	}
+
+	@Override
+	public String toString() {
+		return "succeeded " + succeeded.size() + ", failed " + failures.size();
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * hands a request body from the thread writing it to the thread sending it,
+ * a few chunks at a time so neither side holds the whole body. Unlike a
+ * PipedInputStream it does not care which pool threads end up reading, and
+ * either side can be aborted when the exchange fails so the other is not
+ * left waiting.
+ * 
+ * 
+ */
+final class BodyPipe {
+
+	private static final int CHUNKS = 4;
+	private static final byte[] END = new byte[0];
+	private static final long POLL_MILLIS = 100;
+
+	private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<byte[]>(
+			CHUNKS);
+	private volatile boolean aborted;
+
+	/**
+	 * give up on the body, both ends fail from now on
+	 */
+	void abort() {
+		aborted = true;
+	}
+
+	/**
+	 * returns the end the body is written to, closing it ends the body
+	 * 
+	 * @return the writing end
+	 */
+	OutputStream sink() {
+		return new OutputStream() {
+			private boolean closed;
+
+			@Override
+			public void write(int b) throws IOException {
+				this.write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				while (len > 0) {
+					int n = Math.min(len, Governor.CHUNK_SIZE);
+					byte[] chunk = new byte[n];
+					System.arraycopy(b, off, chunk, 0, n);
+					put(chunk);
+					off += n;
+					len -= n;
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				if (!closed) {
+					closed = true;
+					put(END);
+				}
+			}
+		};
+	}
+
+	/**
+	 * returns the end the body is read from by the sender
+	 * 
+	 * @return the reading end
+	 */
+	InputStream source() {
+		return new InputStream() {
+			private byte[] chunk;
+			private int position;
+
+			@Override
+			public int read() throws IOException {
+				byte[] b = new byte[1];
+				return this.read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				if (len == 0)
+					return 0;
+				if (chunk == END)
+					return -1;
+				if (chunk == null || position == chunk.length) {
+					chunk = take();
+					position = 0;
+					if (chunk == END)
+						return -1;
+				}
+				int n = Math.min(len, chunk.length - position);
+				System.arraycopy(chunk, position, b, off, n);
+				position += n;
+				return n;
+			}
+		};
+	}
+
+	/**
+	 * Utility for queueing a chunk, waiting while the queue is full
+	 */
+	private void put(byte[] chunk) throws IOException {
+		try {
+			while (!queue.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+				if (aborted)
+					throw new IOException(
+							"request ended before its body was sent");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("body write interrupted");
+		}
+	}
+
+	/**
+	 * Utility for taking the next chunk, waiting while the queue is empty
+	 */
+	private byte[] take() throws IOException {
+		try {
+			while (true) {
+				byte[] chunk = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (chunk != null)
+					return chunk;
+				if (aborted)
+					throw new IOException("request body was not completed");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("body read interrupted");
+		}
+	}
+
+}
@@ -0,0 +1,258 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * deletes many objects of one container. Names are sent to the cluster's
+ * bulk delete endpoint up to 10,000 per request; where the endpoint is
+ * missing each object is sent its own DELETE instead, several at a time.
+ * An object that is already gone counts as deleted.
+ * 
+ * 
+ */
+class BulkDelete extends Client {
+
+	/**
+	 * most names swift accepts in one bulk delete request
+	 */
+	static final int MAX_PER_REQUEST = 10000;
+
+	private static final String NUMBER_DELETED = "Number Deleted";
+	private static final String RESPONSE_STATUS = "Response Status";
+	private static final String ERRORS = "Errors";
+
+	private final Container container;
+	private final int threads;
+
+	/**
+	 * constructor for deletes in one container
+	 * 
+	 * @param container
+	 *            the container the objects are in
+	 * @param threads
+	 *            number of single object deletes sent at the same time when
+	 *            the bulk endpoint is not available
+	 */
+	BulkDelete(Container container, int threads) {
+		super(container.getSession());
+		if (threads <= 0)
+			throw new IllegalArgumentException("threads must be positive");
+		this.container = container;
+		this.threads = threads;
+		this.setPriority(container.getPriority());
+	}
+
+	/**
+	 * delete every named object, reading the names as they are needed so
+	 * they can come straight from a listing
+	 * 
+	 * @param names
+	 *            the objects to delete
+	 * @return the objects that were and were not deleted
+	 * @throws IOException
+	 *             if the deletes were interrupted
+	 */
+	BatchResult delete(Iterable<String> names) throws IOException {
+		BatchResult result = new BatchResult();
+		List<String> batch = new ArrayList<String>();
+		Iterator<String> it = names.iterator();
+		while (it.hasNext()) {
+			batch.add(it.next());
+			if (batch.size() == MAX_PER_REQUEST || !it.hasNext()) {
+				if (session.isBulkDeleteUnavailable()
+						|| !this.deleteBulk(batch, result))
+					this.deleteEach(batch, result);
+				batch.clear();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Utility for deleting a batch with one bulk delete request
+	 * 
+	 * @param batch
+	 *            the names to delete
+	 * @param result
+	 *            receives the outcome of each name
+	 * @return false if the batch was not handled and has to be deleted one
+	 *         object at a time
+	 * @throws IOException
+	 */
+	private boolean deleteBulk(List<String> batch, BatchResult result)
+			throws IOException {
+		// errors name the objects by their path, quoted with '/' kept
+		Map<String, String> paths = new HashMap<String, String>(batch
+				.size() * 2);
+		StringBuilder body = new StringBuilder(batch.size() * 64);
+		String prefix = "/" + UrlEncoder.encode(container.getName()) + "/";
+		for (String name : batch) {
+			UrlEncoder.encode(name, body.append(prefix)).append('\n');
+			paths.put("/" + container.getName() + "/" + name, name);
+		}
+
+		Hashtable<String, String> params = super.createAuthParams();
+		params.put(Client.ACCEPT, MediaType.APPLICATION_JSON.toString());
+		JSONObject response;
+		try {
+			ClientResource client = super.postForResponse(params,
+					new StringRepresentation(body, MediaType.TEXT_PLAIN),
+					session.getStorageUrl() + "?bulk-delete");
+			Representation entity = client.getResponseEntity();
+			String text = entity == null ? null : entity.getText();
+			response = text == null || text.length() == 0 ? null
+					: new JSONObject(text);
+		} catch (ResourceException e) {
+			if (e.getStatus().isServerError()
+					|| e.getStatus().isConnectorError()) {
+				// a failed bulk request is not retried, single deletes are
+				logger.debug("bulk delete failed with " + e.getStatus());
+				return false;
+			}
+			this.unavailable(e.getStatus().toString());
+			return false;
+		} catch (JSONException e) {
+			this.unavailable("a response that is not JSON");
+			return false;
+		}
+		if (response == null || !response.has(NUMBER_DELETED)) {
+			// an account POST without the middleware just updates metadata
+			this.unavailable("a response without a deleted count");
+			return false;
+		}
+
+		try {
+			JSONArray errors = response.optJSONArray(ERRORS);
+			if ((errors == null || errors.length() == 0)
+					&& !response.optString(RESPONSE_STATUS, "200").startsWith(
+							"2")) {
+				// the whole request failed, such as more names than allowed
+				logger.debug("bulk delete answered "
+						+ response.optString(RESPONSE_STATUS));
+				return false;
+			}
+			Map<String, String> failed = new HashMap<String, String>();
+			for (int i = 0; errors != null && i < errors.length(); i++) {
+				JSONArray error = errors.getJSONArray(i);
+				String path = UrlEncoder.decode(error.getString(0));
+				String name = paths.get(path.startsWith("/") ? path : "/"
+						+ path);
+				if (name == null) {
+					// which object failed is unknown, single deletes tell
+					logger.debug("bulk delete reported " + error
+							+ " for no object it was sent");
+					return false;
+				}
+				failed.put(name, error.getString(1));
+			}
+			for (String name : batch) {
+				String status = failed.get(name);
+				if (status == null)
+					result.succeeded(name);
+				else
+					result.failed(name, new IOException("unable to delete "
+							+ name + ": " + status));
+			}
+			return true;
+		} catch (JSONException e) {
+			throw (IOException) new IOException(
+					"unreadable bulk delete response").initCause(e);
+		}
+	}
+
+	/**
+	 * Utility for deleting a batch with one request per object
+	 * 
+	 * @param batch
+	 *            the names to delete
+	 * @param result
+	 *            receives the outcome of each name
+	 * @throws IOException
+	 *             if the deletes were interrupted
+	 */
+	private void deleteEach(List<String> batch, final BatchResult result)
+			throws IOException {
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(batch
+				.size());
+		for (final String name : batch) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					ObjectFile file = new ObjectFile(name, container);
+					file.setPriority(BulkDelete.this.getPriority());
+					try {
+						file.remove();
+						result.succeeded(name);
+					} catch (ResourceException e) {
+						if (Status.CLIENT_ERROR_NOT_FOUND.equals(e.getStatus()))
+							result.succeeded(name);
+						else
+							result.failed(name, e);
+					} catch (Exception e) {
+						result.failed(name, e);
+					}
+					return null;
+				}
+			});
+		}
+		Tasks.runAll(tasks, threads);
+	}
+
+	/**
+	 * Utility for switching the session to single deletes
+	 * 
+	 * @param reason
+	 *            what the endpoint answered
+	 */
+	private void unavailable(String reason) {
+		logger.info("bulk delete is not available, answered with " + reason
+				+ "; deleting one object at a time");
+		session.setBulkDeleteUnavailable();
+	}
+
+}
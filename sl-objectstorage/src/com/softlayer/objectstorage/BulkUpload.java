@@ -0,0 +1,399 @@
+package com.softlayer.objectstorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * uploads many small objects into one container as tar archives that the
+ * cluster unpacks, so thousands of objects take one request instead of one
+ * each. The archives are written while they are sent, a new one is started
+ * whenever the current one holds enough entries or bytes, and several are
+ * sent at the same time. Objects the cluster could not create are reported
+ * by name in the result, the rest of their archive still goes in.
+ * 
+ * 
+ */
+public class BulkUpload {
+
+	/**
+	 * default number of objects sent in one archive
+	 */
+	public static final int DEFAULT_ENTRIES_PER_ARCHIVE = 1000;
+
+	/**
+	 * default number of content bytes sent in one archive
+	 */
+	public static final long DEFAULT_BYTES_PER_ARCHIVE = 64L * 1024 * 1024;
+
+	private static final String FILES_CREATED = "Number Files Created";
+	private static final String RESPONSE_STATUS = "Response Status";
+	private static final String ERRORS = "Errors";
+	// bytes swift allows in an object name, only longer names are refused
+	// with a path long enough to be cut short in the report
+	private static final int MAX_NAME_BYTES = 1024;
+
+	private final Container container;
+	private int threads = 4;
+	private int entriesPerArchive = DEFAULT_ENTRIES_PER_ARCHIVE;
+	private long bytesPerArchive = DEFAULT_BYTES_PER_ARCHIVE;
+
+	/**
+	 * constructor
+	 * 
+	 * @param container
+	 *            the container to upload into, created by the cluster if it
+	 *            does not exist
+	 */
+	public BulkUpload(Container container) {
+		this.container = container;
+	}
+
+	/**
+	 * set the number of archives sent at the same time
+	 * 
+	 * @param threads
+	 *            number of worker threads, at least 1
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1");
+		this.threads = threads;
+	}
+
+	/**
+	 * set the most objects put in one archive
+	 * 
+	 * @param entries
+	 *            number of objects, at least 1
+	 */
+	public void setEntriesPerArchive(int entries) {
+		if (entries < 1)
+			throw new IllegalArgumentException("entries must be at least 1");
+		this.entriesPerArchive = entries;
+	}
+
+	/**
+	 * set the content size at which a new archive is started, an object
+	 * larger than this still goes in an archive of its own
+	 * 
+	 * @param bytes
+	 *            number of content bytes, at least 1
+	 */
+	public void setBytesPerArchive(long bytes) {
+		if (bytes < 1)
+			throw new IllegalArgumentException("bytes must be at least 1");
+		this.bytesPerArchive = bytes;
+	}
+
+	/**
+	 * upload every regular file under a local directory, a file "a/b" in it
+	 * becomes the object "a/b". The tree is read as the archives are built
+	 * and symbolic links to directories are not followed; a directory that
+	 * cannot be read is reported as a failure under its name.
+	 * 
+	 * @param directory
+	 *            the local directory
+	 * @return the objects that were and were not uploaded
+	 * @throws IOException
+	 *             if the directory cannot be read or the upload was
+	 *             interrupted
+	 */
+	public BatchResult upload(File directory) throws IOException {
+		if (!directory.isDirectory())
+			throw new IOException(directory + " is not a directory");
+		BatchResult result = new BatchResult();
+		return this.upload(new DirectoryEntries(directory, result), result);
+	}
+
+	/**
+	 * upload objects as they are read from an iterator. Entries of unknown
+	 * size are read ahead when their archive is written and do not count
+	 * towards the bytes per archive.
+	 * 
+	 * @param entries
+	 *            the objects to upload
+	 * @return the objects that were and were not uploaded
+	 * @throws IOException
+	 *             if the upload was interrupted
+	 */
+	public BatchResult upload(Iterator<ArchiveEntry> entries)
+			throws IOException {
+		return this.upload(entries, new BatchResult());
+	}
+
+	/**
+	 * Utility for grouping entries into archives and sending each on the
+	 * pool, waiting first if too many are already queued
+	 */
+	private BatchResult upload(Iterator<ArchiveEntry> entries,
+			BatchResult result) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		Semaphore queue = new Semaphore(threads * 2);
+		try {
+			List<ArchiveEntry> archive = new ArrayList<ArchiveEntry>();
+			long bytes = 0;
+			while (entries.hasNext()) {
+				ArchiveEntry entry = entries.next();
+				long size = Math.max(entry.getSize(), 0);
+				if (!archive.isEmpty()
+						&& (archive.size() == entriesPerArchive || bytes
+								+ size > bytesPerArchive)) {
+					this.submit(executor, queue, archive, result);
+					archive = new ArrayList<ArchiveEntry>();
+					bytes = 0;
+				}
+				archive.add(entry);
+				bytes += size;
+			}
+			if (!archive.isEmpty())
+				this.submit(executor, queue, archive, result);
+			try {
+				queue.acquire(threads * 2);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("upload interrupted");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Utility for sending one archive on the pool. If the whole archive
+	 * fails every object in it is recorded as failed and the upload goes on.
+	 */
+	private void submit(ExecutorService executor, final Semaphore queue,
+			final List<ArchiveEntry> archive, final BatchResult result)
+			throws IOException {
+		try {
+			queue.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			for (ArchiveEntry entry : archive)
+				entry.release();
+			throw new InterruptedIOException("upload interrupted");
+		}
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					send(archive, result);
+				} catch (Exception e) {
+					Client.logger.warn("could not upload an archive of "
+							+ archive.size() + " objects", e);
+					for (ArchiveEntry entry : archive)
+						result.failed(entry.getName(), e);
+				} finally {
+					for (ArchiveEntry entry : archive)
+						entry.release();
+					queue.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Utility for sending one archive and recording the outcome of each of
+	 * its objects from the cluster's report
+	 * 
+	 * @throws IOException
+	 *             if the archive as a whole was not extracted, nothing has
+	 *             been recorded then
+	 */
+	private void send(List<ArchiveEntry> archive, BatchResult result)
+			throws IOException {
+		JSONObject response = container.extractArchive(new TarRepresentation(
+				archive));
+		if (response == null || !response.has(FILES_CREATED))
+			throw new IOException("archive was not extracted, "
+					+ "the cluster may not support extract-archive");
+		JSONArray errors = response.optJSONArray(ERRORS);
+		String status = response.optString(RESPONSE_STATUS, "201");
+		if ((errors == null || errors.length() == 0)
+				&& !status.startsWith("2"))
+			// the whole request failed, such as an unreadable archive
+			throw new IOException("archive was not extracted: " + status);
+
+		// errors name the objects by their path in the account, quoted
+		Map<String, String> paths = new HashMap<String, String>(archive
+				.size() * 2);
+		String prefix = container.getName() + "/";
+		for (ArchiveEntry entry : archive)
+			paths.put(prefix + entry.getName(), entry.getName());
+		Map<String, String> failed = new HashMap<String, String>();
+		String unmatched = null;
+		try {
+			for (int i = 0; errors != null && i < errors.length(); i++) {
+				JSONArray error = errors.getJSONArray(i);
+				Set<String> names = find(paths, error.getString(0));
+				for (String name : names)
+					failed.put(name, error.getString(1));
+				if (names.isEmpty() && unmatched == null)
+					unmatched = error.getString(0) + ": "
+							+ error.getString(1);
+			}
+		} catch (JSONException e) {
+			throw (IOException) new IOException(
+					"unreadable extract archive response").initCause(e);
+		}
+		for (ArchiveEntry entry : archive) {
+			String error = failed.get(entry.getName());
+			if (error == null && unmatched != null)
+				// which object failed is unknown, none is known to be stored
+				result.failed(entry.getName(), new IOException(
+						"unable to upload the archive holding "
+								+ entry.getName() + ", " + unmatched));
+			else if (error == null)
+				result.succeeded(entry.getName());
+			else
+				result.failed(entry.getName(), new IOException(
+						"unable to upload " + entry.getName() + ": " + error));
+		}
+	}
+
+	/**
+	 * Utility for the objects an error path names. The paths of names too
+	 * long for swift come back cut short, so a path matching no object
+	 * exactly names every such object it is the start of. Objects with a
+	 * valid name are only ever matched exactly.
+	 * 
+	 * @param paths
+	 *            object names by their unquoted path in the account
+	 * @param path
+	 *            the path as the error reports it, percent-quoted
+	 */
+	private static Set<String> find(Map<String, String> paths, String path) {
+		path = UrlEncoder.decode(path);
+		if (path.startsWith("/"))
+			path = path.substring(1);
+		String name = paths.get(path);
+		if (name != null)
+			return Collections.singleton(name);
+		// a cut may fall inside a character's bytes
+		while (path.endsWith("\ufffd"))
+			path = path.substring(0, path.length() - 1);
+		Set<String> names = new HashSet<String>();
+		for (Map.Entry<String, String> entry : paths.entrySet())
+			if (entry.getKey().startsWith(path)
+					&& utf8(entry.getValue()).length > MAX_NAME_BYTES)
+				names.add(entry.getValue());
+		return names;
+	}
+
+	/**
+	 * Utility for encoding a name as UTF-8, which every JVM supports
+	 */
+	private static byte[] utf8(String name) {
+		try {
+			return name.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * the regular files under a directory, listed one directory at a time
+	 * as they are asked for
+	 */
+	private static final class DirectoryEntries implements
+			Iterator<ArchiveEntry> {
+		private final LinkedList<File> dirs = new LinkedList<File>();
+		private final LinkedList<String> paths = new LinkedList<String>();
+		private final LinkedList<ArchiveEntry> files = new LinkedList<ArchiveEntry>();
+		private final BatchResult result;
+
+		DirectoryEntries(File directory, BatchResult result) {
+			this.result = result;
+			dirs.add(directory);
+			paths.add("");
+		}
+
+		public boolean hasNext() {
+			while (files.isEmpty() && !dirs.isEmpty()) {
+				File dir = dirs.removeFirst();
+				String path = paths.removeFirst();
+				try {
+					File[] children = dir.listFiles();
+					if (children == null)
+						throw new IOException("could not list " + dir);
+					Arrays.sort(children);
+					for (File child : children) {
+						String name = path + child.getName();
+						if (child.isDirectory()) {
+							if (!ContainerSync.isLink(child)) {
+								dirs.add(child);
+								paths.add(name + "/");
+							}
+						} else if (child.isFile()) {
+							files.add(new ArchiveEntry(name, child));
+						}
+					}
+				} catch (IOException e) {
+					Client.logger.warn("could not upload " + dir, e);
+					result.failed(path, e);
+				}
+			}
+			return !files.isEmpty();
+		}
+
+		public ArchiveEntry next() {
+			if (!this.hasNext())
+				throw new NoSuchElementException();
+			return files.removeFirst();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
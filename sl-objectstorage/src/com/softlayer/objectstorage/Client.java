@@ -5,16 +5,20 @@ import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.TreeMap;
 
 import org.apache.commons.codec.EncoderException;
-import org.apache.commons.codec.net.URLCodec;
 import org.apache.log4j.Logger;
-import org.restlet.Context;
 import org.restlet.Response;
 import org.restlet.data.Form;
-import org.restlet.data.Protocol;
+import org.restlet.data.MediaType;
+import org.restlet.data.Parameter;
+import org.restlet.data.Preference;
+import org.restlet.data.Status;
+import org.restlet.engine.http.header.RangeReader;
 import org.restlet.representation.Representation;
 import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
 
 /**
  * Unless otherwise noted, all files are released under the MIT license,
@@ -59,6 +63,11 @@ public class Client {
 	private static final int PUT = 2;
 	private static final int DELETE = 3;
 	private static final int HEAD = 4;
+	private static final int LIST = 5;
+	private static final int AUTH = 6;
+	private static final Operation[] OPERATIONS = { Operation.GET,
+			Operation.POST, Operation.PUT, Operation.DELETE, Operation.HEAD,
+			Operation.LIST, Operation.AUTH };
 	static final String USERNAME = "x-auth-user";
 	static final String PASSWORD = "x-auth-key";
 	static final String X_AUTH_TOKEN = "X-Auth-Token";
@@ -74,16 +83,13 @@ public class Client {
 	static final String X_CDN_STREAM_FLASH_URL = "X-cdn-stream-flash-url";
 	static final String X_CDN_TTL = "X-TTL";
 	static final String X_CDN_ENABLED = "X-CDN-Enabled";
+	static final String RANGE = "Range";
+	static final String ACCEPT = "Accept";
 	private static final String RESTLET_HTTP_HEADERS = "org.restlet.http.headers";
-	protected String username;
-	protected String password;
-	protected String authToken;
-	protected String storageurl;
-	protected String cdnurl;
-	protected String baseurl;
-	protected String authurl;
+	protected Session session;
+	private Priority priority;
 
-	Logger logger = Logger.getLogger(Client.class);
+	static final Logger logger = Logger.getLogger(Client.class);
 
 	/**
 	 * allows for simple creation of an authenticated http client session with
@@ -99,45 +105,58 @@ public class Client {
 	 */
 	public Client(String baseUrl, String username, String password, boolean auth)
 			throws IOException {
-		this.username = username;
-		this.password = password;
-		baseurl = baseUrl;
-		authurl = baseUrl + "/auth/v1.0";
+		this(new Session(baseUrl, username, password));
 		if (auth)
-			this.auth(username, password);
+			session.authenticate();
 	}
 
 	/**
-	 * convenience method for making an auth call to objectstorage via restlet
-	 * client
+	 * creates a client that reuses the token and urls of an existing session
 	 * 
-	 * 
-	 * @param username
-	 *            username for SL portal user to be used for susequent calls
-	 * @param password
-	 *            password for the given user or the api key as a String
-	 * 
-	 * @throws IOException
+	 * @param session
+	 *            the shared session to make calls with
 	 */
-	protected void auth(String username, String password) throws IOException {
-
-		Hashtable<String, String> params = new Hashtable<String, String>();
-		params.put(USERNAME, username);
-		params.put(PASSWORD, password);
+	public Client(Session session) {
+		this.session = session;
+	}
 
-		ClientResource client = this.get(params, authurl);
+	/**
+	 * returns the session this client makes its calls with, handles created
+	 * from it share its auth token
+	 * 
+	 * @return the shared session
+	 */
+	public Session getSession() {
+		return session;
+	}
 
-		this.authToken = getCustomHttpHeader(X_AUTH_TOKEN, client);
-		this.storageurl = getCustomHttpHeader(X_STORAGE_URL, client);
-		this.cdnurl = getCustomHttpHeader(X_CDN_MANAGEMENT_URL, client);
+	/**
+	 * returns the priority set for this handle's calls
+	 * 
+	 * @return the priority, null if it follows the kind of call
+	 */
+	public Priority getPriority() {
+		return priority;
+	}
 
+	/**
+	 * set the priority of this handle's calls under the session's Governor,
+	 * by default reads are interactive and writes and removals are bulk
+	 * 
+	 * @param priority
+	 *            the priority, null to follow the kind of call
+	 */
+	public void setPriority(Priority priority) {
+		this.priority = priority;
 	}
 
 	/**
 	 * wrapper utility for making POST requests via restlet client
 	 * 
 	 * @param params
-	 *            Hashtable with all form/request params
+	 *            Hashtable with all form/request params, sent as headers
+	 * @param representation
+	 *            the request body, or null for none
 	 * @param url
 	 *            the url to make the client request to
 	 * 
@@ -145,6 +164,28 @@ public class Client {
 	 */
 	protected ClientResource post(Hashtable<String, String> params,
 			Representation representation, String url) throws IOException {
+		ClientResource client = this.httpRequest(params, url, representation,
+				POST);
+		release(client);
+		return client;
+	}
+
+	/**
+	 * wrapper utility for making POST requests via restlet client whose
+	 * response body is read by the caller, who must read it to the end or
+	 * release it
+	 * 
+	 * @param params
+	 *            Hashtable with all form/request params, sent as headers
+	 * @param representation
+	 *            the request body, or null for none
+	 * @param url
+	 *            the url to make the client request to
+	 * @return the resource holding the unread response
+	 * @throws IOException
+	 */
+	protected ClientResource postForResponse(Hashtable<String, String> params,
+			Representation representation, String url) throws IOException {
 		return this.httpRequest(params, url, representation, POST);
 	}
 
@@ -159,6 +200,28 @@ public class Client {
 	 */
 	protected ClientResource put(Hashtable<String, String> params,
 			Representation representation, String url) throws IOException {
+		ClientResource client = this.httpRequest(params, url, representation,
+				PUT);
+		release(client);
+		return client;
+	}
+
+	/**
+	 * wrapper utility for making PUT requests via restlet client whose
+	 * response body is read by the caller, who must read it to the end or
+	 * release it
+	 * 
+	 * @param params
+	 *            Hashtable with all form/request params
+	 * @param representation
+	 *            the request body, or null for none
+	 * @param url
+	 *            the url to make the client request to
+	 * @return the resource holding the unread response
+	 * @throws IOException
+	 */
+	protected ClientResource putForResponse(Hashtable<String, String> params,
+			Representation representation, String url) throws IOException {
 		return this.httpRequest(params, url, representation, PUT);
 	}
 
@@ -177,6 +240,35 @@ public class Client {
 		return this.httpRequest(params, url, null, GET);
 	}
 
+	/**
+	 * wrapper utility for making listing GET requests via restlet client,
+	 * reported as {@link Operation#LIST} rather than as downloads
+	 * 
+	 * @param params
+	 *            Hashtable with all form/request params
+	 * @param url
+	 *            the url to make the client request to
+	 * @throws IOException
+	 */
+	protected ClientResource list(Hashtable<String, String> params, String url)
+			throws IOException {
+		return this.httpRequest(params, url, null, LIST);
+	}
+
+	/**
+	 * wrapper utility for making auth GET requests via restlet client
+	 * 
+	 * @param params
+	 *            Hashtable with the auth params
+	 * @param url
+	 *            the auth url
+	 * @throws IOException
+	 */
+	ClientResource auth(Hashtable<String, String> params, String url)
+			throws IOException {
+		return this.httpRequest(params, url, null, AUTH);
+	}
+
 	/**
 	 * wrapper utility for making GET requests via restlet client
 	 * 
@@ -202,11 +294,32 @@ public class Client {
 	 */
 	protected void delete(Hashtable<String, String> params, String url)
 			throws IOException {
-		this.httpRequest(params, url, null, DELETE);
+		release(this.httpRequest(params, url, null, DELETE));
 	}
 
 	/**
-	 * Utility for making restlet http requests
+	 * wrapper utility for making DELETE requests via restlet client whose
+	 * response body is read by the caller, who must read it to the end or
+	 * release it
+	 * 
+	 * @param params
+	 *            Hashtable with all form/request params
+	 * @param url
+	 *            the url to make the client request to
+	 * @return the resource holding the unread response
+	 * @throws IOException
+	 */
+	protected ClientResource deleteForResponse(
+			Hashtable<String, String> params, String url) throws IOException {
+		return this.httpRequest(params, url, null, DELETE);
+	}
+
+	/**
+	 * Utility for making restlet http requests. Failures the session's retry
+	 * policy considers transient are retried with backoff, as long as the
+	 * request is idempotent: POSTs and bodies that can only be read once are
+	 * sent a single time. A rejected token is replaced and the request
+	 * replayed once, without counting as an attempt.
 	 * 
 	 * @param params
 	 *            Hashtable with all form/request params
@@ -219,20 +332,152 @@ public class Client {
 	private ClientResource httpRequest(Hashtable<String, String> params,
 			String url, Representation representation, int type)
 			throws IOException {
-		Context ctx = new Context();
-		if (url.toLowerCase().startsWith("https")) {
-			ctx.getParameters().add("truststorePath",
-					"objectstoragecacerts.jks");
-			ctx.getParameters().add("truststorePassword", "changeit");
-			ctx.getParameters().add("truststoreType", "JKS");
+		RetryPolicy policy = session.getRetryPolicy();
+		long deadline = policy.getDeadline() > 0 ? System.currentTimeMillis()
+				+ policy.getDeadline() : Long.MAX_VALUE;
+		boolean replayable = representation == null
+				|| !representation.isTransient();
+		boolean reauthenticated = false;
+		int attempt = 1;
+		while (true) {
+			try {
+				return this.execute(params, url, representation, type,
+						attempt);
+			} catch (ResourceException e) {
+				Status status = e.getStatus();
+				String token = params.get(X_AUTH_TOKEN);
+				if (Status.CLIENT_ERROR_UNAUTHORIZED.equals(status)
+						&& token != null && replayable && !reauthenticated) {
+					// token expired or was revoked, re-auth once and replay
+					session.refresh(token);
+					params.put(X_AUTH_TOKEN, session.getAuthToken());
+					reauthenticated = true;
+					continue;
+				}
+				if (type == POST || !replayable
+						|| attempt >= policy.getMaxAttempts()
+						|| !policy.isRetryable(status))
+					throw e;
+				long delay = policy.getDelay(attempt);
+				if (System.currentTimeMillis() + delay >= deadline)
+					throw e;
+				logger.debug("retrying " + url + " after " + status + " in "
+						+ delay + "ms");
+				MetricsListener listener = session.getMetricsListener();
+				if (listener != null)
+					listener.onRetry(OPERATIONS[type], attempt,
+							status.getCode());
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+				attempt++;
+			}
 		}
-		ClientResource requestResource = new ClientResource(ctx, url);
+	}
+
+	/**
+	 * Utility for sending a single restlet http request
+	 * 
+	 * @param params
+	 *            Hashtable with all form/request params
+	 * @param url
+	 *            the url to make the client request to
+	 * @param type
+	 *            the type of request (GET,POST,PUT,DELETE)
+	 * @param attempt
+	 *            which attempt this is, starting at 1
+	 */
+	private ClientResource execute(Hashtable<String, String> params,
+			String url, Representation representation, int type, int attempt)
+			throws IOException {
+		ClientResource requestResource = new ClientResource(url);
+		requestResource.setNext(session.getConnector());
+		// retries are decided by the session's policy in httpRequest
+		requestResource.setRetryOnError(false);
+		MetricsListener listener = session.getMetricsListener();
+		if (listener != null) {
+			// picked up by the connector, which sees the whole exchange
+			Map<String, Object> attributes = requestResource
+					.getRequestAttributes();
+			attributes.put(MeteredCall.METRICS_LISTENER, listener);
+			attributes.put(MeteredCall.OPERATION, OPERATIONS[type]);
+			attributes.put(MeteredCall.ATTEMPT, attempt);
+		}
+		Governor governor = session.getGovernor();
+		if (governor != null) {
+			Priority effective = priority != null ? priority
+					: defaultPriority(type);
+			governor.acquireRequest(effective);
+			// the connector charges the bodies as they flow
+			Map<String, Object> attributes = requestResource
+					.getRequestAttributes();
+			attributes.put(MeteredCall.GOVERNOR, governor);
+			attributes.put(MeteredCall.PRIORITY, effective);
+		}
+
+		try {
+			send(params, representation, type, requestResource);
+		} catch (ResourceException e) {
+			// drain the error body so the connection can be reused
+			release(requestResource);
+			throw e;
+		}
+
+		return requestResource;
+
+	}
+
+	/**
+	 * Utility for reading and discarding a response body that nobody is going
+	 * to consume, which hands the connection back to the pool
+	 * 
+	 * @param client
+	 *            the resource holding the response
+	 * @throws IOException
+	 */
+	static void release(ClientResource client) throws IOException {
+		Representation entity = client.getResponseEntity();
+		if (entity != null && entity.isAvailable())
+			entity.exhaust();
+	}
+
+	/**
+	 * Utility for the priority of a call whose handle has none set, writes
+	 * and removals are bulk and everything else is interactive
+	 * 
+	 * @param type
+	 *            the type of request (GET,POST,PUT,DELETE)
+	 * @return the priority
+	 */
+	private static Priority defaultPriority(int type) {
+		return type == PUT || type == POST || type == DELETE ? Priority.BULK
+				: Priority.INTERACTIVE;
+	}
+
+	/**
+	 * Utility for dispatching a restlet request by type
+	 * 
+	 * @param params
+	 *            Hashtable with all form/request params
+	 * @param representation
+	 *            the request body, if any
+	 * @param type
+	 *            the type of request (GET,POST,PUT,DELETE)
+	 * @param requestResource
+	 *            the resource to send the request with
+	 */
+	private static void send(Hashtable<String, String> params,
+			Representation representation, int type,
+			ClientResource requestResource) {
 
 		switch (type) {
 
 		case POST:
-			Representation post = getRepresentation(params);
-			requestResource.post(post);
+			setCustomHttpHeader(params, requestResource);
+			requestResource.post(representation);
 			break;
 
 		case PUT:
@@ -241,6 +486,8 @@ public class Client {
 			break;
 
 		case GET:
+		case LIST:
+		case AUTH:
 			setCustomHttpHeader(params, requestResource);
 			requestResource.get();
 
@@ -259,30 +506,6 @@ public class Client {
 
 		}
 
-		return requestResource;
-
-	}
-
-	/**
-	 * Utility for adding form params to a restlet representation
-	 * 
-	 * @param params
-	 *            Hashtable of params to be converted to form params
-	 * @return the restlet Representation with the form added
-	 */
-	private static Representation getRepresentation(
-			Hashtable<String, String> params) {
-		// Gathering informations into a Web form.
-		Form form = new Form();
-		Enumeration<String> en = params.keys();
-		while (en.hasMoreElements()) {
-			String key = en.nextElement();
-			String value = params.get(key);
-			form.add(key, value);
-		}
-
-		return form.getWebRepresentation();
-
 	}
 
 	/**
@@ -308,7 +531,15 @@ public class Client {
 		while (en.hasMoreElements()) {
 			String header = en.nextElement();
 			String value = params.get(header);
-			headers.add(header, value);
+			// restlet drops standard headers set this way, ranges and accepted
+			// types have to go through the request itself
+			if (RANGE.equalsIgnoreCase(header))
+				client.getRequest().getRanges().addAll(RangeReader.read(value));
+			else if (ACCEPT.equalsIgnoreCase(header))
+				client.getClientInfo().getAcceptedMediaTypes().add(
+						new Preference<MediaType>(MediaType.valueOf(value)));
+			else
+				headers.add(header, value);
 		}
 	}
 
@@ -330,6 +561,54 @@ public class Client {
 
 	}
 
+	/**
+	 * Utility for the response headers whose names start with a prefix, such
+	 * as the metadata of an object or container
+	 * 
+	 * @param prefix
+	 *            the header name prefix, for example X-Object-Meta-
+	 * @param client
+	 *            the response
+	 * @return the values by header name without the prefix, looked up
+	 *         regardless of case
+	 */
+	static Map<String, String> getCustomHttpHeaders(String prefix,
+			ClientResource client) {
+		Map<String, String> result = new TreeMap<String, String>(
+				String.CASE_INSENSITIVE_ORDER);
+		Form responseHeaders = (Form) client.getResponse().getAttributes()
+				.get(RESTLET_HTTP_HEADERS);
+		if (responseHeaders == null)
+			return result;
+		for (Parameter header : responseHeaders) {
+			String name = header.getName();
+			if (name.length() > prefix.length()
+					&& name.regionMatches(true, 0, prefix, 0, prefix.length()))
+				result.put(name.substring(prefix.length()), header.getValue());
+		}
+		return result;
+	}
+
+	/**
+	 * Utility for a numeric response header
+	 * 
+	 * @param name
+	 *            the header name
+	 * @param client
+	 *            the response
+	 * @return the value, or -1 if the header is missing or not a number
+	 */
+	static long getLongHttpHeader(String name, ClientResource client) {
+		String value = getCustomHttpHeader(name, client);
+		if (value == null)
+			return -1;
+		try {
+			return Long.parseLong(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
 	/**
 	 * Utility for creating a request param search string
 	 * 
@@ -392,16 +671,15 @@ public class Client {
 	}
 
 	/**
-	 * Utility for authorizing and adding the auth token to the header
+	 * Utility for adding the session auth token to the header, authorizing
+	 * first if the session has no valid token
 	 * 
 	 * @return Hashtable with auth params set
 	 * @throws IOException
 	 */
 	protected Hashtable<String, String> createAuthParams() throws IOException {
-		if (authToken == null)
-			this.auth(this.username, this.password);
 		Hashtable<String, String> params = new Hashtable<String, String>();
-		params.put(Client.X_AUTH_TOKEN, this.authToken);
+		params.put(Client.X_AUTH_TOKEN, session.getAuthToken());
 		return params;
 	}
 
@@ -412,9 +690,7 @@ public class Client {
 	 * @throws EncoderException
 	 */
 	protected String saferUrlEncode(String value) throws EncoderException {
-		URLCodec ucode = new URLCodec();
-		String uName = ucode.encode(value).replaceAll("\\+", "%20");
-		return uName;
+		return UrlEncoder.encode(value);
 	}
 
 	/**
@@ -437,4 +713,19 @@ public class Client {
 		return true;
 	}
 
+	/**
+	 * Utility to validate if name is valid for use as an object name, which
+	 * unlike a container name may hold '/' to form pseudo directories
+	 * 
+	 * @param name
+	 * @return true if name is valid
+	 */
+	protected boolean isValidObjectName(String name) {
+		if (name == null) {
+			return false;
+		}
+		int length = name.length();
+		return length > 0 && length <= 1024;
+	}
+
 }
@@ -2,13 +2,22 @@ package com.softlayer.objectstorage;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import org.apache.commons.codec.EncoderException;
-import org.apache.commons.lang.text.StrTokenizer;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
 import org.restlet.representation.Representation;
 import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
 
 /**
  * Unless otherwise noted, all files are released under the MIT license,
@@ -46,11 +55,17 @@ import org.restlet.resource.ClientResource;
  */
 public class Container extends Client {
 
+	/**
+	 * the most entries the server returns in one listing request
+	 */
+	public static final int MAX_PAGE_SIZE = 10000;
+
+	private static final int DEFAULT_DELETE_THREADS = 10;
+	private static final int REMOVE_ATTEMPTS = 3;
+
 	private String name;
-	private String baseUrl;
-	private String username;
-	private String password;
 	private ArrayList<ObjectFile> objs;
+	private volatile Urls urls;
 
 	/**
 	 * constructor for new container object on objectstorage server
@@ -77,9 +92,23 @@ public class Container extends Client {
 		super(baseUrl, username, password, auth);
 
 		this.name = name;
-		this.baseUrl = baseUrl;
-		this.username = username;
-		this.password = password;
+
+	}
+
+	/**
+	 * constructor for a container object on an existing session
+	 * 
+	 * @param name
+	 *            the name of the server side objectstorage container
+	 * @param session
+	 *            the session to make calls with, shared with every file
+	 *            listed from this container
+	 */
+	public Container(String name, Session session) {
+
+		super(session);
+
+		this.name = name;
 
 	}
 
@@ -111,6 +140,182 @@ public class Container extends Client {
 
 	}
 
+	/**
+	 * lazily lists every object in this container, see
+	 * {@link #listObjects(String, String, int)}
+	 * 
+	 * @return the listing
+	 */
+	public ObjectListing listObjects() {
+		return this.listObjects(null, null, MAX_PAGE_SIZE);
+	}
+
+	/**
+	 * lazily lists the objects in this container whose names start with a
+	 * prefix, see {@link #listObjects(String, String, int)}
+	 * 
+	 * @param prefix
+	 *            only list names starting with this, or null for all
+	 * @param delimiter
+	 *            roll names up to the first delimiter after the prefix into
+	 *            directory entries, or null to list every object
+	 * @return the listing
+	 */
+	public ObjectListing listObjects(String prefix, String delimiter) {
+		return this.listObjects(prefix, delimiter, MAX_PAGE_SIZE);
+	}
+
+	/**
+	 * lazily lists the objects in this container. Nothing is held beyond the
+	 * current page; pages are requested with marker/limit in JSON format, so
+	 * each entry carries the size, ETag, content type and last modified date,
+	 * and the next page is fetched in the background while the current one is
+	 * consumed.
+	 * 
+	 * @param prefix
+	 *            only list names starting with this, or null for all
+	 * @param delimiter
+	 *            roll names up to the first delimiter after the prefix into
+	 *            directory entries, or null to list every object
+	 * @param pageSize
+	 *            entries fetched per request, at most {@link #MAX_PAGE_SIZE}
+	 * @return the listing
+	 */
+	public ObjectListing listObjects(String prefix, String delimiter,
+			int pageSize) {
+		if (pageSize <= 0 || pageSize > MAX_PAGE_SIZE)
+			throw new IllegalArgumentException(
+					"page size must be between 1 and " + MAX_PAGE_SIZE);
+		return new ObjectListing(this, prefix, delimiter, pageSize);
+	}
+
+	/**
+	 * lists one level of this container's pseudo directory tree using "/" as
+	 * the delimiter, see {@link #listDirectory(String, String)}
+	 * 
+	 * @param prefix
+	 *            the directory to list, ending in "/", or null for the top
+	 * @return the directories and objects directly under the prefix
+	 * @throws IOException
+	 * @throws EncoderException
+	 */
+	public DirectoryListing listDirectory(String prefix) throws IOException,
+			EncoderException {
+		return this.listDirectory(prefix, "/");
+	}
+
+	/**
+	 * lists one level of this container's pseudo directory tree. Only the
+	 * names directly under the prefix are listed, names below the next
+	 * delimiter are rolled up into directory entries, so a directory is
+	 * listed without reading the rest of the container. A whole tree is
+	 * walked in parallel with a {@link TreeWalker}.
+	 * 
+	 * @param prefix
+	 *            the directory to list, ending in the delimiter, or null for
+	 *            the top
+	 * @param delimiter
+	 *            the delimiter names are split into directories at
+	 * @return the directories and objects directly under the prefix
+	 * @throws IOException
+	 * @throws EncoderException
+	 */
+	public DirectoryListing listDirectory(String prefix, String delimiter)
+			throws IOException, EncoderException {
+		if (delimiter == null || delimiter.length() == 0)
+			throw new IllegalArgumentException("delimiter is required");
+		List<ObjectEntry> directories = new ArrayList<ObjectEntry>();
+		List<ObjectEntry> objects = new ArrayList<ObjectEntry>();
+		String marker = null;
+		List<ObjectEntry> page;
+		do {
+			page = this.loadPage(prefix, delimiter, marker, MAX_PAGE_SIZE);
+			for (ObjectEntry entry : page)
+				(entry.isDirectory() ? directories : objects).add(entry);
+			if (!page.isEmpty())
+				marker = page.get(page.size() - 1).getName();
+		} while (page.size() == MAX_PAGE_SIZE);
+		return new DirectoryListing(prefix == null ? "" : prefix,
+				directories, objects);
+	}
+
+	/**
+	 * lists every object in this container into a compact index, see
+	 * {@link #listIndex(String)}
+	 * 
+	 * @return the index of all objects
+	 */
+	public ListingIndex listIndex() {
+		return this.listIndex(null);
+	}
+
+	/**
+	 * lists the objects whose names start with a prefix into a compact
+	 * index. Only names, sizes, dates and ETags are kept, at a few dozen
+	 * bytes per object plus the name, so millions of objects can be held
+	 * for lookups and diffing.
+	 * 
+	 * @param prefix
+	 *            only index names starting with this, or null for all
+	 * @return the index of the listed objects
+	 */
+	public ListingIndex listIndex(String prefix) {
+		ListingIndex.Builder builder = new ListingIndex.Builder();
+		for (ObjectEntry entry : this.listObjects(prefix, null))
+			builder.add(entry.getName(), entry.getSize(), entry.getEtag(),
+					entry.getLastModified());
+		return builder.build();
+	}
+
+	/**
+	 * fetch the object count, bytes used and metadata of this container with
+	 * a HEAD request, without listing it
+	 * 
+	 * @return the current statistics of the container
+	 * @throws IOException
+	 */
+	public ContainerStats getStats() throws IOException {
+		Hashtable<String, String> params = super.createAuthParams();
+		ClientResource client = super.head(params, this.urls().container);
+		return new ContainerStats(this.name, client);
+	}
+
+	/**
+	 * replace the tags of many objects in this container, each with one POST
+	 * request, see {@link ObjectFile#setMetaTags(Map)}
+	 * 
+	 * @param tags
+	 *            the tags each object should have, by object name
+	 * @param threads
+	 *            number of requests sent at the same time
+	 * @return the objects that were and were not tagged
+	 * @throws IOException
+	 *             if the batch was interrupted
+	 */
+	public BatchResult setMetaTags(Map<String, Map<String, String>> tags,
+			int threads) throws IOException {
+		return this.retag(tags, true, threads);
+	}
+
+	/**
+	 * change some tags of many objects in this container, keeping their
+	 * other tags, see {@link ObjectFile#updateMetaTags(Map)}
+	 * 
+	 * @param changes
+	 *            the tags to set on each object by object name, a null value
+	 *            removes the tag
+	 * @param threads
+	 *            number of objects updated at the same time
+	 * @return the objects that were and were not updated
+	 * @throws IOException
+	 *             if the batch was interrupted
+	 */
+	public BatchResult updateMetaTags(
+			Map<String, Map<String, String>> changes, int threads)
+			throws IOException {
+		return this.retag(changes, false, threads);
+	}
+
 	/**
 	 * create this container on the server
 	 * 
@@ -120,8 +325,7 @@ public class Container extends Client {
 	public void create() throws EncoderException, IOException {
 		Hashtable<String, String> params = super.createAuthParams();
 		if (super.isValidName(this.name)) {
-			String uName = super.saferUrlEncode(this.name);
-			super.put(params, null, super.storageurl + "/" + uName);
+			super.put(params, null, this.urls().container);
 		} else {
 			throw new EncoderException("Invalid Container Name");
 		}
@@ -140,7 +344,7 @@ public class Container extends Client {
 		if (ttl != null)
 			params.put(Client.X_CDN_TTL, Integer.toString(ttl));
 		String uName = super.saferUrlEncode(this.name);
-		super.put(params, null, super.cdnurl + "/" + uName);
+		super.put(params, null, session.getCdnUrl() + "/" + uName);
 	}
 
 	/**
@@ -156,7 +360,7 @@ public class Container extends Client {
 		Hashtable<String, String> params = super.createAuthParams();
 		params.put(Client.X_CDN_TTL, Integer.toString(ttl));
 		String uName = super.saferUrlEncode(this.name);
-		super.post(params, null, super.cdnurl + "/" + uName);
+		super.post(params, null, session.getCdnUrl() + "/" + uName);
 	}
 
 	/**
@@ -170,7 +374,7 @@ public class Container extends Client {
 		Hashtable<String, String> params = super.createAuthParams();
 		params.put(Client.X_CDN_ENABLED, "false");
 		String uName = super.saferUrlEncode(this.name);
-		super.post(params, null, super.cdnurl + "/" + uName);
+		super.post(params, null, session.getCdnUrl() + "/" + uName);
 	}
 
 	/**
@@ -183,11 +387,131 @@ public class Container extends Client {
 	public void remove() throws EncoderException, IOException {
 
 		Hashtable<String, String> params = super.createAuthParams();
-		String uName = super.saferUrlEncode(this.name);
-		super.delete(params, super.storageurl + "/" + uName);
+		super.delete(params, this.urls().container);
 
 	}
 
+	/**
+	 * delete many objects from this container, see
+	 * {@link #deleteObjects(Iterable, int)}
+	 * 
+	 * @param names
+	 *            the objects to delete
+	 * @return the objects that were and were not deleted
+	 * @throws IOException
+	 *             if the deletes were interrupted
+	 */
+	public BatchResult deleteObjects(Iterable<String> names)
+			throws IOException {
+		return this.deleteObjects(names, DEFAULT_DELETE_THREADS);
+	}
+
+	/**
+	 * delete many objects from this container. The names are sent to the
+	 * bulk delete endpoint up to 10,000 per request; if the cluster has no
+	 * such endpoint each object is deleted with its own request instead,
+	 * several at a time, and the session
+	 * remembers to skip the endpoint from then on. An object that is
+	 * already gone counts as deleted.
+	 * 
+	 * @param names
+	 *            the objects to delete, read as they are needed
+	 * @param threads
+	 *            number of single object deletes sent at the same time
+	 * @return the objects that were and were not deleted
+	 * @throws IOException
+	 *             if the deletes were interrupted
+	 */
+	public BatchResult deleteObjects(Iterable<String> names, int threads)
+			throws IOException {
+		return new BulkDelete(this, threads).delete(names);
+	}
+
+	/**
+	 * send a tar archive to be unpacked into this container, each file in it
+	 * becoming an object named by its path in the archive
+	 * 
+	 * @param archive
+	 *            the tar archive
+	 * @return the server's report of the extraction, or null if it did not
+	 *         answer with one
+	 * @throws IOException
+	 */
+	JSONObject extractArchive(Representation archive) throws IOException {
+		Hashtable<String, String> params = super.createAuthParams();
+		params.put(Client.ACCEPT, MediaType.APPLICATION_JSON.toString());
+		ClientResource client = super.putForResponse(params, archive, this
+				.urls().container
+				+ "?extract-archive=tar");
+		Representation entity = client.getResponseEntity();
+		String text = entity == null ? null : entity.getText();
+		if (text == null || text.length() == 0)
+			return null;
+		try {
+			return new JSONObject(text);
+		} catch (JSONException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * delete every object in this container, deleting each page of the
+	 * listing while the next one is fetched
+	 * 
+	 * @return the objects that were and were not deleted
+	 * @throws IOException
+	 *             if the deletes were interrupted
+	 */
+	public BatchResult deleteAll() throws IOException {
+		final ObjectListing listing = this.listObjects();
+		return this.deleteObjects(new Iterable<String>() {
+			public Iterator<String> iterator() {
+				final Iterator<ObjectEntry> entries = listing.iterator();
+				return new Iterator<String>() {
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					public String next() {
+						return entries.next().getName();
+					}
+
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * delete every object in this container and then the container itself.
+	 * Objects that show up again after the first pass, because listings
+	 * lag behind deletes or because they were just written, are deleted in
+	 * another pass before giving up.
+	 * 
+	 * @return the objects that were and were not deleted, the container is
+	 *         only removed if every object was
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public BatchResult removeRecursive() throws EncoderException,
+			IOException {
+		BatchResult result = this.deleteAll();
+		for (int attempt = 1; result.isSuccess(); attempt++) {
+			try {
+				this.remove();
+				break;
+			} catch (ResourceException e) {
+				if (!Status.CLIENT_ERROR_CONFLICT.equals(e.getStatus())
+						|| attempt >= REMOVE_ATTEMPTS)
+					throw e;
+			}
+			result.addAll(this.deleteAll());
+		}
+		return result;
+	}
+
 	/**
 	 * purge all CDN objects from this container
 	 * 
@@ -198,10 +522,43 @@ public class Container extends Client {
 
 		Hashtable<String, String> params = super.createAuthParams();
 		String uName = super.saferUrlEncode(this.name);
-		super.delete(params, super.cdnurl + "/" + uName);
+		super.delete(params, session.getCdnUrl() + "/" + uName);
 
 	}
 
+	/**
+	 * returns the url of an object in this container, its name encoded onto
+	 * the cached prefix
+	 * 
+	 * @param objectName
+	 *            the object name
+	 * @return the encoded url of the object
+	 * @throws IOException
+	 */
+	String getObjectUrl(String objectName) throws IOException {
+		String prefix = this.urls().objects;
+		return UrlEncoder.encode(objectName,
+				new StringBuilder(prefix.length() + objectName.length() + 16)
+						.append(prefix)).toString();
+	}
+
+	/**
+	 * Utility for the encoded urls of this container, they are built once
+	 * and only rebuilt if the session is given a different storage url
+	 * 
+	 * @return the urls for the current storage url
+	 * @throws IOException
+	 */
+	private Urls urls() throws IOException {
+		String storageUrl = session.getStorageUrl();
+		Urls u = this.urls;
+		if (u == null || !u.storageUrl.equals(storageUrl)) {
+			u = new Urls(storageUrl, this.name);
+			this.urls = u;
+		}
+		return u;
+	}
+
 	/**
 	 * Utility method for getting data from REST api to populate this object
 	 * 
@@ -209,23 +566,147 @@ public class Container extends Client {
 	 * @throws IOException
 	 */
 	private void loadData() throws EncoderException, IOException {
+		ArrayList<ObjectFile> files = new ArrayList<ObjectFile>();
+		for (ObjectEntry entry : this.listObjects())
+			files.add(entry.getObjectFile());
+		this.objs = files;
+	}
+
+	/**
+	 * Utility for tagging many objects through a bounded pool, recording the
+	 * outcome of each one
+	 * 
+	 * @param tags
+	 *            the tags or changes by object name
+	 * @param replace
+	 *            true to replace the tags, false to change them
+	 * @param threads
+	 *            number of objects handled at the same time
+	 * @return the outcome of each object
+	 * @throws IOException
+	 *             if the batch was interrupted
+	 */
+	private BatchResult retag(Map<String, Map<String, String>> tags,
+			final boolean replace, int threads) throws IOException {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1");
+		final BatchResult result = new BatchResult();
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(tags
+				.size());
+		for (final Map.Entry<String, Map<String, String>> entry : tags
+				.entrySet()) {
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					ObjectFile file = new ObjectFile(entry.getKey(),
+							Container.this);
+					file.setPriority(Container.this.getPriority());
+					try {
+						if (replace)
+							file.setMetaTags(entry.getValue());
+						else
+							file.updateMetaTags(entry.getValue());
+						result.succeeded(entry.getKey());
+					} catch (Exception e) {
+						result.failed(entry.getKey(), e);
+					}
+					return null;
+				}
+			});
+		}
+		Tasks.runAll(tasks, threads);
+		return result;
+	}
+
+	/**
+	 * Utility method for fetching one page of a listing
+	 * 
+	 * @param prefix
+	 *            only list names starting with this, or null
+	 * @param delimiter
+	 *            roll names up to the delimiter into directories, or null
+	 * @param marker
+	 *            list names after this one, or null to start at the beginning
+	 * @param limit
+	 *            most entries to return
+	 * @return the entries of the page, fewer than limit on the last page
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	List<ObjectEntry> loadPage(String prefix, String delimiter, String marker,
+			int limit) throws EncoderException, IOException {
 		Hashtable<String, String> params = super.createAuthParams();
-		String uName = super.saferUrlEncode(this.name);
-		ClientResource client = super.get(params, super.storageurl + "/"
-				+ uName);
-		Representation entity = client.getResponseEntity();
-		String containers = entity.getText();
-		StrTokenizer tokenize = new StrTokenizer(containers);
-		tokenize.setDelimiterString("\n");
-		String[] obj = tokenize.getTokenArray();
-		this.objs = new ArrayList<ObjectFile>();
-		for (String token : obj) {
+		StringBuilder url = new StringBuilder(this.urls().container).append(
+				"?format=json&limit=").append(limit);
+		if (prefix != null)
+			UrlEncoder.encode(prefix, url.append("&prefix="));
+		if (delimiter != null)
+			UrlEncoder.encode(delimiter, url.append("&delimiter="));
+		if (marker != null)
+			UrlEncoder.encode(marker, url.append("&marker="));
 
-			this.objs.add(new ObjectFile(token, this.name, this.baseUrl,
-					this.username, this.password, false));
+		ClientResource client = super.list(params, url.toString());
+		Representation entity = client.getResponseEntity();
+		// an empty container answers 204 without a body
+		return this.parsePage(entity == null ? null : entity.getText());
+	}
 
+	/**
+	 * Utility method for turning the JSON body of a listing into entries
+	 * 
+	 * @param text
+	 *            the response body, may be null or empty
+	 * @return the entries of the page
+	 * @throws IOException
+	 */
+	List<ObjectEntry> parsePage(String text) throws IOException {
+		List<ObjectEntry> entries = new ArrayList<ObjectEntry>();
+		if (text == null || text.trim().length() == 0)
+			return entries;
+		// a page holds few distinct content types, share one copy of each
+		Map<String, String> contentTypes = new HashMap<String, String>();
+		try {
+			JSONArray array = new JSONArray(text);
+			for (int i = 0; i < array.length(); i++) {
+				JSONObject item = array.getJSONObject(i);
+				if (item.has("subdir")) {
+					entries.add(new ObjectEntry(this, item.getString("subdir"),
+							0, null, null, null, true));
+					continue;
+				}
+				String contentType = item.optString("content_type", null);
+				if (contentType != null) {
+					String shared = contentTypes.get(contentType);
+					if (shared == null)
+						contentTypes.put(contentType, contentType);
+					else
+						contentType = shared;
+				}
+				entries.add(new ObjectEntry(this, item.getString("name"), item
+						.optLong("bytes"), item.optString("hash", null),
+						contentType, item.optString("last_modified", null),
+						false));
+			}
+		} catch (JSONException e) {
+			throw (IOException) new IOException("invalid listing of "
+					+ this.name).initCause(e);
 		}
+		return entries;
+	}
 
+	/**
+	 * the encoded container url and object prefix for one storage url
+	 */
+	private static final class Urls {
+		final String storageUrl;
+		final String container;
+		final String objects;
+
+		Urls(String storageUrl, String name) {
+			this.storageUrl = storageUrl;
+			this.container = UrlEncoder.encode(name,
+					new StringBuilder(storageUrl).append('/')).toString();
+			this.objects = this.container + "/";
+		}
 	}
 
 }
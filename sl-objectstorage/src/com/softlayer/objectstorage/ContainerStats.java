@@ -0,0 +1,115 @@
+package com.softlayer.objectstorage;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.restlet.resource.ClientResource;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * the object count, bytes used and metadata of a container as returned by a
+ * HEAD request, read without listing the container.
+ * 
+ * 
+ */
+public final class ContainerStats {
+
+	static final String X_CONTAINER_OBJECT_COUNT = "X-Container-Object-Count";
+	static final String X_CONTAINER_BYTES_USED = "X-Container-Bytes-Used";
+	static final String X_CONTAINER_META = "X-Container-Meta-";
+
+	private final String name;
+	private final long objectCount;
+	private final long bytesUsed;
+	private final Map<String, String> metadata;
+
+	/**
+	 * constructor reading the headers of a HEAD response
+	 * 
+	 * @param name
+	 *            the container name
+	 * @param head
+	 *            the response to the HEAD request
+	 */
+	ContainerStats(String name, ClientResource head) {
+		this.name = name;
+		this.objectCount = Client.getLongHttpHeader(X_CONTAINER_OBJECT_COUNT,
+				head);
+		this.bytesUsed = Client.getLongHttpHeader(X_CONTAINER_BYTES_USED,
+				head);
+		this.metadata = Collections.unmodifiableMap(Client
+				.getCustomHttpHeaders(X_CONTAINER_META, head));
+	}
+
+	/**
+	 * returns the name of the container
+	 * 
+	 * @return the container name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * returns the number of objects in the container
+	 * 
+	 * @return the object count, or -1 if the server did not send it
+	 */
+	public long getObjectCount() {
+		return objectCount;
+	}
+
+	/**
+	 * returns the bytes used by the objects in the container
+	 * 
+	 * @return bytes used, or -1 if the server did not send it
+	 */
+	public long getBytesUsed() {
+		return bytesUsed;
+	}
+
+	/**
+	 * returns the metadata attached to the container
+	 * 
+	 * @return the values by name without the X-Container-Meta- prefix,
+	 *         looked up regardless of case
+	 */
+	public Map<String, String> getMetadata() {
+		return metadata;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + objectCount + " objects, " + bytesUsed
+				+ " bytes)";
+	}
+
+}
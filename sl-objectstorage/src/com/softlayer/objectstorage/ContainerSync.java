@@ -0,0 +1,666 @@
+package com.softlayer.objectstorage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.codec.EncoderException;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * keeps a local directory tree and a container in step. upload() makes the
+ * container match the directory and download() mirrors the container into
+ * the directory; in both only new and changed files are transferred and,
+ * if asked, files missing from the source side are deleted.
+ * 
+ * The local tree is walked in parallel while the container listing is read
+ * into a ListingIndex. Files of equal size are taken as unchanged when the
+ * modification time shows they have not been touched since the other copy
+ * was written, only otherwise is the local file hashed and compared with the
+ * object's ETag. Checks, transfers and deletes then run on a bounded pool.
+ * 
+ * Files above the segment size are uploaded as static large objects, whose
+ * ETag is not the MD5 of their content; the MD5 is kept in the Sync-Md5
+ * metadata instead and compared in its place. Replacing or deleting such an
+ * object also removes the segments no longer used.
+ * 
+ * 
+ */
+public class ContainerSync {
+
+	/**
+	 * default size above which files are uploaded as segments, Swift refuses
+	 * single objects larger than 5GB
+	 */
+	public static final long DEFAULT_SEGMENT_SIZE = 1024L * 1024 * 1024;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// file systems keep modification times at up to two second granularity
+	private static final long MTIME_TOLERANCE = 2000;
+	private static final String PART_SUFFIX = ".syncpart";
+	// metadata holding the content MD5 of a large object
+	private static final String SYNC_MD5 = "Sync-Md5";
+
+	private final Container container;
+	private final File directory;
+	private String prefix = "";
+	private int threads = 4;
+	private boolean dryRun;
+	private boolean delete;
+	private boolean checksum;
+	private long segmentSize = DEFAULT_SEGMENT_SIZE;
+	private SyncListener listener;
+
+	/**
+	 * constructor
+	 * 
+	 * @param container
+	 *            the container to sync with
+	 * @param directory
+	 *            the local directory to sync with
+	 */
+	public ContainerSync(Container container, File directory) {
+		this.container = container;
+		this.directory = directory;
+	}
+
+	/**
+	 * sync only objects under a prefix, a local file "a/b" maps to the
+	 * object prefix + "a/b"
+	 * 
+	 * @param prefix
+	 *            the object name prefix, usually ending with "/"
+	 */
+	public void setPrefix(String prefix) {
+		this.prefix = prefix == null ? "" : prefix;
+	}
+
+	/**
+	 * set the number of files walked, checked and transferred at the same
+	 * time
+	 * 
+	 * @param threads
+	 *            number of worker threads, at least 1
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("threads must be at least 1");
+		this.threads = threads;
+	}
+
+	/**
+	 * only work out what would be transferred and deleted, change nothing
+	 * 
+	 * @param dryRun
+	 *            true for a dry run
+	 */
+	public void setDryRun(boolean dryRun) {
+		this.dryRun = dryRun;
+	}
+
+	/**
+	 * delete what is on the target side but no longer on the source side
+	 * 
+	 * @param delete
+	 *            true to delete extra objects or local files
+	 */
+	public void setDelete(boolean delete) {
+		this.delete = delete;
+	}
+
+	/**
+	 * always compare files of equal size by MD5, not trusting modification
+	 * times. Use this when clocks cannot be trusted.
+	 * 
+	 * @param checksum
+	 *            true to hash every file of matching size
+	 */
+	public void setChecksum(boolean checksum) {
+		this.checksum = checksum;
+	}
+
+	/**
+	 * set the size above which files are uploaded as static large objects
+	 * made of segments of this size
+	 * 
+	 * @param segmentSize
+	 *            segment size in bytes, at most 5GB
+	 */
+	public void setSegmentSize(long segmentSize) {
+		if (segmentSize < 1 || segmentSize > SegmentedUpload.MAX_SEGMENT_SIZE)
+			throw new IllegalArgumentException(
+					"segment size must be between 1 and "
+							+ SegmentedUpload.MAX_SEGMENT_SIZE);
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * set the listener told about each object as it is handled
+	 * 
+	 * @param listener
+	 *            the listener, or null for none
+	 */
+	public void setListener(SyncListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * make the container match the local directory, uploading new and
+	 * changed files and, if enabled, deleting objects with no local file. The
+	 * container is created if it does not exist. Failures of single objects
+	 * do not stop the sync, they are collected in the returned progress.
+	 * 
+	 * @return the outcome of the sync
+	 * @throws EncoderException
+	 * @throws IOException
+	 *             if the directory cannot be read or the container listed
+	 */
+	public SyncProgress upload() throws EncoderException, IOException {
+		final SyncProgress progress = new SyncProgress(dryRun);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Future<ListingIndex> listing = this.list(executor, true);
+			Map<String, File> local = this.walk(executor);
+			final ListingIndex remote = this.await(listing);
+			if (remote == null && !dryRun)
+				container.create();
+
+			int extra = 0;
+			if (delete && remote != null) {
+				for (int i = 0; i < remote.size(); i++)
+					if (!local.containsKey(remote.getName(i)))
+						extra++;
+			}
+			progress.setObjectsToCheck(local.size() + extra);
+
+			Semaphore queue = new Semaphore(threads * 2);
+			for (final Map.Entry<String, File> entry : local.entrySet()) {
+				this.submit(executor, queue, progress, entry.getKey(),
+						new Callable<Void>() {
+							public Void call() throws Exception {
+								uploadIfChanged(entry.getKey(),
+										entry.getValue(), remote, progress);
+								return null;
+							}
+						});
+			}
+			if (extra > 0) {
+				for (int i = 0; i < remote.size(); i++) {
+					final String name = remote.getName(i);
+					if (local.containsKey(name))
+						continue;
+					this.submit(executor, queue, progress, name,
+							new Callable<Void>() {
+								public Void call() throws Exception {
+									if (!dryRun)
+										new ObjectFile(name, container)
+												.removeWithSegments();
+									progress.deleted(name);
+									return null;
+								}
+							});
+				}
+			}
+			this.drain(queue);
+		} finally {
+			executor.shutdownNow();
+			progress.finish();
+		}
+		return progress;
+	}
+
+	/**
+	 * make the local directory match the container, downloading new and
+	 * changed objects and, if enabled, deleting local files with no object.
+	 * Each download goes to a temporary file that replaces the old one only
+	 * once complete, and the file is given the object's modification time.
+	 * Objects whose names cannot be mapped safely to a path below the
+	 * directory are reported as failures.
+	 * 
+	 * @return the outcome of the sync
+	 * @throws IOException
+	 *             if the directory cannot be read or the container listed
+	 */
+	public SyncProgress download() throws IOException {
+		final SyncProgress progress = new SyncProgress(dryRun);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			Future<ListingIndex> listing = this.list(executor, false);
+			final Map<String, File> local = this.walk(executor);
+			final ListingIndex remote = this.await(listing);
+
+			int extra = 0;
+			if (delete) {
+				for (String name : local.keySet())
+					if (remote.indexOf(name) < 0)
+						extra++;
+			}
+			progress.setObjectsToCheck(remote.size() + extra);
+
+			Semaphore queue = new Semaphore(threads * 2);
+			for (int i = 0; i < remote.size(); i++) {
+				final int index = i;
+				final String name = remote.getName(i);
+				this.submit(executor, queue, progress, name,
+						new Callable<Void>() {
+							public Void call() throws Exception {
+								downloadIfChanged(index, remote, progress);
+								return null;
+							}
+						});
+			}
+			if (extra > 0) {
+				for (final Map.Entry<String, File> entry : local.entrySet()) {
+					if (remote.indexOf(entry.getKey()) >= 0)
+						continue;
+					this.submit(executor, queue, progress, entry.getKey(),
+							new Callable<Void>() {
+								public Void call() throws Exception {
+									File file = entry.getValue();
+									if (!dryRun && !file.delete()
+											&& file.exists())
+										throw new IOException(
+												"could not delete " + file);
+									progress.deleted(entry.getKey());
+									return null;
+								}
+							});
+				}
+			}
+			this.drain(queue);
+		} finally {
+			executor.shutdownNow();
+			progress.finish();
+		}
+		return progress;
+	}
+
+	/**
+	 * Utility for checking one local file against the listing and uploading
+	 * it if it differs
+	 */
+	private void uploadIfChanged(String name, File file, ListingIndex remote,
+			SyncProgress progress) throws EncoderException, IOException {
+		long size = file.length();
+		int index = remote == null ? -1 : remote.indexOf(name);
+		ObjectFile object = new ObjectFile(name, container);
+		ObjectMetadata existing = null;
+		String md5 = null;
+		if (index >= 0 && remote.getSize(index) == size) {
+			long stored = remote.getLastModified(index);
+			if (!checksum && stored >= 0 && stored >= file.lastModified()) {
+				progress.unchanged();
+				return;
+			}
+			md5 = md5(file);
+			if (remote.hasEtag(index, md5)) {
+				progress.unchanged();
+				return;
+			}
+			existing = metadata(object);
+			if (hasContent(existing, md5)) {
+				progress.unchanged();
+				return;
+			}
+		}
+		if (!dryRun) {
+			Map<String, String> tags = new HashMap<String, String>();
+			if (size > segmentSize) {
+				if (md5 == null)
+					md5 = md5(file);
+				tags.put(SYNC_MD5, md5);
+				// removes the segments of the object it replaces itself
+				object.uploadLargeFile(file, tags, segmentSize, 1, true);
+			} else {
+				if (index >= 0 && existing == null)
+					existing = metadata(object);
+				// segments of the object being replaced, removed once it is
+				List<String> replaced = SegmentedUpload.segmentsOf(container,
+						object, existing);
+				// a hash already taken is sent for the server to check
+				object.uploadFile(file, tags, md5);
+				SegmentedUpload.removeUnused(container, name, replaced,
+						Collections.<String> emptySet(), threads);
+			}
+		}
+		progress.transferred(name, size);
+	}
+
+	/**
+	 * Utility for reading an object's metadata
+	 * 
+	 * @return the metadata, or null if the object does not exist
+	 */
+	private static ObjectMetadata metadata(ObjectFile object)
+			throws EncoderException, IOException {
+		try {
+			return object.getMetadata();
+		} catch (ResourceException e) {
+			if (Status.CLIENT_ERROR_NOT_FOUND.equals(e.getStatus()))
+				return null;
+			throw e;
+		}
+	}
+
+	/**
+	 * Utility for checking a large object against a local MD5, by the MD5
+	 * recorded when it was uploaded
+	 */
+	private static boolean hasContent(ObjectMetadata metadata, String md5) {
+		return metadata != null && metadata.isLargeObject()
+				&& md5.equalsIgnoreCase(metadata.getMetadata().get(SYNC_MD5));
+	}
+
+	/**
+	 * Utility for checking one object against its local file and
+	 * downloading it if it differs
+	 */
+	private void downloadIfChanged(int index, ListingIndex remote,
+			SyncProgress progress) throws EncoderException, IOException {
+		String name = remote.getName(index);
+		String path = name.substring(prefix.length());
+		if (path.endsWith("/") && remote.getSize(index) == 0) {
+			// a pseudo directory marker
+			if (!dryRun)
+				new File(directory, path).mkdirs();
+			progress.unchanged();
+			return;
+		}
+		if (!isSafePath(path))
+			throw new IOException("object name does not map to a local path");
+		File file = new File(directory, path.replace('/', File.separatorChar));
+		long size = remote.getSize(index);
+		long stored = remote.getLastModified(index);
+		if (file.isFile() && file.length() == size) {
+			if (!checksum && stored >= 0
+					&& Math.abs(file.lastModified() - stored)
+						< MTIME_TOLERANCE) {
+				progress.unchanged();
+				return;
+			}
+			String md5 = md5(file);
+			if (remote.hasEtag(index, md5)
+					|| hasContent(metadata(new ObjectFile(name, container)),
+							md5)) {
+				progress.unchanged();
+				return;
+			}
+		}
+		if (!dryRun) {
+			File parent = file.getParentFile();
+			if (!parent.isDirectory() && !parent.mkdirs())
+				throw new IOException("could not create " + parent);
+			File part = new File(parent, file.getName() + PART_SUFFIX);
+			new ObjectFile(name, container).downloadTo(part);
+			// renameTo does not replace an existing file everywhere
+			if (!part.renameTo(file)
+					&& !(file.delete() && part.renameTo(file))) {
+				part.delete();
+				throw new IOException("could not replace " + file);
+			}
+			if (stored >= 0)
+				file.setLastModified(stored);
+		}
+		progress.transferred(name, size);
+	}
+
+	/**
+	 * Utility for starting the container listing on the pool
+	 * 
+	 * @param missingIsEmpty
+	 *            true to return null for a container that does not exist
+	 *            instead of failing
+	 */
+	private Future<ListingIndex> list(ExecutorService executor,
+			final boolean missingIsEmpty) {
+		final String listPrefix = prefix.length() == 0 ? null : prefix;
+		return executor.submit(new Callable<ListingIndex>() {
+			public ListingIndex call() {
+				try {
+					return container.listIndex(listPrefix);
+				} catch (ResourceException e) {
+					if (missingIsEmpty
+							&& Status.CLIENT_ERROR_NOT_FOUND.equals(e
+									.getStatus()))
+						return null;
+					throw e;
+				}
+			}
+		});
+	}
+
+	/**
+	 * Utility for waiting on the container listing
+	 */
+	private ListingIndex await(Future<ListingIndex> listing)
+			throws IOException {
+		try {
+			return listing.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("sync interrupted");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw (IOException) new IOException("listing failed")
+					.initCause(cause);
+		}
+	}
+
+	/**
+	 * Utility for walking the local tree in parallel, each directory is
+	 * listed by its own task. Symbolic links to directories are not
+	 * followed. Any directory that cannot be read fails the whole walk, so
+	 * that its files are never taken as deleted.
+	 * 
+	 * @return the regular files by object name
+	 */
+	private Map<String, File> walk(final ExecutorService executor)
+			throws IOException {
+		if (!directory.isDirectory())
+			throw new IOException(directory + " is not a directory");
+		final Map<String, File> files = new ConcurrentHashMap<String, File>();
+		final AtomicInteger pending = new AtomicInteger(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+
+		class Walker implements Runnable {
+			private final File dir;
+			private final String path;
+
+			Walker(File dir, String path) {
+				this.dir = dir;
+				this.path = path;
+			}
+
+			public void run() {
+				try {
+					File[] children = dir.listFiles();
+					if (children == null)
+						throw new IOException("could not list " + dir);
+					for (File child : children) {
+						String name = path + child.getName();
+						if (child.isDirectory()) {
+							if (!isLink(child)) {
+								pending.incrementAndGet();
+								executor.execute(new Walker(child, name + "/"));
+							}
+						} else if (child.isFile()
+								&& !child.getName().endsWith(PART_SUFFIX)) {
+							files.put(prefix + name, child);
+						}
+					}
+				} catch (IOException e) {
+					failure.compareAndSet(null, e);
+				} catch (RuntimeException e) {
+					failure.compareAndSet(null, (IOException) new IOException(
+							"could not walk " + dir).initCause(e));
+				} finally {
+					if (pending.decrementAndGet() == 0)
+						done.countDown();
+				}
+			}
+		}
+
+		executor.execute(new Walker(directory, ""));
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("sync interrupted");
+		}
+		if (failure.get() != null)
+			throw failure.get();
+		return files;
+	}
+
+	/**
+	 * Utility for running one object's work on the pool, waiting first if
+	 * too many are already queued. A failure is recorded against the object
+	 * and the sync goes on.
+	 */
+	private void submit(ExecutorService executor, final Semaphore queue,
+			final SyncProgress progress, final String name,
+			final Callable<Void> task) throws IOException {
+		try {
+			queue.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("sync interrupted");
+		}
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					task.call();
+				} catch (Exception e) {
+					Client.logger.warn("could not sync " + name, e);
+					progress.failed(name, e);
+				} finally {
+					notifyListener(progress, name);
+					queue.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Utility for waiting until every submitted task has finished
+	 */
+	private void drain(Semaphore queue) throws IOException {
+		try {
+			queue.acquire(threads * 2);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("sync interrupted");
+		}
+	}
+
+	/**
+	 * Utility for telling the listener about progress, a failing listener
+	 * must not fail the sync
+	 */
+	private void notifyListener(SyncProgress progress, String name) {
+		SyncListener listener = this.listener;
+		if (listener == null)
+			return;
+		try {
+			listener.onProgress(progress, name);
+		} catch (RuntimeException e) {
+			Client.logger.warn("sync listener failed", e);
+		}
+	}
+
+	/**
+	 * Utility for checking that an object name, less the prefix, stays below
+	 * the directory
+	 */
+	private static boolean isSafePath(String path) {
+		if (path.length() == 0 || path.indexOf('\\') >= 0)
+			return false;
+		for (String segment : path.split("/", -1))
+			if (segment.length() == 0 || segment.equals(".")
+					|| segment.equals(".."))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Utility for telling a symbolic link from a directory, by whether its
+	 * canonical path differs from where it was found
+	 */
+	static boolean isLink(File file) throws IOException {
+		File parent = file.getParentFile().getCanonicalFile();
+		File found = new File(parent, file.getName());
+		return !found.getCanonicalFile().equals(found.getAbsoluteFile());
+	}
+
+	/**
+	 * Utility for hashing a local file
+	 * 
+	 * @return lower case hex MD5
+	 */
+	private static String md5(File file) throws IOException {
+		MessageDigest digest = Digests.md5();
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			int n;
+			while ((n = in.read(buffer)) != -1)
+				digest.update(buffer, 0, n);
+		} finally {
+			in.close();
+		}
+		return Digests.hex(digest);
+	}
+
+}
@@ -0,0 +1,94 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.apache.commons.codec.binary.Hex;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * MD5 helpers shared by the streams that hash bodies as they are sent or
+ * read, the same digest Swift uses for the ETag of a plain object.
+ * 
+ * 
+ */
+final class Digests {
+
+	private Digests() {
+	}
+
+	/**
+	 * create an MD5 digest
+	 * 
+	 * @return a new digest
+	 */
+	static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			// every Java platform is required to support MD5
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * finish a digest
+	 * 
+	 * @param digest
+	 *            the digest, reset by this call
+	 * @return the digest as lower case hex
+	 */
+	static String hex(MessageDigest digest) {
+		return new String(Hex.encodeHex(digest.digest()));
+	}
+
+	/**
+	 * check an ETag the server sent against the MD5 of the body
+	 * 
+	 * @param etag
+	 *            the ETag, quoted or not, or null if there was none
+	 * @param md5
+	 *            the MD5 as hex, or null if it is not known
+	 * @param name
+	 *            the object, for the error message
+	 * @throws IOException
+	 *             if both are known and they differ
+	 */
+	static void verify(String etag, String md5, String name)
+			throws IOException {
+		etag = SegmentedUpload.unquote(etag);
+		if (etag != null && md5 != null && !etag.equalsIgnoreCase(md5))
+			throw new IOException("ETag " + etag + " of " + name
+					+ " does not match MD5 " + md5);
+	}
+
+}
@@ -0,0 +1,100 @@
+package com.softlayer.objectstorage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * one level of a container's pseudo directory tree: the directories and the
+ * objects directly under a prefix, listed with a delimiter so nothing below
+ * the next delimiter is returned.
+ * 
+ * 
+ */
+public final class DirectoryListing {
+
+	private final String prefix;
+	private final List<ObjectEntry> directories;
+	private final List<ObjectEntry> objects;
+
+	/**
+	 * constructor for a listed directory
+	 * 
+	 * @param prefix
+	 *            the prefix that was listed
+	 * @param directories
+	 *            the directory entries found
+	 * @param objects
+	 *            the object entries found
+	 */
+	DirectoryListing(String prefix, List<ObjectEntry> directories,
+			List<ObjectEntry> objects) {
+		this.prefix = prefix;
+		this.directories = Collections.unmodifiableList(directories);
+		this.objects = Collections.unmodifiableList(objects);
+	}
+
+	/**
+	 * returns the prefix that was listed
+	 * 
+	 * @return the prefix, empty for the top of the container
+	 */
+	public String getPrefix() {
+		return prefix;
+	}
+
+	/**
+	 * returns the pseudo directories directly under the prefix, each named
+	 * with its full prefix including the trailing delimiter so it can be
+	 * listed in turn
+	 * 
+	 * @return the directories in name order
+	 */
+	public List<ObjectEntry> getDirectories() {
+		return directories;
+	}
+
+	/**
+	 * returns the objects directly under the prefix
+	 * 
+	 * @return the objects in name order
+	 */
+	public List<ObjectEntry> getObjects() {
+		return objects;
+	}
+
+	@Override
+	public String toString() {
+		return prefix + " (" + directories.size() + " directories, "
+				+ objects.size() + " objects)";
+	}
+
+}
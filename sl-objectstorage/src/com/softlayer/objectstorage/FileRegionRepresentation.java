@@ -0,0 +1,135 @@
+package com.softlayer.objectstorage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+
+import org.restlet.data.MediaType;
+import org.restlet.representation.StreamRepresentation;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * request body that streams a byte range of a local file. Memory use is one
+ * fixed size buffer whatever the file size. The file is reopened for each
+ * write so the body can be replayed on a retry. Every write, including one
+ * to a channel, goes through the stream copy so it also computes the MD5 of
+ * the bytes sent, which can be checked against the ETag the server returns.
+ * 
+ * 
+ */
+class FileRegionRepresentation extends StreamRepresentation {
+
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	private final File file;
+	private final long offset;
+	private final long length;
+	private volatile String md5;
+
+	/**
+	 * constructor for a body covering a whole file
+	 * 
+	 * @param file
+	 *            the local file to send
+	 * @param mediaType
+	 *            the content type to send
+	 */
+	FileRegionRepresentation(File file, MediaType mediaType) {
+		this(file, 0, file.length(), mediaType);
+	}
+
+	/**
+	 * constructor for a body covering part of a file
+	 * 
+	 * @param file
+	 *            the local file to send
+	 * @param offset
+	 *            position of the first byte to send
+	 * @param length
+	 *            number of bytes to send
+	 * @param mediaType
+	 *            the content type to send
+	 */
+	FileRegionRepresentation(File file, long offset, long length,
+			MediaType mediaType) {
+		super(mediaType);
+		this.file = file;
+		this.offset = offset;
+		this.length = length;
+		setSize(length);
+	}
+
+	@Override
+	public InputStream getStream() throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		in.getChannel().position(offset);
+		return new BoundedInputStream(in, length);
+	}
+
+	/**
+	 * returns the MD5 of the bytes sent by the last complete write
+	 * 
+	 * @return lower case hex MD5, or null if no write has completed
+	 */
+	String getMd5() {
+		return md5;
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException {
+		md5 = null;
+		MessageDigest digest = Digests.md5();
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			raf.seek(offset);
+			byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE,
+					Math.max(length, 1))];
+			long remaining = length;
+			while (remaining > 0) {
+				int n = raf.read(buffer, 0,
+						(int) Math.min(buffer.length, remaining));
+				if (n < 0)
+					throw new IOException(file + " is shorter than expected");
+				out.write(buffer, 0, n);
+				digest.update(buffer, 0, n);
+				remaining -= n;
+			}
+			md5 = Digests.hex(digest);
+		} finally {
+			raf.close();
+		}
+	}
+
+}
@@ -0,0 +1,277 @@
+package com.softlayer.objectstorage;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * limits the bytes per second uploaded and downloaded and the requests per
+ * second made by every session it is set on, see
+ * {@link Session#setGovernor(Governor)}. Each limit is a token bucket kept
+ * as the time its next token is free, so taking tokens is one compare and
+ * set with no lock, and a caller that is ahead of the rate sleeps on its
+ * own thread. Bodies are charged in pieces of at most 64KB as they are
+ * written and read.
+ * 
+ * Interactive calls are charged to the same buckets, so bulk calls back off
+ * for them, but they only wait behind other interactive calls. The limits
+ * can be changed at any time, 0 means no limit.
+ * 
+ * 
+ */
+public final class Governor {
+
+	/**
+	 * largest piece of a body charged at once
+	 */
+	static final int CHUNK_SIZE = 64 * 1024;
+
+	// how far an idle bucket may let callers run ahead of the rate
+	private static final long BURST_NANOS = TimeUnit.MILLISECONDS
+			.toNanos(100);
+
+	/**
+	 * the time source limits are measured and waited on
+	 */
+	public interface Clock {
+
+		/**
+		 * returns the current time, only differences between values are
+		 * meaningful
+		 * 
+		 * @return the time in nanoseconds
+		 */
+		long nanoTime();
+
+		/**
+		 * wait on the calling thread
+		 * 
+		 * @param nanos
+		 *            how long to wait in nanoseconds, more than 0
+		 * @throws InterruptedException
+		 */
+		void sleep(long nanos) throws InterruptedException;
+	}
+
+	private static final Clock SYSTEM_CLOCK = new Clock() {
+		public long nanoTime() {
+			return System.nanoTime();
+		}
+
+		public void sleep(long nanos) throws InterruptedException {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		}
+	};
+
+	private final Bucket upload;
+	private final Bucket download;
+	private final Bucket requests;
+
+	/**
+	 * constructor for a governor on the system clock, with no limits set
+	 */
+	public Governor() {
+		this(SYSTEM_CLOCK);
+	}
+
+	/**
+	 * constructor for a governor on another time source, such as a simulated
+	 * one, with no limits set
+	 * 
+	 * @param clock
+	 *            the time source
+	 */
+	public Governor(Clock clock) {
+		if (clock == null)
+			throw new IllegalArgumentException("clock must not be null");
+		upload = new Bucket(clock);
+		download = new Bucket(clock);
+		requests = new Bucket(clock);
+	}
+
+	/**
+	 * returns the upload limit
+	 * 
+	 * @return bytes per second, 0 if not limited
+	 */
+	public long getUploadBytesPerSecond() {
+		return upload.rate;
+	}
+
+	/**
+	 * limit the bytes sent in request bodies
+	 * 
+	 * @param rate
+	 *            bytes per second, 0 for no limit
+	 */
+	public void setUploadBytesPerSecond(long rate) {
+		upload.setRate(rate);
+	}
+
+	/**
+	 * returns the download limit
+	 * 
+	 * @return bytes per second, 0 if not limited
+	 */
+	public long getDownloadBytesPerSecond() {
+		return download.rate;
+	}
+
+	/**
+	 * limit the bytes read from response bodies
+	 * 
+	 * @param rate
+	 *            bytes per second, 0 for no limit
+	 */
+	public void setDownloadBytesPerSecond(long rate) {
+		download.setRate(rate);
+	}
+
+	/**
+	 * returns the request limit
+	 * 
+	 * @return requests per second, 0 if not limited
+	 */
+	public long getRequestsPerSecond() {
+		return requests.rate;
+	}
+
+	/**
+	 * limit the requests sent, each retry counting as one
+	 * 
+	 * @param rate
+	 *            requests per second, 0 for no limit
+	 */
+	public void setRequestsPerSecond(long rate) {
+		requests.setRate(rate);
+	}
+
+	/**
+	 * wait for a request to be allowed
+	 * 
+	 * @param priority
+	 *            the priority of the call
+	 * @throws InterruptedIOException
+	 */
+	void acquireRequest(Priority priority) throws InterruptedIOException {
+		requests.acquire(1, priority);
+	}
+
+	/**
+	 * wait for bytes to be allowed out
+	 * 
+	 * @param bytes
+	 *            number of bytes about to be written
+	 * @param priority
+	 *            the priority of the call
+	 * @throws InterruptedIOException
+	 */
+	void acquireUpload(int bytes, Priority priority)
+			throws InterruptedIOException {
+		upload.acquire(bytes, priority);
+	}
+
+	/**
+	 * charge bytes that were read, waiting if they put the caller ahead of
+	 * the rate
+	 * 
+	 * @param bytes
+	 *            number of bytes just read
+	 * @param priority
+	 *            the priority of the call
+	 * @throws InterruptedIOException
+	 */
+	void acquireDownload(int bytes, Priority priority)
+			throws InterruptedIOException {
+		download.acquire(bytes, priority);
+	}
+
+	/**
+	 * one limit, its next free time shared by all callers and a second one
+	 * only interactive callers wait on
+	 */
+	private static final class Bucket {
+		final Clock clock;
+		volatile long rate;
+		final AtomicLong next;
+		final AtomicLong nextInteractive;
+
+		Bucket(Clock clock) {
+			this.clock = clock;
+			next = new AtomicLong(clock.nanoTime());
+			nextInteractive = new AtomicLong(next.get());
+		}
+
+		void setRate(long rate) {
+			if (rate < 0)
+				throw new IllegalArgumentException("rate must not be negative");
+			this.rate = rate;
+		}
+
+		void acquire(long units, Priority priority)
+				throws InterruptedIOException {
+			long rate = this.rate;
+			if (rate == 0 || units <= 0)
+				return;
+			long cost = units * 1000000000L / rate;
+			long now = clock.nanoTime();
+			long start = reserve(next, now, cost);
+			if (priority == Priority.INTERACTIVE)
+				start = reserve(nextInteractive, now, cost);
+			long wait = start - now;
+			if (wait <= 0)
+				return;
+			try {
+				clock.sleep(wait);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while throttled");
+			}
+		}
+
+		/**
+		 * Utility for taking the next free slot of a timeline
+		 * 
+		 * @return when the slot starts
+		 */
+		private static long reserve(AtomicLong timeline, long now, long cost) {
+			while (true) {
+				long next = timeline.get();
+				long start = next - (now - BURST_NANOS) > 0 ? next : now
+						- BURST_NANOS;
+				if (timeline.compareAndSet(next, start + cost))
+					return start;
+			}
+		}
+	}
+
+}
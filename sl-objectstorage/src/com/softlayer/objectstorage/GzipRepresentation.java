@@ -0,0 +1,109 @@
+package com.softlayer.objectstorage;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.restlet.data.Encoding;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * a request body that gzips another one as it is written, so nothing is
+ * buffered beyond the compressor's window. The compressed size is not
+ * known up front and the body goes out with chunked transfer encoding. The
+ * MD5 of the compressed bytes, which is what the server will return as the
+ * ETag, is taken on the way out.
+ * 
+ * 
+ */
+final class GzipRepresentation extends OutputRepresentation {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final Representation source;
+	private volatile String md5;
+
+	/**
+	 * constructor
+	 * 
+	 * @param source
+	 *            the uncompressed body, written once per attempt
+	 */
+	GzipRepresentation(Representation source) {
+		super(source.getMediaType());
+		this.source = source;
+		this.setEncodings(Arrays.asList(Encoding.GZIP));
+		this.setTransient(source.isTransient());
+	}
+
+	/**
+	 * returns the MD5 of the compressed bytes of the last complete write
+	 * 
+	 * @return lower case hex MD5, or null if no write has completed
+	 */
+	String getMd5() {
+		return md5;
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException {
+		md5 = null;
+		DigestOutputStream digest = new DigestOutputStream(
+				new FilterOutputStream(out) {
+					@Override
+					public void write(byte[] b, int off, int len)
+							throws IOException {
+						out.write(b, off, len);
+					}
+
+					@Override
+					public void close() throws IOException {
+						// the connection owns the stream, only end the body
+						flush();
+					}
+				}, Digests.md5());
+		GZIPOutputStream gzip = new GZIPOutputStream(digest, BUFFER_SIZE);
+		try {
+			source.write(gzip);
+			gzip.finish();
+		} finally {
+			// releases the compressor's native memory
+			gzip.close();
+		}
+		md5 = Digests.hex(digest.getMessageDigest());
+	}
+
+}
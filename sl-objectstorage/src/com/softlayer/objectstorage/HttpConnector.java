@@ -0,0 +1,209 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.restlet.Context;
+import org.restlet.data.Parameter;
+import org.restlet.engine.ClientHelper;
+import org.restlet.engine.Engine;
+import org.restlet.data.Protocol;
+import org.restlet.util.Series;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * Long lived, pooled restlet connector owned by a session. Requests go
+ * through one UrlConnectionClientHelper so connections are kept alive and
+ * reused across requests, limited per host, closed by the JDK when they sit
+ * idle, and the truststore and SSL context are loaded once so TLS sessions
+ * can be resumed instead of renegotiated on every call.
+ * 
+ * 
+ */
+class HttpConnector {
+
+	private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 10;
+	private static final int DEFAULT_CONNECT_TIMEOUT = 30 * 1000;
+	private static final int DEFAULT_READ_TIMEOUT = 60 * 1000;
+	private static final String TRUSTSTORE = "objectstoragecacerts.jks";
+	private static final String JDK_HTTP_HELPER = "com.softlayer.objectstorage.JdkHttpClientHelper";
+
+	private volatile int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+	private volatile int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private volatile int readTimeout = DEFAULT_READ_TIMEOUT;
+	private volatile Transport transport = Transport.URL_CONNECTION;
+	private volatile org.restlet.Client client;
+	private static boolean httpClientRegistered;
+
+	static {
+		// only picked when asked for by class name, see start()
+		Engine.getInstance().getRegisteredClients()
+				.add(new UrlConnectionClientHelper(null));
+	}
+
+	/**
+	 * set the maximum number of connections in use per host
+	 * 
+	 * @param max
+	 *            connections per host
+	 */
+	void setMaxConnectionsPerHost(int max) {
+		this.maxConnectionsPerHost = max;
+	}
+
+	/**
+	 * set how long to wait for a connection to be established
+	 * 
+	 * @param millis
+	 *            connect timeout in milliseconds, 0 to wait forever
+	 */
+	void setConnectTimeout(int millis) {
+		this.connectTimeout = millis;
+	}
+
+	/**
+	 * set how long a blocking read may wait for data
+	 * 
+	 * @param millis
+	 *            read timeout in milliseconds, 0 to wait forever
+	 */
+	void setReadTimeout(int millis) {
+		this.readTimeout = millis;
+	}
+
+	/**
+	 * set the http implementation requests are sent through
+	 * 
+	 * @param transport
+	 *            the transport to use
+	 */
+	void setTransport(Transport transport) {
+		if (transport == null)
+			throw new IllegalArgumentException("transport is required");
+		this.transport = transport;
+	}
+
+	/**
+	 * returns the shared restlet connector, starting it on first use
+	 * 
+	 * @return the started connector
+	 * @throws IOException
+	 */
+	org.restlet.Client getClient() throws IOException {
+		org.restlet.Client c = client;
+		if (c == null)
+			c = start();
+		return c;
+	}
+
+	/**
+	 * stop the connector and close all of its connections, the next request
+	 * starts a new one
+	 */
+	synchronized void stop() {
+		if (client == null)
+			return;
+		try {
+			client.stop();
+		} catch (Exception e) {
+			// nothing left to release
+		} finally {
+			client = null;
+		}
+	}
+
+	/**
+	 * Utility for creating and starting the connector with the current
+	 * settings
+	 * 
+	 * @return the started connector
+	 * @throws IOException
+	 */
+	private synchronized org.restlet.Client start() throws IOException {
+		if (client != null)
+			return client;
+
+		Context ctx = new Context();
+		Series<Parameter> params = ctx.getParameters();
+		params.add("maxConnectionsPerHost",
+				Integer.toString(maxConnectionsPerHost));
+		params.add("connectTimeout", Integer.toString(connectTimeout));
+		params.add("readTimeout", Integer.toString(readTimeout));
+		params.add("truststorePath", TRUSTSTORE);
+		params.add("truststorePassword", "changeit");
+		params.add("truststoreType", "JKS");
+
+		org.restlet.Client c = new org.restlet.Client(ctx, Arrays.asList(
+				Protocol.HTTP, Protocol.HTTPS), helperClassName());
+		try {
+			c.start();
+		} catch (Exception e) {
+			IOException ioe = new IOException("unable to start http connector");
+			ioe.initCause(e);
+			throw ioe;
+		}
+		client = c;
+		return c;
+	}
+
+	/**
+	 * Utility for finding the connector helper of the chosen transport,
+	 * registering the java.net.http one on first use
+	 * 
+	 * @return class name of the helper
+	 * @throws IOException
+	 *             if the transport is not available on this runtime
+	 */
+	private String helperClassName() throws IOException {
+		if (transport != Transport.HTTP_CLIENT)
+			return UrlConnectionClientHelper.class.getName();
+		synchronized (HttpConnector.class) {
+			if (!httpClientRegistered) {
+				// by reflection, the helper is not built before Java 11
+				try {
+					Class.forName("java.net.http.HttpClient");
+					Engine.getInstance().getRegisteredClients()
+							.add((ClientHelper) Class.forName(JDK_HTTP_HELPER)
+									.getConstructor(org.restlet.Client.class)
+									.newInstance((Object) null));
+				} catch (Exception e) {
+					IOException ioe = new IOException(
+							"the HTTP_CLIENT transport needs Java 11 or later");
+					ioe.initCause(e);
+					throw ioe;
+				}
+				httpClientRegistered = true;
+			}
+		}
+		return JDK_HTTP_HELPER;
+	}
+
+}
@@ -0,0 +1,322 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Parameter;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * one http exchange made through a java.net.http.HttpClient. The request is
+ * handed to the client asynchronously and its body streamed to it through
+ * a BodyPipe as restlet writes it; the calling thread then waits for the
+ * response headers, for at most the read timeout once the body is sent so
+ * that slow uploads are not cut off. As with UrlConnectionCall a per-host
+ * permit is held for the exchange, which is released once the response body
+ * has been read to the end or closed.
+ * 
+ * 
+ */
+class JdkHttpCall extends MeteredCall {
+
+	// set by the client itself, it refuses values for them
+	private static final Set<String> RESTRICTED_HEADERS = new HashSet<String>(
+			Arrays.asList("connection", "content-length", "expect", "host",
+					"upgrade", "transfer-encoding"));
+
+	private final JdkHttpClientHelper helper;
+	private final AtomicBoolean released = new AtomicBoolean(true);
+	private Semaphore permits;
+	private CompletableFuture<HttpResponse<InputStream>> pending;
+	private HttpResponse<InputStream> response;
+	private BodyPipe body;
+	private boolean responseHeadersAdded;
+
+	/**
+	 * constructor for a new call
+	 * 
+	 * @param helper
+	 *            the connector making the call
+	 * @param method
+	 *            the http method name
+	 * @param requestUri
+	 *            the absolute url to call
+	 */
+	JdkHttpCall(JdkHttpClientHelper helper, String method, String requestUri) {
+		super(helper, method, requestUri);
+		this.helper = helper;
+		URI uri = URI.create(requestUri);
+		setServerAddress(uri.getHost());
+		setServerPort(uri.getPort() == -1 ? ("https".equalsIgnoreCase(uri
+				.getScheme()) ? 443 : 80) : uri.getPort());
+	}
+
+	@Override
+	public Status sendRequest(Request request) {
+		begin(request);
+		try {
+			permits = helper.getPermits(getServerAddress() + ":"
+					+ getServerPort());
+			if (!permits.tryAcquire(helper.getConnectTimeout(),
+					TimeUnit.MILLISECONDS)) {
+				statusCode = Status.CONNECTOR_ERROR_CONNECTION.getCode();
+				report();
+				return new Status(Status.CONNECTOR_ERROR_CONNECTION,
+						"no connection to " + getServerAddress()
+								+ " became available");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			statusCode = Status.CONNECTOR_ERROR_INTERNAL.getCode();
+			report();
+			return new Status(Status.CONNECTOR_ERROR_INTERNAL, e);
+		}
+		released.set(false);
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(URI
+					.create(getRequestUri()));
+			for (Parameter header : getRequestHeaders()) {
+				String name = header.getName().toLowerCase();
+				if (!RESTRICTED_HEADERS.contains(name))
+					builder.header(header.getName(), header.getValue());
+			}
+
+			Representation entity = request.isEntityAvailable() ? request
+					.getEntity() : null;
+			HttpRequest.BodyPublisher publisher;
+			if (entity == null || entity.getSize() == 0) {
+				// an empty PUT still goes out with a zero length
+				publisher = HttpRequest.BodyPublishers.noBody();
+			} else {
+				body = new BodyPipe();
+				final InputStream source = body.source();
+				publisher = HttpRequest.BodyPublishers
+						.ofInputStream(new Supplier<InputStream>() {
+							public InputStream get() {
+								return source;
+							}
+						});
+				if (entity.getSize() > 0)
+					publisher = HttpRequest.BodyPublishers.fromPublisher(
+							publisher, entity.getSize());
+			}
+			builder.method(getMethod(), publisher);
+
+			pending = helper.getHttpClient().sendAsync(builder.build(),
+					HttpResponse.BodyHandlers.ofInputStream());
+			if (body != null) {
+				final BodyPipe pipe = body;
+				// a request that ends early must not leave the writer waiting
+				pending.whenComplete(new BiConsumer<Object, Throwable>() {
+					public void accept(Object result, Throwable failure) {
+						pipe.abort();
+					}
+				});
+			}
+			connected();
+
+			Status status = super.sendRequest(request);
+			if (status.isConnectorError()) {
+				statusCode = status.getCode();
+				this.abandon();
+			}
+			return status;
+		} catch (IllegalArgumentException e) {
+			// a header or url the client will not send
+			statusCode = Status.CONNECTOR_ERROR_COMMUNICATION.getCode();
+			this.abandon();
+			return new Status(Status.CONNECTOR_ERROR_COMMUNICATION, e);
+		} catch (IllegalStateException e) {
+			statusCode = Status.CONNECTOR_ERROR_INTERNAL.getCode();
+			this.abandon();
+			return new Status(Status.CONNECTOR_ERROR_INTERNAL, e);
+		}
+	}
+
+	@Override
+	public Representation getResponseEntity(Response response) {
+		Representation entity = super.getResponseEntity(response);
+		if (entity == null || entity.getSize() == 0
+				|| "HEAD".equals(getMethod())) {
+			// nothing left to read, let the stream go right away
+			if (this.response != null) {
+				try {
+					this.response.body().close();
+				} catch (IOException e) {
+					// the connection is dropped instead of reused
+				}
+			}
+			release();
+		}
+		return entity;
+	}
+
+	@Override
+	public int getStatusCode() throws IOException {
+		if (response == null) {
+			try {
+				int timeout = helper.getReadTimeout();
+				response = timeout > 0 ? pending.get(timeout,
+						TimeUnit.MILLISECONDS) : pending.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				pending.cancel(true);
+				throw new InterruptedIOException("request interrupted");
+			} catch (TimeoutException e) {
+				pending.cancel(true);
+				throw new SocketTimeoutException("no response within "
+						+ helper.getReadTimeout() + "ms");
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException)
+					throw (IOException) cause;
+				throw (IOException) new IOException("request failed")
+						.initCause(cause);
+			}
+			firstByte();
+			statusCode = response.statusCode();
+		}
+		return response.statusCode();
+	}
+
+	@Override
+	public String getReasonPhrase() {
+		// HTTP/2 has no reason phrase, restlet uses the standard one
+		return null;
+	}
+
+	@Override
+	public Series<Parameter> getResponseHeaders() {
+		Series<Parameter> result = super.getResponseHeaders();
+		if (!responseHeadersAdded && response != null) {
+			for (Map.Entry<String, List<String>> header : response.headers()
+					.map().entrySet()) {
+				if (header.getKey().startsWith(":"))
+					continue;
+				for (String value : header.getValue())
+					result.add(header.getKey(), value);
+			}
+			responseHeadersAdded = true;
+		}
+		return result;
+	}
+
+	@Override
+	public InputStream getResponseEntityStream(long size) {
+		if (response == null) {
+			release();
+			return null;
+		}
+		return meter(response.body());
+	}
+
+	@Override
+	public ReadableByteChannel getResponseEntityChannel(long size) {
+		return null;
+	}
+
+	@Override
+	public OutputStream getRequestEntityStream() {
+		if (body == null)
+			throw new IllegalStateException("request has no body");
+		return meter(body.sink());
+	}
+
+	@Override
+	public WritableByteChannel getRequestEntityChannel() {
+		return null;
+	}
+
+	@Override
+	public OutputStream getRequestHeadStream() {
+		return null;
+	}
+
+	@Override
+	protected boolean isClientKeepAlive() {
+		return true;
+	}
+
+	@Override
+	protected boolean isServerKeepAlive() {
+		return true;
+	}
+
+	/**
+	 * Utility for giving back the host permit and reporting the exchange
+	 * exactly once
+	 */
+	@Override
+	void release() {
+		if (permits != null && released.compareAndSet(false, true)) {
+			permits.release();
+			report();
+		}
+	}
+
+	/**
+	 * Utility for giving up on an exchange that failed before its response
+	 */
+	private void abandon() {
+		if (body != null)
+			body.abort();
+		if (pending != null)
+			pending.cancel(true);
+		release();
+	}
+
+}
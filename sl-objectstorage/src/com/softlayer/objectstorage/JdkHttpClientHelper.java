@@ -0,0 +1,151 @@
+package com.softlayer.objectstorage;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import javax.net.ssl.SSLContext;
+
+import org.restlet.Client;
+import org.restlet.Request;
+import org.restlet.data.Protocol;
+import org.restlet.engine.http.ClientCall;
+import org.restlet.engine.http.HttpClientHelper;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * restlet client connector on top of java.net.http.HttpClient. One client
+ * is shared by every call of the connector: it asks for HTTP/2 and so
+ * multiplexes concurrent requests to a host over a single connection where
+ * the server allows it, keeping HTTP/1.1 connections alive otherwise. Its
+ * I/O runs on the client's own selector thread. The truststore parameters
+ * and the per host cap are read as for UrlConnectionClientHelper, the cap
+ * counting exchanges in progress whether or not they share a connection.
+ * Only loaded when the HTTP_CLIENT transport is chosen, so the rest of the
+ * library still runs before Java 11.
+ * 
+ * 
+ */
+public class JdkHttpClientHelper extends HttpClientHelper {
+
+	private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<String, Semaphore>();
+	private volatile HttpClient httpClient;
+	private volatile int maxConnectionsPerHost;
+	private volatile int readTimeout;
+
+	/**
+	 * constructor called by the restlet engine when the connector is created
+	 * 
+	 * @param client
+	 *            the restlet client connector to help
+	 */
+	public JdkHttpClientHelper(Client client) {
+		super(client);
+		getProtocols().add(Protocol.HTTP);
+		getProtocols().add(Protocol.HTTPS);
+	}
+
+	@Override
+	public synchronized void start() throws Exception {
+		maxConnectionsPerHost = Integer.parseInt(getHelpedParameters()
+				.getFirstValue("maxConnectionsPerHost", "10"));
+		readTimeout = Integer.parseInt(getHelpedParameters().getFirstValue(
+				"readTimeout", "60000"));
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.followRedirects(HttpClient.Redirect.NEVER);
+		if (getConnectTimeout() > 0)
+			builder.connectTimeout(Duration.ofMillis(getConnectTimeout()));
+		SSLContext context = UrlConnectionClientHelper
+				.loadSslContext(getHelpedParameters());
+		if (context != null)
+			builder.sslContext(context);
+		httpClient = builder.build();
+		super.start();
+	}
+
+	@Override
+	public synchronized void stop() throws Exception {
+		// idle connections are closed by the client once it is unreachable
+		httpClient = null;
+		hosts.clear();
+		super.stop();
+	}
+
+	@Override
+	public ClientCall create(Request request) {
+		return new JdkHttpCall(this, request.getMethod().toString(), request
+				.getResourceRef().toString());
+	}
+
+	/**
+	 * returns the client shared by all calls
+	 * 
+	 * @return the started client
+	 */
+	HttpClient getHttpClient() {
+		HttpClient client = httpClient;
+		if (client == null)
+			throw new IllegalStateException("connector is not started");
+		return client;
+	}
+
+	/**
+	 * returns how long to wait for the response headers once the request is
+	 * sent
+	 * 
+	 * @return timeout in milliseconds, 0 to wait forever
+	 */
+	int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * returns the permits for exchanges in progress with one host
+	 * 
+	 * @param host
+	 *            host and port of the server
+	 * @return the semaphore guarding that host
+	 */
+	Semaphore getPermits(String host) {
+		Semaphore permits = hosts.get(host);
+		if (permits == null) {
+			Semaphore created = new Semaphore(maxConnectionsPerHost, true);
+			permits = hosts.putIfAbsent(host, created);
+			if (permits == null)
+				permits = created;
+		}
+		return permits;
+	}
+
+}
@@ -0,0 +1,460 @@
+package com.softlayer.objectstorage;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * compact, read only index of the objects in a container, for containers too
+ * large to hold as ObjectFiles or ObjectEntries. Entries are stored in
+ * columns of primitives: every name is packed into one UTF-8 byte array with
+ * an offset table, sizes and last modified times are long arrays and ETags
+ * are 16 byte digests, so an entry costs its name plus about 36 bytes.
+ * 
+ * Entries are sorted by the UTF-8 bytes of their names, the order the server
+ * lists them in, so a name is found by binary search and all names sharing a
+ * prefix form one contiguous range of indexes.
+ * 
+ * 
+ */
+public final class ListingIndex {
+
+	private static final int DIGEST_SIZE = 16;
+
+	private final int count;
+	private final byte[] names;
+	private final int[] offsets;
+	private final long[] sizes;
+	private final long[] lastModified;
+	private final byte[] etags;
+	private final BitSet noEtag;
+
+	/**
+	 * constructor taking over the filled columns of a builder
+	 */
+	private ListingIndex(int count, byte[] names, int[] offsets,
+			long[] sizes, long[] lastModified, byte[] etags, BitSet noEtag) {
+		this.count = count;
+		this.names = names;
+		this.offsets = offsets;
+		this.sizes = sizes;
+		this.lastModified = lastModified;
+		this.etags = etags;
+		this.noEtag = noEtag;
+	}
+
+	/**
+	 * returns the number of objects in the index
+	 * 
+	 * @return the entry count
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * returns the name of an entry
+	 * 
+	 * @param index
+	 *            the entry index
+	 * @return the object name
+	 */
+	public String getName(int index) {
+		check(index);
+		try {
+			return new String(names, offsets[index], offsets[index + 1]
+					- offsets[index], "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * returns the size of an entry
+	 * 
+	 * @param index
+	 *            the entry index
+	 * @return size in bytes
+	 */
+	public long getSize(int index) {
+		check(index);
+		return sizes[index];
+	}
+
+	/**
+	 * returns the last modified time of an entry
+	 * 
+	 * @param index
+	 *            the entry index
+	 * @return milliseconds since the epoch, or -1 if the server sent no
+	 *         readable date
+	 */
+	public long getLastModified(int index) {
+		check(index);
+		return lastModified[index];
+	}
+
+	/**
+	 * returns the ETag of an entry
+	 * 
+	 * @param index
+	 *            the entry index
+	 * @return the ETag as lower case hex, or null if the server sent none
+	 *         that is an MD5
+	 */
+	public String getEtag(int index) {
+		check(index);
+		if (noEtag.get(index))
+			return null;
+		char[] hex = new char[DIGEST_SIZE * 2];
+		for (int i = 0; i < DIGEST_SIZE; i++) {
+			int b = etags[index * DIGEST_SIZE + i] & 0xFF;
+			hex[i * 2] = Character.forDigit(b >> 4, 16);
+			hex[i * 2 + 1] = Character.forDigit(b & 0xF, 16);
+		}
+		return new String(hex);
+	}
+
+	/**
+	 * returns whether an entry has the given ETag, without building a string
+	 * 
+	 * @param index
+	 *            the entry index
+	 * @param etag
+	 *            an MD5 as hex, quotes and case are ignored
+	 * @return true if both are MD5s and they are equal
+	 */
+	public boolean hasEtag(int index, String etag) {
+		check(index);
+		byte[] digest = new byte[DIGEST_SIZE];
+		if (noEtag.get(index) || !parseEtag(etag, digest, 0))
+			return false;
+		for (int i = 0; i < DIGEST_SIZE; i++) {
+			if (digest[i] != etags[index * DIGEST_SIZE + i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * find an object by name
+	 * 
+	 * @param name
+	 *            the object name
+	 * @return the index of the entry, or (-(insertion point) - 1) if there is
+	 *         no such object, as Arrays.binarySearch does
+	 */
+	public int indexOf(String name) {
+		byte[] key = utf8(name);
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = compare(mid, key, false);
+			if (c < 0)
+				low = mid + 1;
+			else if (c > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -(low + 1);
+	}
+
+	/**
+	 * returns the index of the first object whose name starts with a prefix
+	 * 
+	 * @param prefix
+	 *            the name prefix
+	 * @return the first index of the range, equal to prefixEnd if no name
+	 *         has the prefix
+	 */
+	public int prefixStart(String prefix) {
+		return bound(utf8(prefix), false);
+	}
+
+	/**
+	 * returns the index after the last object whose name starts with a
+	 * prefix
+	 * 
+	 * @param prefix
+	 *            the name prefix
+	 * @return the end of the range, exclusive
+	 */
+	public int prefixEnd(String prefix) {
+		return bound(utf8(prefix), true);
+	}
+
+	/**
+	 * Utility for the first index whose name is not below the key; with
+	 * prefix set, names starting with the key count as below it
+	 */
+	private int bound(byte[] key, boolean prefix) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int c = compare(mid, key, prefix);
+			if (c < 0 || (prefix && c == 0))
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Utility for comparing the name of an entry with a key as unsigned
+	 * bytes; with prefix set only the first key length bytes are compared
+	 */
+	private int compare(int index, byte[] key, boolean prefix) {
+		int start = offsets[index];
+		int length = offsets[index + 1] - start;
+		int n = Math.min(length, key.length);
+		for (int i = 0; i < n; i++) {
+			int a = names[start + i] & 0xFF;
+			int b = key[i] & 0xFF;
+			if (a != b)
+				return a - b;
+		}
+		if (prefix && length >= key.length)
+			return 0;
+		return length - key.length;
+	}
+
+	/**
+	 * Utility for rejecting indexes outside the index
+	 */
+	private void check(int index) {
+		if (index < 0 || index >= count)
+			throw new IndexOutOfBoundsException("index " + index + ", size "
+					+ count);
+	}
+
+	/**
+	 * Utility for the UTF-8 bytes of a string
+	 */
+	private static byte[] utf8(String value) {
+		try {
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Utility for parsing a hex MD5 into a digest
+	 * 
+	 * @return false if the value is not a 32 digit hex string
+	 */
+	private static boolean parseEtag(String etag, byte[] out, int offset) {
+		if (etag == null)
+			return false;
+		int start = 0;
+		int end = etag.length();
+		if (end >= 2 && etag.charAt(0) == '"' && etag.charAt(end - 1) == '"') {
+			start++;
+			end--;
+		}
+		if (end - start != DIGEST_SIZE * 2)
+			return false;
+		for (int i = 0; i < DIGEST_SIZE; i++) {
+			int high = Character.digit(etag.charAt(start + i * 2), 16);
+			int low = Character.digit(etag.charAt(start + i * 2 + 1), 16);
+			if (high < 0 || low < 0)
+				return false;
+			out[offset + i] = (byte) ((high << 4) | low);
+		}
+		return true;
+	}
+
+	/**
+	 * Utility for parsing a listing date such as 2012-06-01T12:00:00.123456,
+	 * which the server sends in UTC
+	 * 
+	 * @return milliseconds since the epoch, or -1 if it cannot be read
+	 */
+	static long parseTimestamp(String value) {
+		if (value == null || value.length() < 19 || value.charAt(4) != '-'
+				|| value.charAt(7) != '-' || value.charAt(10) != 'T'
+				|| value.charAt(13) != ':' || value.charAt(16) != ':')
+			return -1;
+		try {
+			int year = Integer.parseInt(value.substring(0, 4));
+			int month = Integer.parseInt(value.substring(5, 7));
+			int day = Integer.parseInt(value.substring(8, 10));
+			int hour = Integer.parseInt(value.substring(11, 13));
+			int minute = Integer.parseInt(value.substring(14, 16));
+			int second = Integer.parseInt(value.substring(17, 19));
+			int millis = 0;
+			if (value.length() > 20 && value.charAt(19) == '.') {
+				for (int i = 20; i < 23; i++) {
+					int digit = i < value.length() ? Character.digit(value
+							.charAt(i), 10) : 0;
+					millis = millis * 10 + Math.max(digit, 0);
+				}
+			}
+			// days since the epoch of a proleptic Gregorian date
+			int y = month <= 2 ? year - 1 : year;
+			int era = (y >= 0 ? y : y - 399) / 400;
+			int yoe = y - era * 400;
+			int doy = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+			int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+			long days = era * 146097L + doe - 719468;
+			return ((days * 24 + hour) * 60 + minute) * 60000L + second
+					* 1000L + millis;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * collects entries and packs them into an index, entries may be added in
+	 * any order
+	 */
+	static final class Builder {
+		private int count;
+		private byte[] names = new byte[4096];
+		private int namesLength;
+		private int[] offsets = new int[129];
+		private long[] sizes = new long[128];
+		private long[] lastModified = new long[128];
+		private byte[] etags = new byte[128 * DIGEST_SIZE];
+		private final BitSet noEtag = new BitSet();
+		private boolean sorted = true;
+
+		/**
+		 * add one object
+		 * 
+		 * @param name
+		 *            the object name
+		 * @param size
+		 *            size in bytes
+		 * @param etag
+		 *            the ETag as hex, may be null
+		 * @param lastModified
+		 *            the listing date, may be null
+		 * @return this builder
+		 */
+		Builder add(String name, long size, String etag, String lastModified) {
+			byte[] bytes = utf8(name);
+			if (count == sizes.length) {
+				int capacity = count * 2;
+				offsets = Arrays.copyOf(offsets, capacity + 1);
+				sizes = Arrays.copyOf(sizes, capacity);
+				this.lastModified = Arrays.copyOf(this.lastModified, capacity);
+				etags = Arrays.copyOf(etags, capacity * DIGEST_SIZE);
+			}
+			if (namesLength + bytes.length > names.length)
+				names = Arrays.copyOf(names, Math.max(names.length * 2,
+						namesLength + bytes.length));
+			if (sorted && count > 0
+					&& compareBytes(names, offsets[count - 1], namesLength,
+							bytes, 0, bytes.length) >= 0)
+				sorted = false;
+			System.arraycopy(bytes, 0, names, namesLength, bytes.length);
+			namesLength += bytes.length;
+			offsets[count + 1] = namesLength;
+			sizes[count] = size;
+			this.lastModified[count] = parseTimestamp(lastModified);
+			if (!parseEtag(etag, etags, count * DIGEST_SIZE))
+				noEtag.set(count);
+			count++;
+			return this;
+		}
+
+		/**
+		 * pack the entries added so far, sorting them if they were not added
+		 * in order
+		 * 
+		 * @return the index
+		 */
+		ListingIndex build() {
+			if (sorted)
+				return new ListingIndex(count, Arrays.copyOf(names,
+						namesLength), Arrays.copyOf(offsets, count + 1), Arrays
+						.copyOf(sizes, count), Arrays.copyOf(lastModified,
+						count), Arrays.copyOf(etags, count * DIGEST_SIZE),
+						(BitSet) noEtag.clone());
+
+			Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++)
+				order[i] = Integer.valueOf(i);
+			Arrays.sort(order, new Comparator<Integer>() {
+				public int compare(Integer a, Integer b) {
+					return compareBytes(names, offsets[a], offsets[a + 1],
+							names, offsets[b], offsets[b + 1]);
+				}
+			});
+			byte[] sortedNames = new byte[namesLength];
+			int[] sortedOffsets = new int[count + 1];
+			long[] sortedSizes = new long[count];
+			long[] sortedDates = new long[count];
+			byte[] sortedEtags = new byte[count * DIGEST_SIZE];
+			BitSet sortedNoEtag = new BitSet();
+			int position = 0;
+			for (int i = 0; i < count; i++) {
+				int from = order[i].intValue();
+				int length = offsets[from + 1] - offsets[from];
+				System.arraycopy(names, offsets[from], sortedNames, position,
+						length);
+				position += length;
+				sortedOffsets[i + 1] = position;
+				sortedSizes[i] = sizes[from];
+				sortedDates[i] = lastModified[from];
+				System.arraycopy(etags, from * DIGEST_SIZE, sortedEtags, i
+						* DIGEST_SIZE, DIGEST_SIZE);
+				if (noEtag.get(from))
+					sortedNoEtag.set(i);
+			}
+			return new ListingIndex(count, sortedNames, sortedOffsets,
+					sortedSizes, sortedDates, sortedEtags, sortedNoEtag);
+		}
+
+		/**
+		 * Utility for comparing two byte ranges as unsigned bytes
+		 */
+		private static int compareBytes(byte[] a, int aStart, int aEnd,
+				byte[] b, int bStart, int bEnd) {
+			int n = Math.min(aEnd - aStart, bEnd - bStart);
+			for (int i = 0; i < n; i++) {
+				int x = a[aStart + i] & 0xFF;
+				int y = b[bStart + i] & 0xFF;
+				if (x != y)
+					return x - y;
+			}
+			return (aEnd - aStart) - (bEnd - bStart);
+		}
+	}
+
+}
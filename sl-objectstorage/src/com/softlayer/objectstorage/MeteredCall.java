@@ -0,0 +1,250 @@
+package com.softlayer.objectstorage;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.restlet.Request;
+import org.restlet.engine.http.ClientCall;
+import org.restlet.engine.http.HttpClientHelper;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * base of the connector calls, it does what they have in common: timing
+ * the exchange and reporting it to the session's MetricsListener, and
+ * charging request and response bodies to the session's Governor as they
+ * flow. Both reach the call as request attributes set by Client.
+ * 
+ * 
+ */
+abstract class MeteredCall extends ClientCall {
+
+	static final String METRICS_LISTENER = "com.softlayer.objectstorage.metrics";
+	static final String OPERATION = "com.softlayer.objectstorage.operation";
+	static final String ATTEMPT = "com.softlayer.objectstorage.attempt";
+	static final String GOVERNOR = "com.softlayer.objectstorage.governor";
+	static final String PRIORITY = "com.softlayer.objectstorage.priority";
+
+	private MetricsListener listener;
+	private Operation operation;
+	private int attempt;
+	private Governor governor;
+	private Priority priority;
+	private long startedAt;
+	private long connectNanos;
+	private long firstByteNanos = -1;
+	private long bytesSent;
+	private long bytesReceived;
+	int statusCode;
+
+	/**
+	 * constructor for a new call
+	 * 
+	 * @param helper
+	 *            the connector making the call
+	 * @param method
+	 *            the http method name
+	 * @param requestUri
+	 *            the absolute url to call
+	 */
+	MeteredCall(HttpClientHelper helper, String method, String requestUri) {
+		super(helper, method, requestUri);
+	}
+
+	/**
+	 * give back what the exchange holds, exactly once, and report it; called
+	 * when the response body has been read to the end or closed, or when
+	 * there is no body to read
+	 */
+	abstract void release();
+
+	/**
+	 * start timing the exchange and pick up the listener and governor
+	 * 
+	 * @param request
+	 *            the request about to be sent
+	 */
+	void begin(Request request) {
+		Object metrics = request.getAttributes().get(METRICS_LISTENER);
+		if (metrics instanceof MetricsListener) {
+			listener = (MetricsListener) metrics;
+			operation = (Operation) request.getAttributes().get(OPERATION);
+			Integer n = (Integer) request.getAttributes().get(ATTEMPT);
+			attempt = n == null ? 1 : n.intValue();
+		}
+		Object limits = request.getAttributes().get(GOVERNOR);
+		if (limits instanceof Governor) {
+			governor = (Governor) limits;
+			priority = (Priority) request.getAttributes().get(PRIORITY);
+		}
+		startedAt = System.nanoTime();
+	}
+
+	/**
+	 * note that the connection is ready for the request to be written
+	 */
+	void connected() {
+		connectNanos = System.nanoTime() - startedAt;
+	}
+
+	/**
+	 * note that the response status has arrived
+	 */
+	void firstByte() {
+		if (firstByteNanos < 0)
+			firstByteNanos = System.nanoTime() - startedAt;
+	}
+
+	/**
+	 * wrap the stream a request body is written to, if anything needs to see
+	 * the bytes
+	 * 
+	 * @param out
+	 *            the stream to the server
+	 * @return the stream to write the body to
+	 */
+	OutputStream meter(OutputStream out) {
+		return listener != null || governor != null ? new MeteredOutputStream(
+				out) : out;
+	}
+
+	/**
+	 * wrap the stream a response body is read from, releasing the exchange
+	 * once it is read to the end or closed
+	 * 
+	 * @param in
+	 *            the stream from the server
+	 * @return the stream to read the body from
+	 */
+	InputStream meter(InputStream in) {
+		return new ReleasingInputStream(in);
+	}
+
+	/**
+	 * Utility for telling the metrics listener, if any, how the exchange went
+	 */
+	void report() {
+		if (listener == null)
+			return;
+		try {
+			listener.onRequest(new RequestEvent(operation, statusCode,
+					attempt, connectNanos, firstByteNanos, System.nanoTime()
+							- startedAt, bytesSent, bytesReceived));
+		} catch (RuntimeException e) {
+			// a broken listener must not break the request
+			Client.logger.warn("metrics listener failed", e);
+		}
+	}
+
+	/**
+	 * response body stream that releases the exchange once it has been read
+	 * to the end or closed
+	 */
+	private class ReleasingInputStream extends FilterInputStream {
+
+		ReleasingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b == -1) {
+				release();
+			} else {
+				bytesReceived++;
+				if (governor != null)
+					governor.acquireDownload(1, priority);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (governor != null)
+				len = Math.min(len, Governor.CHUNK_SIZE);
+			int n = super.read(b, off, len);
+			if (n == -1) {
+				release();
+			} else {
+				bytesReceived += n;
+				if (governor != null)
+					governor.acquireDownload(n, priority);
+			}
+			return n;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				release();
+			}
+		}
+	}
+
+	/**
+	 * request body stream that counts the bytes written to it and holds
+	 * them back to the governor's upload rate
+	 */
+	private class MeteredOutputStream extends FilterOutputStream {
+
+		MeteredOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (governor != null)
+				governor.acquireUpload(1, priority);
+			out.write(b);
+			bytesSent++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				int n = governor == null ? len : Math.min(len,
+						Governor.CHUNK_SIZE);
+				if (governor != null)
+					governor.acquireUpload(n, priority);
+				out.write(b, off, n);
+				bytesSent += n;
+				off += n;
+				len -= n;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,127 @@
+package com.softlayer.objectstorage;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * built in metrics listener that keeps lock free latency histograms and
+ * counters per kind of call, cheap enough to leave on in production. Install
+ * it with {@link Session#setMetricsListener(MetricsListener)} and read
+ * percentiles and throughput with {@link #getStats(Operation)}.
+ * 
+ * 
+ */
+public class Metrics implements MetricsListener {
+
+	private final Map<Operation, Recorder> recorders = new EnumMap<Operation, Recorder>(
+			Operation.class);
+	private final AtomicLong authRefreshes = new AtomicLong();
+	private final long startedAt = System.nanoTime();
+
+	/**
+	 * constructor for an empty set of metrics, rates are measured from now
+	 */
+	public Metrics() {
+		// filled once here and only read afterwards, so no locking is needed
+		for (Operation operation : Operation.values())
+			recorders.put(operation, new Recorder());
+	}
+
+	public void onRequest(RequestEvent event) {
+		Recorder recorder = recorders.get(event.getOperation());
+		recorder.total.record(event.getTotalNanos());
+		if (event.getFirstByteNanos() >= 0)
+			recorder.firstByte.record(event.getFirstByteNanos());
+		if (event.isError())
+			recorder.errors.incrementAndGet();
+		recorder.bytesSent.addAndGet(event.getBytesSent());
+		recorder.bytesReceived.addAndGet(event.getBytesReceived());
+	}
+
+	public void onRetry(Operation operation, int attempt, int status) {
+		recorders.get(operation).retries.incrementAndGet();
+	}
+
+	public void onAuthRefresh() {
+		authRefreshes.incrementAndGet();
+	}
+
+	/**
+	 * returns a snapshot of the metrics of one kind of call
+	 * 
+	 * @param operation
+	 *            the kind of call
+	 * @return the snapshot
+	 */
+	public OperationStats getStats(Operation operation) {
+		Recorder recorder = recorders.get(operation);
+		return new OperationStats(operation, recorder.total,
+				recorder.firstByte, recorder.errors.get(),
+				recorder.retries.get(), recorder.bytesSent.get(),
+				recorder.bytesReceived.get(), System.nanoTime() - startedAt);
+	}
+
+	/**
+	 * returns the latency histogram of one kind of call, for percentiles
+	 * other than those in {@link OperationStats}
+	 * 
+	 * @param operation
+	 *            the kind of call
+	 * @return the live histogram
+	 */
+	public LatencyHistogram getHistogram(Operation operation) {
+		return recorders.get(operation).total;
+	}
+
+	/**
+	 * returns how many times a session fetched a new token
+	 * 
+	 * @return auth refresh count
+	 */
+	public long getAuthRefreshes() {
+		return authRefreshes.get();
+	}
+
+	/**
+	 * the histograms and counters of one kind of call
+	 */
+	private static final class Recorder {
+		final LatencyHistogram total = new LatencyHistogram();
+		final LatencyHistogram firstByte = new LatencyHistogram();
+		final AtomicLong errors = new AtomicLong();
+		final AtomicLong retries = new AtomicLong();
+		final AtomicLong bytesSent = new AtomicLong();
+		final AtomicLong bytesReceived = new AtomicLong();
+	}
+
+}
@@ -0,0 +1,67 @@
+package com.softlayer.objectstorage;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * receives measurements of the calls a session makes. Methods are called on
+ * the threads doing the calls, often many at once, so implementations must be
+ * thread safe and should return quickly. {@link Metrics} is a ready made
+ * implementation.
+ * 
+ * 
+ */
+public interface MetricsListener {
+
+	/**
+	 * called once for every http exchange, including each retry
+	 * 
+	 * @param event
+	 *            the measurements of the exchange
+	 */
+	void onRequest(RequestEvent event);
+
+	/**
+	 * called when a failed call is about to be retried
+	 * 
+	 * @param operation
+	 *            the kind of call
+	 * @param attempt
+	 *            the attempt that failed, starting at 1
+	 * @param status
+	 *            the status it failed with
+	 */
+	void onRetry(Operation operation, int attempt, int status);
+
+	/**
+	 * called when the session fetched a new token
+	 */
+	void onAuthRefresh();
+
+}
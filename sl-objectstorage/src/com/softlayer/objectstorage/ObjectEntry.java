@@ -0,0 +1,170 @@
+package com.softlayer.objectstorage;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * one line of a container listing: an object with the size, ETag, content
+ * type and last modified date the server returned for it, or a pseudo
+ * directory when the listing was made with a delimiter. Entries are plain
+ * values that share their container, and through it the session; a full
+ * ObjectFile is only built when one is asked for to run an operation.
+ * 
+ * 
+ */
+public final class ObjectEntry {
+
+	private final Container container;
+	private final String name;
+	private final long size;
+	private final String etag;
+	private final String contentType;
+	private final String lastModified;
+	private final boolean directory;
+
+	/**
+	 * constructor for a listing entry
+	 * 
+	 * @param container
+	 *            the container that was listed
+	 * @param name
+	 *            the object name, or the directory prefix
+	 * @param size
+	 *            size of the object in bytes
+	 * @param etag
+	 *            ETag (MD5) of the object
+	 * @param contentType
+	 *            content type of the object
+	 * @param lastModified
+	 *            last modified date as returned by the server
+	 * @param directory
+	 *            true if this entry is a pseudo directory
+	 */
+	ObjectEntry(Container container, String name, long size, String etag,
+			String contentType, String lastModified, boolean directory) {
+		this.container = container;
+		this.name = name;
+		this.size = size;
+		this.etag = etag;
+		this.contentType = contentType;
+		this.lastModified = lastModified;
+		this.directory = directory;
+	}
+
+	/**
+	 * returns the name of the object, or the directory prefix including its
+	 * trailing delimiter
+	 * 
+	 * @return the name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * returns the size of the object
+	 * 
+	 * @return size in bytes, 0 for a directory
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * returns the ETag of the object
+	 * 
+	 * @return the ETag, null for a directory
+	 */
+	public String getEtag() {
+		return etag;
+	}
+
+	/**
+	 * returns the content type of the object
+	 * 
+	 * @return the content type, null for a directory
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * returns the last modified date of the object as the server sent it
+	 * 
+	 * @return ISO 8601 date, null for a directory
+	 */
+	public String getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * returns whether this entry is a pseudo directory, which are only
+	 * listed when a delimiter is given
+	 * 
+	 * @return true for a directory
+	 */
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	/**
+	 * returns the name of the container this entry was listed from
+	 * 
+	 * @return the container name
+	 */
+	public String getContainerName() {
+		return container.getName();
+	}
+
+	/**
+	 * returns a handle to run operations on this object, sharing the
+	 * session of the listing
+	 * 
+	 * @return a new ObjectFile for this entry
+	 */
+	public ObjectFile getObjectFile() {
+		return new ObjectFile(name, container);
+	}
+
+	/**
+	 * returns an asynchronous handle to run operations on this object,
+	 * sharing the session of the listing
+	 * 
+	 * @return a new AsyncObjectFile for this entry
+	 */
+	public AsyncObjectFile getAsyncObjectFile() {
+		return new AsyncObjectFile(name, container);
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
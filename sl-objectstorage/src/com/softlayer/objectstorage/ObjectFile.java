@@ -3,16 +3,30 @@ package com.softlayer.objectstorage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Hashtable;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.commons.codec.EncoderException;
-import org.apache.commons.codec.net.URLCodec;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.restlet.data.Encoding;
 import org.restlet.data.Form;
 import org.restlet.data.MediaType;
+import org.restlet.data.Tag;
+import org.restlet.representation.EmptyRepresentation;
 import org.restlet.representation.InputRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.resource.ClientResource;
@@ -54,10 +68,20 @@ import org.restlet.resource.ClientResource;
  */
 public class ObjectFile extends Client {
 
+	private static final int BUFFER_SIZE = 64 * 1024;
+	static final String X_STATIC_LARGE_OBJECT = "X-Static-Large-Object";
+
+	/**
+	 * meta tag holding the uncompressed length of a compressed upload
+	 */
+	public static final String ORIGINAL_LENGTH = "Original-Length";
+
 	private String name;
 	private String containerName;
+	private Container container;
 	private byte[] bytes;
 	private Map<String, Object> headers;
+	private boolean compressed;
 
 	/**
 	 * This class represents a file object in a container on the objectstorage
@@ -84,6 +108,43 @@ public class ObjectFile extends Client {
 
 		super(baseUrl, username, password, auth);
 		this.containerName = containerName;
+		this.container = new Container(containerName, session);
+		this.name = name;
+
+	}
+
+	/**
+	 * This class represents a file object in a container on the objectstorage
+	 * server, making its calls with an existing session
+	 * 
+	 * @param name
+	 *            the name of the server side objectstorage object
+	 * @param containerName
+	 *            the name of the container this object resides in
+	 * @param session
+	 *            the session to make calls with
+	 */
+	public ObjectFile(String name, String containerName, Session session) {
+
+		this(name, new Container(containerName, session));
+
+	}
+
+	/**
+	 * This class represents a file object in a container on the objectstorage
+	 * server, sharing the session and the encoded url prefix of the container
+	 * handle
+	 * 
+	 * @param name
+	 *            the name of the server side objectstorage object
+	 * @param container
+	 *            the container this object resides in
+	 */
+	ObjectFile(String name, Container container) {
+
+		super(container.getSession());
+		this.containerName = container.getName();
+		this.container = container;
 		this.name = name;
 
 	}
@@ -108,7 +169,31 @@ public class ObjectFile extends Client {
 	}
 
 	/**
-	 * return the headers for this client transaction
+	 * returns whether uploads are compressed
+	 * 
+	 * @return true if uploads are gzipped
+	 */
+	public boolean isCompressed() {
+		return compressed;
+	}
+
+	/**
+	 * gzip uploadFile and uploadStream bodies on the fly, storing the object
+	 * with a gzip Content-Encoding and its uncompressed length, when known,
+	 * in the ORIGINAL_LENGTH meta tag. Downloads of gzip or deflate encoded
+	 * objects are always decompressed, whatever this is set to. Large file
+	 * uploads and ranged downloads move the bytes as they are stored.
+	 * 
+	 * @param compressed
+	 *            true to compress uploads
+	 */
+	public void setCompressed(boolean compressed) {
+		this.compressed = compressed;
+	}
+
+	/**
+	 * return the headers for this client transaction, fetched with a HEAD
+	 * request if no request has been made for this file yet
 	 * 
 	 * @return Map of the name value pairs of the headers for this client
 	 *         transaction
@@ -118,12 +203,72 @@ public class ObjectFile extends Client {
 	public Map<String, Object> getMetaTags() throws EncoderException,
 			IOException {
 		if (headers == null)
-			this.loadFileData();
+			this.getMetadata();
 
 		return headers;
 
 	}
 
+	/**
+	 * fetch the size, ETag, content type, last modified date and metadata of
+	 * this file with a HEAD request, the body is not downloaded
+	 * 
+	 * @return the current properties of the file
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public ObjectMetadata getMetadata() throws EncoderException, IOException {
+		Hashtable<String, String> params = super.createAuthParams();
+		ClientResource client = super.head(params, this.getUrl());
+		this.headers = client.getResponseAttributes();
+		return new ObjectMetadata(this.containerName, this.name, client);
+	}
+
+	/**
+	 * replace the tags of this file with a POST request, without uploading
+	 * it again. Every tag not in the map is removed, including those set by
+	 * this library such as {@link #ORIGINAL_LENGTH}, and the server may
+	 * reset the content encoding and large object manifest; use
+	 * {@link #updateMetaTags(Map)} to keep them.
+	 * 
+	 * @param tags
+	 *            Map of tags the file should have, the caller's map is not
+	 *            changed
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public void setMetaTags(Map<String, String> tags) throws EncoderException,
+			IOException {
+		this.postMetaTags(tags, null);
+	}
+
+	/**
+	 * change some tags of this file, keeping the others. The current tags
+	 * are read with a HEAD request and written back with the changes in a
+	 * POST, along with the content encoding and large object manifest the
+	 * POST would otherwise reset. A change made by another client between
+	 * the two requests is lost.
+	 * 
+	 * @param changes
+	 *            Map of tags to set, a null value removes the tag
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public void updateMetaTags(Map<String, String> changes)
+			throws EncoderException, IOException {
+		ObjectMetadata current = this.getMetadata();
+		Map<String, String> tags = new TreeMap<String, String>(
+				String.CASE_INSENSITIVE_ORDER);
+		tags.putAll(current.getMetadata());
+		for (Map.Entry<String, String> change : changes.entrySet()) {
+			if (change.getValue() == null)
+				tags.remove(change.getKey());
+			else
+				tags.put(change.getKey(), change.getValue());
+		}
+		this.postMetaTags(tags, current);
+	}
+
 	/**
 	 * returns a byte[] representation of the file from the objectstorage server
 	 * 
@@ -139,6 +284,110 @@ public class ObjectFile extends Client {
 		return bytes;
 	}
 
+	/**
+	 * download this file from the objectstorage server into a stream, the
+	 * body is copied through a fixed size buffer and never held in memory
+	 * 
+	 * @param out
+	 *            the stream to write the file to, it is not closed
+	 * @return number of bytes written
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public long downloadTo(OutputStream out) throws EncoderException,
+			IOException {
+		InputStream in = this.openStream();
+		try {
+			byte[] buffer = new byte[BUFFER_SIZE];
+			long total = 0;
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+				total += n;
+			}
+			return total;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * download this file from the objectstorage server into a local file, a
+	 * partially written file is removed if the download fails
+	 * 
+	 * @param file
+	 *            the local file to write, replaced if it exists
+	 * @return number of bytes written
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public long downloadTo(File file) throws EncoderException, IOException {
+		FileOutputStream out = new FileOutputStream(file);
+		boolean done = false;
+		try {
+			long total = this.downloadTo(out);
+			done = true;
+			return total;
+		} finally {
+			out.close();
+			if (!done)
+				file.delete();
+		}
+	}
+
+	/**
+	 * download this file into a local file as byte ranges fetched in
+	 * parallel, each written straight to its place in the file. Progress is
+	 * kept in a checkpoint file named after the local file with a ".part"
+	 * suffix, so calling this again after a failure only fetches the ranges
+	 * that are missing. The bytes are written as stored, a compressed object
+	 * is not decompressed.
+	 * 
+	 * @param file
+	 *            the local file to write
+	 * @param rangeSize
+	 *            size of each range in bytes
+	 * @param threads
+	 *            number of ranges fetched at the same time
+	 * @return number of bytes in the file
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public long downloadLargeFile(File file, long rangeSize, int threads)
+			throws EncoderException, IOException {
+		RangedDownload download = new RangedDownload(this.container,
+				this.name, file, rangeSize, threads);
+		download.setPriority(this.getPriority());
+		return download.download();
+	}
+
+	/**
+	 * open a stream over this file on the objectstorage server, the caller
+	 * must close it to give the connection back to the pool. The body is
+	 * hashed as it is read and the read that reaches its end throws an
+	 * IOException if the MD5 does not match the ETag; large objects, whose
+	 * ETag is not the MD5 of their content, are not checked. A gzip or
+	 * deflate encoded body is decompressed, the ETag being checked against
+	 * the bytes as stored.
+	 * 
+	 * @return the response body as a stream
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public InputStream openStream() throws EncoderException, IOException {
+		Hashtable<String, String> params = super.createAuthParams();
+		ClientResource client = super.get(params, this.getUrl());
+		this.headers = client.getResponseAttributes();
+		Representation entity = client.getResponseEntity();
+		InputStream in = entity == null ? null : entity.getStream();
+		if (in == null)
+			return new ByteArrayInputStream(new byte[0]);
+		String etag = contentMd5(client);
+		if (etag != null)
+			in = new VerifyingInputStream(in, etag, this.name);
+		return decode(in, getCustomHttpHeader("Content-Encoding", client));
+	}
+
 	/**
 	 * upload this file from a local file copy to the objectstorage server
 	 * 
@@ -152,27 +401,154 @@ public class ObjectFile extends Client {
 	 */
 	public String uploadFile(String localFileLocation, Map<String, String> tags)
 			throws EncoderException, IOException {
-		if (super.isValidName(this.name)) {
-			File file = new File(localFileLocation);
-			bytes = new byte[(int) file.length()];
-			FileInputStream fis = new FileInputStream(file);
-			fis.read(bytes);
+		return this.uploadFile(new File(localFileLocation), tags);
+	}
+
+	/**
+	 * upload this file from a local file copy to the objectstorage server,
+	 * the file is streamed from disk with a fixed size buffer so any size can
+	 * be sent without holding it in memory. It is hashed on the way out and
+	 * an IOException is thrown if the ETag the server returns does not match.
+	 * 
+	 * @param file
+	 *            the local file
+	 * @param tags
+	 *            Map of tags to attach to this file
+	 * @return etag value of this upload
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public String uploadFile(File file, Map<String, String> tags)
+			throws EncoderException, IOException {
+		return this.uploadFile(file, tags, null);
+	}
+
+	/**
+	 * upload this file from a local file copy to the objectstorage server
+	 * when its MD5 is already known. The MD5 is sent as the ETag of the
+	 * request, so the server refuses to store a body that arrives different.
+	 * 
+	 * @param file
+	 *            the local file
+	 * @param tags
+	 *            Map of tags to attach to this file
+	 * @param md5
+	 *            the MD5 of the file as hex, or null to only check the ETag
+	 *            the server returns
+	 * @return etag value of this upload
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public String uploadFile(File file, Map<String, String> tags, String md5)
+			throws EncoderException, IOException {
+		if (!file.isFile())
+			throw new FileNotFoundException(file.getPath());
+		FileRegionRepresentation body = new FileRegionRepresentation(file,
+				MediaType.ALL);
+		if (compressed)
+			return this.uploadCompressed(body, file.length(), tags);
+		if (md5 != null)
+			body.setTag(new Tag(md5, false));
+		String etag = this.upload(body, tags);
+		Digests.verify(etag, md5 != null ? md5 : body.getMd5(), this.name);
+		return etag;
+	}
+
+	/**
+	 * upload this file from a stream to the objectstorage server, the stream
+	 * is read to its end and closed. It is hashed as it is sent and an
+	 * IOException is thrown if the ETag the server returns does not match.
+	 * 
+	 * @param in
+	 *            the stream to upload
+	 * @param length
+	 *            the number of bytes in the stream, or -1 if unknown in which
+	 *            case the body is sent with chunked transfer encoding
+	 * @param tags
+	 *            Map of tags to attach to this file
+	 * @return etag value of this upload
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	public String uploadStream(InputStream in, long length,
+			Map<String, String> tags) throws EncoderException, IOException {
+		if (compressed)
+			return this.uploadCompressed(new InputRepresentation(in,
+					MediaType.ALL), length, tags);
+		DigestInputStream digest = new DigestInputStream(in, Digests.md5());
+		String etag = this.upload(new InputRepresentation(digest,
+				MediaType.ALL, length < 0 ? Representation.UNKNOWN_SIZE
+						: length), tags);
+		Digests.verify(etag, Digests.hex(digest.getMessageDigest()),
+				this.name);
+		return etag;
+	}
+
+	/**
+	 * upload a large local file as segments sent in parallel, joined by a
+	 * manifest written under this file name. Segments go to the container
+	 * named after this one with a "_segments" suffix, which is created if
+	 * needed; a segment that fails or comes back with the wrong ETag is
+	 * retried on its own. Once the manifest is written, the segments this
+	 * method wrote for the large object it replaced are deleted.
+	 * 
+	 * @param file
+	 *            the local file
+	 * @param tags
+	 *            Map of tags to attach to this file
+	 * @param segmentSize
+	 *            size of each segment in bytes, at most 5GB
+	 * @param threads
+	 *            number of segments uploaded at the same time
+	 * @param staticManifest
+	 *            true to write a static manifest listing each segment and its
+	 *            ETag, false for a dynamic manifest over the segment prefix;
+	 *            a static manifest lists at most 1000 segments
+	 * @return etag value of the manifest upload
+	 * @throws EncoderException
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             if the segment size is out of range or the file needs more
+	 *             segments than the manifest can list, checked before
+	 *             anything is sent
+	 */
+	public String uploadLargeFile(File file, Map<String, String> tags,
+			long segmentSize, int threads, boolean staticManifest)
+			throws EncoderException, IOException {
+		if (!super.isValidObjectName(this.name))
+			throw new EncoderException("invalid file name");
+		if (!file.isFile())
+			throw new FileNotFoundException(file.getPath());
+		SegmentedUpload upload = new SegmentedUpload(this.container,
+				this.name, file, segmentSize, threads);
+		upload.setPriority(this.getPriority());
+		ClientResource client = upload.upload(tags, staticManifest);
+		this.bytes = null;
+		this.headers = client.getResponseAttributes();
+		return Client.getCustomHttpHeader("Etag", client);
+	}
+
+	/**
+	 * Utility for sending a request body to this file on the objectstorage
+	 * server
+	 * 
+	 * @param representation
+	 *            the body to send
+	 * @param tags
+	 *            Map of tags to attach to this file
+	 * @return etag value of this upload
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	private String upload(Representation representation,
+			Map<String, String> tags) throws EncoderException, IOException {
+		if (super.isValidObjectName(this.name)) {
 			Hashtable<String, String> params = super.createAuthParams();
-			Iterator<Map.Entry<String, String>> it = tags.entrySet().iterator();
-			while (it.hasNext()) {
-				Map.Entry<String, String> pairs = (Map.Entry<String, String>) it
-						.next();
-				params.put(Client.X_OBJECT_META + pairs.getKey(),
-						pairs.getValue());
-				it.remove();
-			}
+			addMetaTags(params, tags);
 
-			String uName = super.saferUrlEncode(this.containerName);
-			String fName = super.saferUrlEncode(this.name);
-			Representation representation = new InputRepresentation(
-					new ByteArrayInputStream(bytes), MediaType.ALL);
-			ClientResource client = super.put(params, representation,
-					super.storageurl + "/" + uName + "/" + fName);
+			ClientResource client = super.put(params, representation, this
+					.getUrl());
+			this.bytes = null;
 			this.headers = client.getResponseAttributes();
 			Form head = (Form) this.headers.get("org.restlet.http.headers");
 			return head.getFirstValue("Etag");
@@ -182,6 +558,79 @@ public class ObjectFile extends Client {
 
 	}
 
+	/**
+	 * Utility for setting the tags of this file with a POST request
+	 * 
+	 * @param tags
+	 *            Map of tags the file should have
+	 * @param current
+	 *            the properties to carry over, or null
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	private void postMetaTags(Map<String, String> tags, ObjectMetadata current)
+			throws EncoderException, IOException {
+		if (!super.isValidObjectName(this.name))
+			throw new EncoderException("invalid file name");
+		Hashtable<String, String> params = super.createAuthParams();
+		addMetaTags(params, tags);
+		// restlet only sends Content-Encoding from the entity
+		Representation body = new EmptyRepresentation();
+		if (current != null) {
+			if (current.getManifest() != null)
+				params.put(SegmentedUpload.X_OBJECT_MANIFEST, current
+						.getManifest());
+			if (current.getContentEncoding() != null)
+				body.getEncodings().add(
+						Encoding.valueOf(current.getContentEncoding()));
+		}
+		super.post(params, body, this.getUrl());
+		this.headers = null;
+	}
+
+	/**
+	 * Utility for adding tags to the headers of a request
+	 * 
+	 * @param params
+	 *            the request headers
+	 * @param tags
+	 *            Map of tags, it is not changed
+	 */
+	private static void addMetaTags(Hashtable<String, String> params,
+			Map<String, String> tags) {
+		for (Map.Entry<String, String> tag : tags.entrySet()) {
+			if (tag.getValue() == null)
+				throw new IllegalArgumentException("tag " + tag.getKey()
+						+ " has no value");
+			params.put(Client.X_OBJECT_META + tag.getKey(), tag.getValue());
+		}
+	}
+
+	/**
+	 * Utility for sending a body gzipped, checking the ETag against the MD5
+	 * of the compressed bytes
+	 * 
+	 * @param source
+	 *            the uncompressed body
+	 * @param length
+	 *            the uncompressed length, or -1 if unknown
+	 * @param tags
+	 *            Map of tags to attach to this file
+	 * @return etag value of this upload
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	private String uploadCompressed(Representation source, long length,
+			Map<String, String> tags) throws EncoderException, IOException {
+		GzipRepresentation body = new GzipRepresentation(source);
+		tags = new HashMap<String, String>(tags);
+		if (length >= 0)
+			tags.put(ORIGINAL_LENGTH, Long.toString(length));
+		String etag = this.upload(body, tags);
+		Digests.verify(etag, body.getMd5(), this.name);
+		return etag;
+	}
+
 	/**
 	 * removes this file form the objectstorage server
 	 * 
@@ -191,10 +640,66 @@ public class ObjectFile extends Client {
 	public void remove() throws EncoderException, IOException {
 		// super.auth(username, password);
 		Hashtable<String, String> params = super.createAuthParams();
-		String uName = super.saferUrlEncode(this.containerName);
-		String fName = super.saferUrlEncode(this.name);
-		super.delete(params, super.storageurl + "/" + uName + "/" + fName);
+		super.delete(params, this.getUrl());
+
+	}
 
+	/**
+	 * removes this file from the objectstorage server together with the
+	 * segments it is made of if it is a static large object, a plain file is
+	 * simply removed
+	 * 
+	 * @throws EncoderException
+	 * @throws IOException
+	 *             if the manifest or any of its segments could not be
+	 *             removed
+	 */
+	public void removeWithSegments() throws EncoderException, IOException {
+		Hashtable<String, String> params = super.createAuthParams();
+		params.put(Client.ACCEPT, MediaType.APPLICATION_JSON.toString());
+		ClientResource client = super.deleteForResponse(params, this.getUrl()
+				+ "?multipart-manifest=delete");
+		Representation entity = client.getResponseEntity();
+		String text = entity == null ? null : entity.getText();
+		if (text == null || text.length() == 0)
+			return;
+		JSONObject response;
+		try {
+			response = new JSONObject(text);
+		} catch (JSONException e) {
+			// not a report of segment deletes, removed as a plain file
+			return;
+		}
+		String status = response.optString("Response Status", "200");
+		if (!status.startsWith("2"))
+			throw new IOException("unable to remove " + this.name
+					+ " and its segments: " + status + " "
+					+ response.optJSONArray("Errors"));
+	}
+
+	/**
+	 * returns the segments of this file, which must be a static large
+	 * object; any other file would be downloaded whole
+	 * 
+	 * @return the segment paths as "/container/name", in order
+	 * @throws IOException
+	 */
+	List<String> getSegmentPaths() throws IOException {
+		Hashtable<String, String> params = super.createAuthParams();
+		ClientResource client = super.get(params, this.getUrl()
+				+ "?multipart-manifest=get");
+		Representation entity = client.getResponseEntity();
+		String text = entity == null ? "" : entity.getText();
+		try {
+			JSONArray manifest = new JSONArray(text);
+			List<String> paths = new ArrayList<String>(manifest.length());
+			for (int i = 0; i < manifest.length(); i++)
+				paths.add(manifest.getJSONObject(i).getString("name"));
+			return paths;
+		} catch (JSONException e) {
+			throw (IOException) new IOException("unreadable manifest of "
+					+ this.name).initCause(e);
+		}
 	}
 
 	/**
@@ -208,7 +713,7 @@ public class ObjectFile extends Client {
 		Hashtable<String, String> params = super.createAuthParams();
 		String uName = super.saferUrlEncode(this.containerName);
 		String fName = super.saferUrlEncode(this.name);
-		super.delete(params, super.cdnurl + "/" + uName + "/" + fName);
+		super.delete(params, session.getCdnUrl() + "/" + uName + "/" + fName);
 
 	}
 
@@ -230,10 +735,91 @@ public class ObjectFile extends Client {
 		Hashtable<String, String> params = super.createAuthParams();
 		params.put(Client.X_COPY_FROM, sourceUrl);
 
-		String uName = super.saferUrlEncode(this.containerName);
-		String fName = super.saferUrlEncode(this.name);
+		super.put(params, null, this.getUrl());
+	}
 
-		super.put(params, null, super.storageurl + "/" + uName + "/" + fName);
+	/**
+	 * Utility for the url of this file, the name is encoded onto the
+	 * container's cached prefix
+	 * 
+	 * @return the encoded url of this file
+	 * @throws IOException
+	 */
+	private String getUrl() throws IOException {
+		return container.getObjectUrl(this.name);
+	}
+
+	/**
+	 * Utility for decompressing a body stored with a content encoding. The
+	 * rest of the body is read once the compressed data ends, so a
+	 * VerifyingInputStream beneath sees its end.
+	 * 
+	 * @param in
+	 *            the body as stored
+	 * @param encoding
+	 *            the Content-Encoding of the response, or null
+	 * @return a stream over the original bytes
+	 * @throws IOException
+	 */
+	private static InputStream decode(final InputStream in, String encoding)
+			throws IOException {
+		if (encoding == null || encoding.equalsIgnoreCase("identity"))
+			return in;
+		if (encoding.equalsIgnoreCase("gzip")
+				|| encoding.equalsIgnoreCase("x-gzip")) {
+			return new GZIPInputStream(in, BUFFER_SIZE) {
+				@Override
+				public int read(byte[] b, int off, int len)
+						throws IOException {
+					int n = super.read(b, off, len);
+					if (n < 0)
+						drain(in);
+					return n;
+				}
+			};
+		}
+		if (encoding.equalsIgnoreCase("deflate")) {
+			return new InflaterInputStream(in) {
+				@Override
+				public int read(byte[] b, int off, int len)
+						throws IOException {
+					int n = super.read(b, off, len);
+					if (n < 0)
+						drain(in);
+					return n;
+				}
+			};
+		}
+		return in;
+	}
+
+	/**
+	 * Utility for reading a stream to its end
+	 */
+	private static void drain(InputStream in) throws IOException {
+		byte[] buffer = new byte[512];
+		while (in.read(buffer) != -1) {
+			// anything after the compressed data is not part of the file
+		}
+	}
+
+	/**
+	 * Utility for finding the ETag of a response that is the MD5 of its
+	 * body, which is not so for ranges and large object manifests
+	 * 
+	 * @param client
+	 *            the response
+	 * @return the ETag, or null if the body cannot be checked against it
+	 */
+	private static String contentMd5(ClientResource client) {
+		if (client.getStatus().getCode() != 200
+				|| getCustomHttpHeader(SegmentedUpload.X_OBJECT_MANIFEST,
+						client) != null
+				|| getCustomHttpHeader(X_STATIC_LARGE_OBJECT, client) != null)
+			return null;
+		String etag = SegmentedUpload.unquote(getCustomHttpHeader("Etag",
+				client));
+		return etag != null && etag.length() == 32 ? etag : null;
 	}
 
 	/**
@@ -243,18 +829,9 @@ public class ObjectFile extends Client {
 	 * @throws IOException
 	 */
 	private void loadFileData() throws EncoderException, IOException {
-		Hashtable<String, String> params = super.createAuthParams();
-		URLCodec ucode = new URLCodec();
-		String uName = ucode.encode(this.containerName)
-				.replaceAll("\\+", "%20");
-		String fName = ucode.encode(this.name).replaceAll("\\+", "%20");
-		ClientResource client = super.get(params, super.storageurl + "/"
-				+ uName + "/" + fName);
 		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-
-		client.get().write(outputStream);
+		this.downloadTo(outputStream);
 		this.bytes = outputStream.toByteArray();
-		this.headers = client.getResponseAttributes();
 	}
 
 }
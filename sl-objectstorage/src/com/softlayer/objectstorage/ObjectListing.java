@@ -0,0 +1,167 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.apache.commons.codec.EncoderException;
+import org.restlet.data.Status;
+import org.restlet.resource.ResourceException;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * lazy listing of the objects in a container. Pages are fetched with
+ * marker/limit as the caller iterates, so containers of any size can be
+ * walked in bounded memory, and the next page is requested in the background
+ * as soon as the current one arrives. Every call to iterator() starts a new
+ * walk from the beginning. Errors during iteration surface as a
+ * ResourceException.
+ * 
+ * 
+ */
+public final class ObjectListing implements Iterable<ObjectEntry> {
+
+	private final Container container;
+	private final String prefix;
+	private final String delimiter;
+	private final int pageSize;
+
+	/**
+	 * constructor for a listing of one container
+	 * 
+	 * @param container
+	 *            the container to list
+	 * @param prefix
+	 *            only list names starting with this, or null
+	 * @param delimiter
+	 *            roll names up to the first delimiter after the prefix into
+	 *            directory entries, or null
+	 * @param pageSize
+	 *            number of entries fetched per request
+	 */
+	ObjectListing(Container container, String prefix, String delimiter,
+			int pageSize) {
+		this.container = container;
+		this.prefix = prefix;
+		this.delimiter = delimiter;
+		this.pageSize = pageSize;
+	}
+
+	public Iterator<ObjectEntry> iterator() {
+		return new PageIterator();
+	}
+
+	/**
+	 * Utility for requesting a page in the background
+	 * 
+	 * @param marker
+	 *            list names after this one, or null for the first page
+	 * @return the pending page
+	 */
+	private Future<List<ObjectEntry>> fetch(final String marker) {
+		return container.getSession().getExecutor()
+				.submit(new Callable<List<ObjectEntry>>() {
+					public List<ObjectEntry> call() throws Exception {
+						return container.loadPage(prefix, delimiter, marker,
+								pageSize);
+					}
+				});
+	}
+
+	/**
+	 * Utility for waiting on a page, rethrowing its failure unchecked
+	 * 
+	 * @param page
+	 *            the pending page
+	 * @return the entries of the page
+	 */
+	private static List<ObjectEntry> await(Future<List<ObjectEntry>> page) {
+		try {
+			return page.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ResourceException(Status.CONNECTOR_ERROR_INTERNAL, e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			if (cause instanceof EncoderException)
+				throw new ResourceException(Status.CLIENT_ERROR_BAD_REQUEST,
+						cause);
+			if (cause instanceof IOException)
+				throw new ResourceException(
+						Status.CONNECTOR_ERROR_COMMUNICATION, cause);
+			throw new ResourceException(Status.CONNECTOR_ERROR_INTERNAL, cause);
+		}
+	}
+
+	/**
+	 * walks the pages of the listing, keeping one page in flight ahead of
+	 * the caller
+	 */
+	private final class PageIterator implements Iterator<ObjectEntry> {
+
+		private Iterator<ObjectEntry> page = Collections
+				.<ObjectEntry> emptyList().iterator();
+		private Future<List<ObjectEntry>> next = fetch(null);
+
+		public boolean hasNext() {
+			while (!page.hasNext()) {
+				if (next == null)
+					return false;
+				List<ObjectEntry> entries = await(next);
+				// a short page is the last one
+				next = entries.size() < pageSize ? null : fetch(entries.get(
+						entries.size() - 1).getName());
+				page = entries.iterator();
+			}
+			return true;
+		}
+
+		public ObjectEntry next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return page.next();
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package com.softlayer.objectstorage;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import org.restlet.engine.util.DateUtils;
+import org.restlet.resource.ClientResource;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * the properties and metadata of an object as returned by a HEAD request,
+ * read without downloading the object.
+ * 
+ * 
+ */
+public final class ObjectMetadata {
+
+	private final String containerName;
+	private final String name;
+	private final long size;
+	private final String etag;
+	private final String contentType;
+	private final String contentEncoding;
+	private final long lastModified;
+	private final boolean largeObject;
+	private final String manifest;
+	private final Map<String, String> metadata;
+
+	/**
+	 * constructor reading the headers of a HEAD response
+	 * 
+	 * @param containerName
+	 *            the container of the object
+	 * @param name
+	 *            the object name
+	 * @param head
+	 *            the response to the HEAD request
+	 */
+	ObjectMetadata(String containerName, String name, ClientResource head) {
+		this.containerName = containerName;
+		this.name = name;
+		this.size = Client.getLongHttpHeader("Content-Length", head);
+		this.etag = SegmentedUpload.unquote(Client.getCustomHttpHeader(
+				"Etag", head));
+		this.contentType = Client.getCustomHttpHeader("Content-Type", head);
+		this.contentEncoding = Client.getCustomHttpHeader("Content-Encoding",
+				head);
+		String date = Client.getCustomHttpHeader("Last-Modified", head);
+		Date parsed = date == null ? null : DateUtils.parse(date);
+		this.lastModified = parsed == null ? 0 : parsed.getTime();
+		this.manifest = Client.getCustomHttpHeader(
+				SegmentedUpload.X_OBJECT_MANIFEST, head);
+		this.largeObject = manifest != null
+				|| Client.getCustomHttpHeader(
+						ObjectFile.X_STATIC_LARGE_OBJECT, head) != null;
+		this.metadata = Collections.unmodifiableMap(Client
+				.getCustomHttpHeaders(Client.X_OBJECT_META, head));
+	}
+
+	/**
+	 * returns the name of the container the object is in
+	 * 
+	 * @return the container name
+	 */
+	public String getContainerName() {
+		return containerName;
+	}
+
+	/**
+	 * returns the name of the object
+	 * 
+	 * @return the object name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * returns the size of the object as stored, which for a compressed
+	 * object is its compressed size
+	 * 
+	 * @return size in bytes, or -1 if the server did not send it
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * returns the ETag of the object, the MD5 of its content unless it is a
+	 * large object
+	 * 
+	 * @return the ETag without quotes, or null
+	 */
+	public String getEtag() {
+		return etag;
+	}
+
+	/**
+	 * returns the content type of the object
+	 * 
+	 * @return the content type, or null
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * returns the encoding the object is stored with
+	 * 
+	 * @return the content encoding such as gzip, or null if not encoded
+	 */
+	public String getContentEncoding() {
+		return contentEncoding;
+	}
+
+	/**
+	 * returns when the object was last modified
+	 * 
+	 * @return milliseconds since the epoch, 0 if unknown
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * returns whether the object is a dynamic or static large object, whose
+	 * content is made of segments
+	 * 
+	 * @return true for a large object manifest
+	 */
+	public boolean isLargeObject() {
+		return largeObject;
+	}
+
+	/**
+	 * returns the segment prefix of a dynamic large object
+	 * 
+	 * @return the X-Object-Manifest value, or null
+	 */
+	String getManifest() {
+		return manifest;
+	}
+
+	/**
+	 * returns the metadata attached to the object
+	 * 
+	 * @return the values by name without the X-Object-Meta- prefix, looked
+	 *         up regardless of case
+	 */
+	public Map<String, String> getMetadata() {
+		return metadata;
+	}
+
+	@Override
+	public String toString() {
+		return containerName + "/" + name + " (" + size + " bytes, " + etag
+				+ ")";
+	}
+
+}
@@ -0,0 +1,235 @@
+package com.softlayer.objectstorage;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * snapshot of the metrics of one kind of call, taken from {@link Metrics}.
+ * Latencies are in nanoseconds and cover each http exchange from the moment
+ * it was handed to the connector until its response body was finished with.
+ * 
+ * 
+ */
+public final class OperationStats {
+
+	private final Operation operation;
+	private final long requests;
+	private final long errors;
+	private final long retries;
+	private final long bytesSent;
+	private final long bytesReceived;
+	private final long elapsedNanos;
+	private final long p50;
+	private final long p99;
+	private final long p999;
+	private final long max;
+	private final long firstByteP50;
+	private final long firstByteP99;
+
+	/**
+	 * constructor for a snapshot
+	 * 
+	 * @param operation
+	 *            the kind of call
+	 * @param total
+	 *            histogram of total latencies
+	 * @param firstByte
+	 *            histogram of times to first byte
+	 * @param errors
+	 *            exchanges that failed
+	 * @param retries
+	 *            calls retried
+	 * @param bytesSent
+	 *            request body bytes written
+	 * @param bytesReceived
+	 *            response body bytes read
+	 * @param elapsedNanos
+	 *            time over which the counts were collected
+	 */
+	OperationStats(Operation operation, LatencyHistogram total,
+			LatencyHistogram firstByte, long errors, long retries,
+			long bytesSent, long bytesReceived, long elapsedNanos) {
+		this.operation = operation;
+		this.requests = total.getCount();
+		this.errors = errors;
+		this.retries = retries;
+		this.bytesSent = bytesSent;
+		this.bytesReceived = bytesReceived;
+		this.elapsedNanos = elapsedNanos;
+		this.p50 = total.getPercentile(0.5);
+		this.p99 = total.getPercentile(0.99);
+		this.p999 = total.getPercentile(0.999);
+		this.max = total.getMax();
+		this.firstByteP50 = firstByte.getPercentile(0.5);
+		this.firstByteP99 = firstByte.getPercentile(0.99);
+	}
+
+	/**
+	 * returns the kind of call
+	 * 
+	 * @return the operation
+	 */
+	public Operation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * returns the number of http exchanges, retries included
+	 * 
+	 * @return request count
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * returns the number of exchanges that got no response or an error
+	 * status
+	 * 
+	 * @return error count
+	 */
+	public long getErrors() {
+		return errors;
+	}
+
+	/**
+	 * returns the number of times a call was retried
+	 * 
+	 * @return retry count
+	 */
+	public long getRetries() {
+		return retries;
+	}
+
+	/**
+	 * returns the number of request body bytes written
+	 * 
+	 * @return bytes sent
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * returns the number of response body bytes read
+	 * 
+	 * @return bytes received
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+	/**
+	 * returns the median latency
+	 * 
+	 * @return latency in nanoseconds
+	 */
+	public long getP50() {
+		return p50;
+	}
+
+	/**
+	 * returns the 99th percentile latency
+	 * 
+	 * @return latency in nanoseconds
+	 */
+	public long getP99() {
+		return p99;
+	}
+
+	/**
+	 * returns the 99.9th percentile latency
+	 * 
+	 * @return latency in nanoseconds
+	 */
+	public long getP999() {
+		return p999;
+	}
+
+	/**
+	 * returns the highest latency
+	 * 
+	 * @return latency in nanoseconds
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * returns the median time until the response status arrived
+	 * 
+	 * @return time in nanoseconds
+	 */
+	public long getFirstByteP50() {
+		return firstByteP50;
+	}
+
+	/**
+	 * returns the 99th percentile time until the response status arrived
+	 * 
+	 * @return time in nanoseconds
+	 */
+	public long getFirstByteP99() {
+		return firstByteP99;
+	}
+
+	/**
+	 * returns the request rate over the time the counts were collected
+	 * 
+	 * @return requests per second
+	 */
+	public double getRequestsPerSecond() {
+		return perSecond(requests);
+	}
+
+	/**
+	 * returns the transfer rate in both directions over the time the counts
+	 * were collected
+	 * 
+	 * @return bytes per second
+	 */
+	public double getBytesPerSecond() {
+		return perSecond(bytesSent + bytesReceived);
+	}
+
+	private double perSecond(long value) {
+		return elapsedNanos <= 0 ? 0 : value * 1e9 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s requests=%d errors=%d retries=%d "
+				+ "p50=%.1fms p99=%.1fms p999=%.1fms max=%.1fms "
+				+ "ttfb.p50=%.1fms %.1freq/s %.0fB/s", operation, requests,
+				errors, retries, p50 / 1e6, p99 / 1e6, p999 / 1e6, max / 1e6,
+				firstByteP50 / 1e6, getRequestsPerSecond(),
+				getBytesPerSecond());
+	}
+
+}
@@ -0,0 +1,302 @@
+package com.softlayer.objectstorage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.codec.EncoderException;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ClientResource;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * downloads an object into a local file as byte ranges fetched in parallel.
+ * The file is sized up front and every range is written straight to its
+ * position in the file. Finished ranges are recorded in a small checkpoint
+ * file next to the target so an interrupted download can pick up where it
+ * stopped; the checkpoint is only trusted while the object's size and ETag
+ * are unchanged.
+ * 
+ * 
+ */
+class RangedDownload extends Client {
+
+	static final String CHECKPOINT_SUFFIX = ".part";
+
+	private final Container container;
+	private final String name;
+	private final File file;
+	private final File checkpoint;
+	private final long rangeSize;
+	private final int threads;
+
+	/**
+	 * constructor for a download of one object
+	 * 
+	 * @param container
+	 *            the container holding the object, whose session is used
+	 * @param name
+	 *            the object name
+	 * @param file
+	 *            the local file to write
+	 * @param rangeSize
+	 *            size of each range in bytes, the last one may be smaller
+	 * @param threads
+	 *            number of ranges fetched at the same time
+	 */
+	RangedDownload(Container container, String name, File file,
+			long rangeSize, int threads) {
+		super(container.getSession());
+		if (rangeSize <= 0)
+			throw new IllegalArgumentException("range size must be positive");
+		if (threads <= 0)
+			throw new IllegalArgumentException("threads must be positive");
+		this.container = container;
+		this.name = name;
+		this.file = file;
+		this.checkpoint = new File(file.getPath() + CHECKPOINT_SUFFIX);
+		this.rangeSize = rangeSize;
+		this.threads = threads;
+	}
+
+	/**
+	 * fetch every range not already recorded in the checkpoint
+	 * 
+	 * @return size of the object in bytes
+	 * @throws EncoderException
+	 * @throws IOException
+	 */
+	long download() throws EncoderException, IOException {
+		final String url = container.getObjectUrl(name);
+		ClientResource head = super.head(super.createAuthParams(), url);
+		String length = Client.getCustomHttpHeader("Content-Length", head);
+		if (length == null)
+			throw new IOException("size of " + name + " is unknown");
+		final long size = Long.parseLong(length.trim());
+		final String etag = SegmentedUpload.unquote(Client
+				.getCustomHttpHeader("Etag", head));
+		int count = (int) ((size + rangeSize - 1) / rangeSize);
+
+		final BitSet done = this.readCheckpoint(size, etag);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			if (raf.length() != size) {
+				done.clear();
+				raf.setLength(size);
+			}
+			final FileChannel channel = raf.getChannel();
+			List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(count);
+			for (int i = 0; i < count; i++) {
+				if (done.get(i))
+					continue;
+				final int index = i;
+				tasks.add(new Callable<Void>() {
+					public Void call() throws Exception {
+						long offset = index * rangeSize;
+						fetch(url, etag, channel, offset,
+								Math.min(rangeSize, size - offset));
+						// the range must be on disk before the checkpoint
+						// says so
+						channel.force(false);
+						synchronized (done) {
+							done.set(index);
+							writeCheckpoint(size, etag, done);
+						}
+						return null;
+					}
+				});
+			}
+			Tasks.runAll(tasks, threads);
+		} finally {
+			raf.close();
+		}
+		checkpoint.delete();
+		return size;
+	}
+
+	/**
+	 * Utility for fetching one range into the file, fetching it again if the
+	 * connection breaks while the body is read; failures before the body are
+	 * retried by the session's retry policy
+	 * 
+	 * @param url
+	 *            the object url
+	 * @param etag
+	 *            the ETag the object had when the download started
+	 * @param channel
+	 *            the file to write to
+	 * @param offset
+	 *            position of the first byte of the range
+	 * @param length
+	 *            number of bytes in the range
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void fetch(String url, String etag, FileChannel channel,
+			long offset, long length) throws IOException, InterruptedException {
+		RetryPolicy policy = session.getRetryPolicy();
+		for (int attempt = 1;; attempt++) {
+			Hashtable<String, String> params = super.createAuthParams();
+			params.put(Client.RANGE, "bytes=" + offset + "-"
+					+ (offset + length - 1));
+			ClientResource client = super.get(params, url);
+			Representation entity = client.getResponseEntity();
+			InputStream in = entity == null ? null : entity.getStream();
+			if (in == null)
+				throw new IOException("no body for range at " + offset);
+			try {
+				if (!Status.SUCCESS_PARTIAL_CONTENT.equals(client.getStatus())
+						&& length != channel.size())
+					throw new IOException("range request for " + name
+							+ " was not honoured");
+				String current = SegmentedUpload.unquote(Client
+						.getCustomHttpHeader("Etag", client));
+				if (etag != null && current != null
+						&& !etag.equalsIgnoreCase(current))
+					throw new IOException(name
+							+ " changed during the download");
+				try {
+					ReadableByteChannel source = Channels.newChannel(in);
+					long position = offset;
+					long end = offset + length;
+					while (position < end) {
+						long n = channel.transferFrom(source, position, end
+								- position);
+						if (n <= 0)
+							throw new IOException("range at " + offset
+									+ " ended early");
+						position += n;
+					}
+					return;
+				} catch (IOException e) {
+					if (attempt >= policy.getMaxAttempts())
+						throw e;
+					logger.warn("retrying range at " + offset + " of " + name,
+							e);
+				}
+			} finally {
+				in.close();
+			}
+			Thread.sleep(policy.getDelay(attempt));
+		}
+	}
+
+	/**
+	 * Utility for loading the finished ranges of an earlier attempt
+	 * 
+	 * @param size
+	 *            current size of the object
+	 * @param etag
+	 *            current ETag of the object
+	 * @return the finished range indexes, empty if there is no usable
+	 *         checkpoint
+	 * @throws IOException
+	 */
+	private BitSet readCheckpoint(long size, String etag) throws IOException {
+		BitSet done = new BitSet();
+		if (!checkpoint.isFile())
+			return done;
+		Properties state = new Properties();
+		InputStream in = new FileInputStream(checkpoint);
+		try {
+			state.load(in);
+		} finally {
+			in.close();
+		}
+		if (!String.valueOf(size).equals(state.getProperty("size"))
+				|| !String.valueOf(rangeSize).equals(
+						state.getProperty("rangeSize"))
+				|| etag == null || !etag.equals(state.getProperty("etag")))
+			return done;
+		for (String index : state.getProperty("done", "").split(",")) {
+			if (index.length() > 0)
+				done.set(Integer.parseInt(index));
+		}
+		return done;
+	}
+
+	/**
+	 * Utility for recording the finished ranges, the checkpoint is replaced
+	 * in one rename so a crash never leaves it half written
+	 * 
+	 * @param size
+	 *            size of the object
+	 * @param etag
+	 *            ETag of the object
+	 * @param done
+	 *            the finished range indexes
+	 * @throws IOException
+	 */
+	private void writeCheckpoint(long size, String etag, BitSet done)
+			throws IOException {
+		if (etag == null)
+			return;
+		StringBuilder indexes = new StringBuilder();
+		for (int i = done.nextSetBit(0); i >= 0; i = done.nextSetBit(i + 1)) {
+			if (indexes.length() > 0)
+				indexes.append(',');
+			indexes.append(i);
+		}
+		Properties state = new Properties();
+		state.setProperty("size", String.valueOf(size));
+		state.setProperty("rangeSize", String.valueOf(rangeSize));
+		state.setProperty("etag", etag);
+		state.setProperty("done", indexes.toString());
+
+		File tmp = new File(checkpoint.getPath() + ".tmp");
+		OutputStream out = new FileOutputStream(tmp);
+		try {
+			state.store(out, null);
+		} finally {
+			out.close();
+		}
+		if (!tmp.renameTo(checkpoint)) {
+			checkpoint.delete();
+			if (!tmp.renameTo(checkpoint))
+				throw new IOException("could not write " + checkpoint);
+		}
+	}
+
+}
@@ -0,0 +1,169 @@
+package com.softlayer.objectstorage;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * measurements of one http exchange, reported once its response body has
+ * been read or discarded. Times are in nanoseconds from the moment the request
+ * was handed to the connector.
+ * 
+ * 
+ */
+public final class RequestEvent {
+
+	private final Operation operation;
+	private final int status;
+	private final int attempt;
+	private final long connectNanos;
+	private final long firstByteNanos;
+	private final long totalNanos;
+	private final long bytesSent;
+	private final long bytesReceived;
+
+	/**
+	 * constructor for the measurements of an exchange
+	 * 
+	 * @param operation
+	 *            the kind of call
+	 * @param status
+	 *            the http status, or a restlet connector error code (1000 and
+	 *            up) if no response was received
+	 * @param attempt
+	 *            which attempt of the call this was, starting at 1
+	 * @param connectNanos
+	 *            time taken to get a connection
+	 * @param firstByteNanos
+	 *            time until the response status arrived, -1 if it never did
+	 * @param totalNanos
+	 *            time until the response body was finished with
+	 * @param bytesSent
+	 *            request body bytes written
+	 * @param bytesReceived
+	 *            response body bytes read
+	 */
+	RequestEvent(Operation operation, int status, int attempt,
+			long connectNanos, long firstByteNanos, long totalNanos,
+			long bytesSent, long bytesReceived) {
+		this.operation = operation;
+		this.status = status;
+		this.attempt = attempt;
+		this.connectNanos = connectNanos;
+		this.firstByteNanos = firstByteNanos;
+		this.totalNanos = totalNanos;
+		this.bytesSent = bytesSent;
+		this.bytesReceived = bytesReceived;
+	}
+
+	/**
+	 * returns the kind of call
+	 * 
+	 * @return the operation
+	 */
+	public Operation getOperation() {
+		return operation;
+	}
+
+	/**
+	 * returns the http status of the response
+	 * 
+	 * @return the status code, or a restlet connector error code (1000 and
+	 *         up) if no response was received
+	 */
+	public int getStatus() {
+		return status;
+	}
+
+	/**
+	 * returns whether the exchange failed, either without a response or with
+	 * an error status
+	 * 
+	 * @return true for status 400 and up
+	 */
+	public boolean isError() {
+		return status >= 400;
+	}
+
+	/**
+	 * returns which attempt of the call this was
+	 * 
+	 * @return the attempt, starting at 1
+	 */
+	public int getAttempt() {
+		return attempt;
+	}
+
+	/**
+	 * returns the time taken to get a connection, close to 0 when a pooled
+	 * one was reused
+	 * 
+	 * @return time in nanoseconds
+	 */
+	public long getConnectNanos() {
+		return connectNanos;
+	}
+
+	/**
+	 * returns the time until the response status arrived, which includes
+	 * sending the request body
+	 * 
+	 * @return time in nanoseconds, -1 if no response arrived
+	 */
+	public long getFirstByteNanos() {
+		return firstByteNanos;
+	}
+
+	/**
+	 * returns the time until the response body was finished with
+	 * 
+	 * @return time in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	/**
+	 * returns the number of request body bytes written
+	 * 
+	 * @return bytes sent
+	 */
+	public long getBytesSent() {
+		return bytesSent;
+	}
+
+	/**
+	 * returns the number of response body bytes read
+	 * 
+	 * @return bytes received
+	 */
+	public long getBytesReceived() {
+		return bytesReceived;
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.softlayer.objectstorage;
+
+import java.util.Random;
+
+import org.restlet.data.Status;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * how a session retries requests that fail for reasons that are likely to go
+ * away: lost or refused connections, 408, 429 and the 5xx answers a busy proxy
+ * tier gives. Attempts are spaced with exponential backoff and full jitter,
+ * and no retry is started that would end past the operation's deadline.
+ * Policies are immutable and can be shared between sessions.
+ * 
+ * 
+ */
+public final class RetryPolicy {
+
+	/**
+	 * 4 attempts, backoff from 200ms up to 10s, 2 minutes per operation
+	 */
+	public static final RetryPolicy DEFAULT = new RetryPolicy(4, 200, 10000,
+			120000);
+
+	/**
+	 * a single attempt
+	 */
+	public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 0);
+
+	private static final Random random = new Random();
+
+	private final int maxAttempts;
+	private final long baseDelay;
+	private final long maxDelay;
+	private final long deadline;
+
+	/**
+	 * constructor for a retry policy
+	 * 
+	 * @param maxAttempts
+	 *            most times a request is sent, including the first
+	 * @param baseDelay
+	 *            upper bound in milliseconds of the wait before the first
+	 *            retry, doubled for each later one
+	 * @param maxDelay
+	 *            upper bound in milliseconds of any single wait
+	 * @param deadline
+	 *            time in milliseconds an operation may take over all its
+	 *            attempts before no more are started, 0 for no limit
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay,
+			long deadline) {
+		if (maxAttempts <= 0)
+			throw new IllegalArgumentException(
+					"at least one attempt is needed");
+		if (baseDelay < 0 || maxDelay < 0 || deadline < 0)
+			throw new IllegalArgumentException("times can not be negative");
+		this.maxAttempts = maxAttempts;
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * returns the most times a request is sent
+	 * 
+	 * @return attempts including the first
+	 */
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	/**
+	 * returns the upper bound of the wait before the first retry
+	 * 
+	 * @return delay in milliseconds
+	 */
+	public long getBaseDelay() {
+		return baseDelay;
+	}
+
+	/**
+	 * returns the upper bound of any single wait
+	 * 
+	 * @return delay in milliseconds
+	 */
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	/**
+	 * returns the time an operation may take over all its attempts
+	 * 
+	 * @return deadline in milliseconds, 0 for no limit
+	 */
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 * returns whether a failed request is worth sending again
+	 * 
+	 * @param status
+	 *            the status the request failed with
+	 * @return true for connection failures, 408, 429, 500, 502, 503 and 504
+	 */
+	public boolean isRetryable(Status status) {
+		if (status == null)
+			return false;
+		if (Status.CONNECTOR_ERROR_CONNECTION.equals(status)
+				|| Status.CONNECTOR_ERROR_COMMUNICATION.equals(status))
+			return true;
+		switch (status.getCode()) {
+		case 408:
+		case 429:
+		case 500:
+		case 502:
+		case 503:
+		case 504:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * returns how long to wait before the next attempt, a random time up to
+	 * the exponential bound so clients that failed together do not retry
+	 * together
+	 * 
+	 * @param attempt
+	 *            the attempt that just failed, starting at 1
+	 * @return delay in milliseconds
+	 */
+	public long getDelay(int attempt) {
+		long bound = baseDelay << Math.min(attempt - 1, 30);
+		if (bound <= 0 || bound > maxDelay)
+			bound = maxDelay;
+		if (bound <= 0)
+			return 0;
+		return (long) (random.nextDouble() * bound);
+	}
+
+}
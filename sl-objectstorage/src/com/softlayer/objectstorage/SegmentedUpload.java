@@ -0,0 +1,395 @@
+package com.softlayer.objectstorage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.codec.EncoderException;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * uploads a local file as a large object. The file is cut into segments that
+ * are sent in parallel to a segment container, each segment is checked
+ * against the ETag the server returns and sent again on its own if it does
+ * not match or fails, and
+ * a manifest is then written under the object name that joins the segments
+ * back together. Once it is, the segments of the large object it replaced
+ * are deleted, as far as this class wrote them and the new one does not
+ * use them.
+ * 
+ * 
+ */
+class SegmentedUpload extends Client {
+
+	static final String X_OBJECT_MANIFEST = "X-Object-Manifest";
+	static final String SEGMENTS_SUFFIX = "_segments";
+
+	/**
+	 * largest object swift accepts, and so the largest segment
+	 */
+	static final long MAX_SEGMENT_SIZE = 5L * 1024 * 1024 * 1024;
+
+	/**
+	 * most segments swift accepts in one static manifest
+	 */
+	static final int MAX_STATIC_SEGMENTS = 1000;
+
+	private final Container container;
+	private final Container segmentContainer;
+	private final String name;
+	private final File file;
+	private final long segmentSize;
+	private final int threads;
+
+	/**
+	 * constructor for an upload of one local file
+	 * 
+	 * @param container
+	 *            the container the object is written to, whose session is
+	 *            used
+	 * @param name
+	 *            the object name
+	 * @param file
+	 *            the local file to upload
+	 * @param segmentSize
+	 *            size of each segment in bytes, at most 5GB, the last one
+	 *            may be smaller
+	 * @param threads
+	 *            number of segments sent at the same time
+	 */
+	SegmentedUpload(Container container, String name, File file,
+			long segmentSize, int threads) {
+		super(container.getSession());
+		if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE)
+			throw new IllegalArgumentException(
+					"segment size must be between 1 and " + MAX_SEGMENT_SIZE);
+		if (threads <= 0)
+			throw new IllegalArgumentException("threads must be positive");
+		this.container = container;
+		this.segmentContainer = new Container(container.getName()
+				+ SEGMENTS_SUFFIX, session);
+		this.name = name;
+		this.file = file;
+		this.segmentSize = segmentSize;
+		this.threads = threads;
+	}
+
+	/**
+	 * upload every segment and then the manifest
+	 * 
+	 * @param tags
+	 *            Map of tags to attach to the manifest object
+	 * @param staticManifest
+	 *            true to write a static (JSON) manifest listing each segment,
+	 *            false to write a dynamic manifest over the segment prefix
+	 * @return the finished manifest request
+	 * @throws EncoderException
+	 * @throws IOException
+	 * @throws IllegalArgumentException
+	 *             if the file needs more segments than the manifest can
+	 *             list, nothing has been sent then
+	 */
+	ClientResource upload(Map<String, String> tags, boolean staticManifest)
+			throws EncoderException, IOException {
+		long size = file.length();
+		long segmentCount = Math.max(1, (size + segmentSize - 1)
+				/ segmentSize);
+		if (segmentCount > (staticManifest ? MAX_STATIC_SEGMENTS
+				: Integer.MAX_VALUE))
+			throw new IllegalArgumentException(file + " needs "
+					+ segmentCount + " segments of " + segmentSize
+					+ " bytes, more than a manifest can list");
+		int count = (int) segmentCount;
+		// the same file uploaded again gets a new prefix, so a manifest never
+		// points at a mix of old and new segments
+		String prefix = name + "/" + file.lastModified() + "/" + size + "/"
+				+ segmentSize;
+
+		ObjectFile object = new ObjectFile(name, container);
+		List<String> replaced = segmentsOf(container, object,
+				metadata(object));
+		segmentContainer.create();
+
+		Segment[] segments = new Segment[count];
+		for (int i = 0; i < count; i++) {
+			long offset = i * segmentSize;
+			segments[i] = new Segment(segmentContainer.getName(), String.format(
+					"%s/%08d", prefix, i), offset, Math.min(segmentSize, size
+					- offset));
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(count);
+		for (final Segment segment : segments) {
+			tasks.add(new Callable<Void>() {
+				public Void call() throws Exception {
+					send(segment);
+					return null;
+				}
+			});
+		}
+		Tasks.runAll(tasks, threads);
+
+		Hashtable<String, String> params = super.createAuthParams();
+		for (Map.Entry<String, String> tag : tags.entrySet())
+			params.put(Client.X_OBJECT_META + tag.getKey(), tag.getValue());
+		String url = container.getObjectUrl(name);
+
+		ClientResource client;
+		if (staticManifest) {
+			client = super.put(params, new StringRepresentation(
+					manifest(segments), MediaType.APPLICATION_JSON), url
+					+ "?multipart-manifest=put");
+		} else {
+			params.put(X_OBJECT_MANIFEST, super
+					.saferUrlEncode(segmentContainer.getName())
+					+ "/" + super.saferUrlEncode(prefix + "/"));
+			client = super.put(params, null, url);
+		}
+		if (!replaced.isEmpty()) {
+			Set<String> used = new HashSet<String>();
+			for (Segment segment : segments)
+				used.add("/" + segment.container + "/" + segment.name);
+			removeUnused(container, name, replaced, used, threads);
+		}
+		return client;
+	}
+
+	/**
+	 * Utility for the segments of a large object that are safe to delete
+	 * once it is replaced: those this class wrote for it, under its name in
+	 * its segment container. Segments anywhere else may be shared and are
+	 * left alone.
+	 * 
+	 * @param container
+	 *            the container holding the object
+	 * @param object
+	 *            the object about to be replaced
+	 * @param metadata
+	 *            its metadata, null if it does not exist
+	 * @return the segment paths as "/container/name", empty if there are
+	 *         none
+	 * @throws IOException
+	 */
+	static List<String> segmentsOf(Container container, ObjectFile object,
+			ObjectMetadata metadata) throws IOException {
+		if (metadata == null || !metadata.isLargeObject())
+			return Collections.emptyList();
+		String segmentContainer = container.getName() + SEGMENTS_SUFFIX;
+		String own = "/" + segmentContainer + "/" + object.getName() + "/";
+		List<String> segments = new ArrayList<String>();
+		String manifest = metadata.getManifest();
+		if (manifest == null) {
+			for (String path : object.getSegmentPaths())
+				if (path.startsWith(own))
+					segments.add(path);
+			return segments;
+		}
+		// a dynamic manifest names its segments by prefix
+		String path = "/" + UrlEncoder.decode(manifest);
+		if (!path.startsWith(own))
+			return segments;
+		ListingIndex index = new Container(segmentContainer, container
+				.getSession()).listIndex(path.substring(segmentContainer
+				.length() + 2));
+		for (int i = 0; i < index.size(); i++)
+			segments.add("/" + segmentContainer + "/" + index.getName(i));
+		return segments;
+	}
+
+	/**
+	 * Utility for deleting the segments of a replaced object that the new
+	 * one does not use; a failure only leaves unused segments behind and is
+	 * logged
+	 * 
+	 * @param container
+	 *            the container holding the object
+	 * @param name
+	 *            the name of the object that was replaced
+	 * @param replaced
+	 *            the segments from {@link #segmentsOf}
+	 * @param used
+	 *            the segments the object is now made of
+	 * @param threads
+	 *            number of deletes sent at the same time
+	 * @throws IOException
+	 *             if the deletes were interrupted
+	 */
+	static void removeUnused(Container container, String name,
+			List<String> replaced, Collection<String> used, int threads)
+			throws IOException {
+		Map<String, List<String>> unused = new TreeMap<String, List<String>>();
+		for (String path : replaced) {
+			if (used.contains(path))
+				continue;
+			int slash = path.indexOf('/', 1);
+			String segmentContainer = path.substring(1, slash);
+			List<String> names = unused.get(segmentContainer);
+			if (names == null) {
+				names = new ArrayList<String>();
+				unused.put(segmentContainer, names);
+			}
+			names.add(path.substring(slash + 1));
+		}
+		for (Map.Entry<String, List<String>> entry : unused.entrySet()) {
+			BatchResult result = new Container(entry.getKey(), container
+					.getSession()).deleteObjects(entry.getValue(), threads);
+			if (!result.isSuccess())
+				logger.warn("could not remove old segments of " + name
+						+ ": " + result.getFailures().keySet());
+		}
+	}
+
+	/**
+	 * Utility for reading an object's metadata
+	 * 
+	 * @return the metadata, or null if the object does not exist
+	 */
+	private static ObjectMetadata metadata(ObjectFile object)
+			throws EncoderException, IOException {
+		try {
+			return object.getMetadata();
+		} catch (ResourceException e) {
+			if (Status.CLIENT_ERROR_NOT_FOUND.equals(e.getStatus()))
+				return null;
+			throw e;
+		}
+	}
+
+	/**
+	 * Utility for sending one segment, sending it again when the ETag the
+	 * server returns does not match what was sent; transport failures are
+	 * retried by the session's retry policy
+	 * 
+	 * @param segment
+	 *            the segment to send
+	 * @throws EncoderException
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	private void send(Segment segment) throws EncoderException, IOException,
+			InterruptedException {
+		String url = segmentContainer.getObjectUrl(segment.name);
+		RetryPolicy policy = session.getRetryPolicy();
+		for (int attempt = 1;; attempt++) {
+			FileRegionRepresentation body = new FileRegionRepresentation(file,
+					segment.offset, segment.length,
+					MediaType.APPLICATION_OCTET_STREAM);
+			ClientResource client = super.put(super.createAuthParams(), body,
+					url);
+			String etag = unquote(Client.getCustomHttpHeader("Etag", client));
+			String md5 = body.getMd5();
+			if (etag == null || md5 == null || etag.equalsIgnoreCase(md5)) {
+				segment.etag = md5 != null ? md5 : etag;
+				return;
+			}
+			if (attempt >= policy.getMaxAttempts())
+				throw new IOException("ETag " + etag + " of segment "
+						+ segment.name + " does not match MD5 " + md5);
+			logger.warn("ETag of segment " + segment.name
+					+ " does not match, sending it again");
+			Thread.sleep(policy.getDelay(attempt));
+		}
+	}
+
+	/**
+	 * Utility for building the body of a static manifest
+	 * 
+	 * @param segments
+	 *            the uploaded segments in order
+	 * @return the JSON manifest
+	 * @throws IOException
+	 */
+	private static String manifest(Segment[] segments) throws IOException {
+		try {
+			JSONArray manifest = new JSONArray();
+			for (Segment segment : segments) {
+				JSONObject entry = new JSONObject();
+				entry.put("path", "/" + segment.container + "/" + segment.name);
+				entry.put("etag", segment.etag);
+				entry.put("size_bytes", segment.length);
+				manifest.put(entry);
+			}
+			return manifest.toString();
+		} catch (JSONException e) {
+			throw (IOException) new IOException("invalid manifest")
+					.initCause(e);
+		}
+	}
+
+	/**
+	 * Utility for stripping the quotes some servers put around an ETag
+	 * 
+	 * @param etag
+	 *            the header value, may be null
+	 * @return the bare ETag
+	 */
+	static String unquote(String etag) {
+		if (etag != null && etag.length() >= 2 && etag.startsWith("\"")
+				&& etag.endsWith("\""))
+			return etag.substring(1, etag.length() - 1);
+		return etag;
+	}
+
+	/**
+	 * one byte range of the file and where it is stored
+	 */
+	private static final class Segment {
+		final String container;
+		final String name;
+		final long offset;
+		final long length;
+		volatile String etag;
+
+		Segment(String container, String name, long offset, long length) {
+			this.container = container;
+			this.name = name;
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+}
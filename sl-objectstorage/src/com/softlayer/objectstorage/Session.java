@@ -0,0 +1,460 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.util.Hashtable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.resource.ClientResource;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * Authenticated session with the objectstorage api, shared by every account,
+ * container and file handle created from it. The token, storage url and CDN
+ * url are fetched once and only refreshed when the token expires or the
+ * server rejects it; concurrent callers that need a refresh wait on the one
+ * already in flight instead of issuing their own auth call. Requests made
+ * through the session share one pooled, keep-alive http connector.
+ * 
+ * 
+ */
+public class Session {
+
+	static final String X_AUTH_TOKEN_EXPIRES = "X-Auth-Token-Expires";
+	private static final long DEFAULT_TOKEN_TTL = 12 * 60 * 60 * 1000L;
+	private static final long EXPIRY_MARGIN = 60 * 1000L;
+	private static final long MIN_TOKEN_TTL = 1000L;
+
+	private final String baseurl;
+	private final String authurl;
+	private final String username;
+	private final String password;
+	private final Object authLock = new Object();
+	private final HttpConnector connector = new HttpConnector();
+	private final AsyncDispatcher dispatcher = new AsyncDispatcher(this);
+	private volatile Credentials credentials;
+	private volatile long tokenTimeToLive = DEFAULT_TOKEN_TTL;
+	private volatile RetryPolicy retryPolicy = RetryPolicy.DEFAULT;
+	private volatile MetricsListener metricsListener;
+	private volatile Governor governor;
+	private volatile boolean bulkDeleteUnavailable;
+	private ExecutorService executor;
+
+	/**
+	 * create a new, not yet authenticated, session
+	 * 
+	 * @param baseUrl
+	 *            the base url for the objectstorage instance
+	 * @param username
+	 *            username for SL portal user to be used for susequent calls
+	 * @param password
+	 *            password for the given user or the api key as a String
+	 */
+	public Session(String baseUrl, String username, String password) {
+		this.baseurl = baseUrl;
+		this.authurl = baseUrl + "/auth/v1.0";
+		this.username = username;
+		this.password = password;
+	}
+
+	/**
+	 * returns the base url this session authenticates against
+	 * 
+	 * @return the base url for the objectstorage instance
+	 */
+	public String getBaseUrl() {
+		return baseurl;
+	}
+
+	/**
+	 * returns the username for this session
+	 * 
+	 * @return the username used to authenticate
+	 */
+	public String getUsername() {
+		return username;
+	}
+
+	/**
+	 * returns a valid auth token, authenticating first if there is no token
+	 * yet or the current one has expired
+	 * 
+	 * @return the auth token
+	 * @throws IOException
+	 */
+	public String getAuthToken() throws IOException {
+		return current().token;
+	}
+
+	/**
+	 * returns the storage url handed out with the current token
+	 * 
+	 * @return the storage url
+	 * @throws IOException
+	 */
+	public String getStorageUrl() throws IOException {
+		return current().storageurl;
+	}
+
+	/**
+	 * returns the CDN management url handed out with the current token
+	 * 
+	 * @return the CDN management url
+	 * @throws IOException
+	 */
+	public String getCdnUrl() throws IOException {
+		return current().cdnurl;
+	}
+
+	/**
+	 * set how long a token is trusted when the server does not say when it
+	 * expires
+	 * 
+	 * @param millis
+	 *            token lifetime in milliseconds
+	 */
+	public void setTokenTimeToLive(long millis) {
+		this.tokenTimeToLive = millis;
+	}
+
+	/**
+	 * returns how requests of this session are retried
+	 * 
+	 * @return the retry policy
+	 */
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * set how requests of this session are retried, applies to requests
+	 * started after the call
+	 * 
+	 * @param retryPolicy
+	 *            the policy to use, {@link RetryPolicy#NONE} to never retry
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		if (retryPolicy == null)
+			throw new IllegalArgumentException("retry policy is required");
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * returns the listener measurements of this session's calls go to
+	 * 
+	 * @return the listener, null if none is set
+	 */
+	public MetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+
+	/**
+	 * set the listener measurements of this session's calls go to, such as a
+	 * {@link Metrics}; nothing is measured while none is set
+	 * 
+	 * @param metricsListener
+	 *            the listener, null to stop measuring
+	 */
+	public void setMetricsListener(MetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+	}
+
+	/**
+	 * returns the governor limiting this session's traffic
+	 * 
+	 * @return the governor, null if none is set
+	 */
+	public Governor getGovernor() {
+		return governor;
+	}
+
+	/**
+	 * set the governor limiting this session's bandwidth and request rate,
+	 * one governor may be shared by several sessions to hold them all to the
+	 * same limits
+	 * 
+	 * @param governor
+	 *            the governor, null for no limits
+	 */
+	public void setGovernor(Governor governor) {
+		this.governor = governor;
+	}
+
+	/**
+	 * set the maximum number of connections in use per host, applies to
+	 * connectors started after the call
+	 * 
+	 * @param max
+	 *            connections per host
+	 */
+	public void setMaxConnectionsPerHost(int max) {
+		connector.setMaxConnectionsPerHost(max);
+	}
+
+	/**
+	 * set how long to wait for a new connection to be established, applies
+	 * to connectors started after the call
+	 * 
+	 * @param millis
+	 *            connect timeout in milliseconds, 0 to wait forever
+	 */
+	public void setConnectTimeout(int millis) {
+		connector.setConnectTimeout(millis);
+	}
+
+	/**
+	 * set how long a blocking read may wait for data, applies to connectors
+	 * started after the call
+	 * 
+	 * @param millis
+	 *            read timeout in milliseconds, 0 to wait forever
+	 */
+	public void setReadTimeout(int millis) {
+		connector.setReadTimeout(millis);
+	}
+
+	/**
+	 * set the http implementation requests are sent through, applies to
+	 * connectors started after the call. HTTP_CLIENT needs Java 11 or later,
+	 * requests fail with an IOException on older runtimes
+	 * 
+	 * @param transport
+	 *            the transport, URL_CONNECTION by default
+	 */
+	public void setTransport(Transport transport) {
+		connector.setTransport(transport);
+	}
+
+	/**
+	 * set the executor asynchronous calls run on, by default they run on
+	 * virtual threads when the runtime has them and on a pool of daemon
+	 * threads otherwise
+	 * 
+	 * @param executor
+	 *            the executor to use, null for the default
+	 */
+	public void setAsyncExecutor(Executor executor) {
+		dispatcher.setExecutor(executor);
+	}
+
+	/**
+	 * set how many asynchronous calls may run at the same time, calls beyond
+	 * this wait in a queue without holding a thread
+	 * 
+	 * @param max
+	 *            calls in flight, 64 by default
+	 */
+	public void setMaxInFlight(int max) {
+		dispatcher.setMaxInFlight(max);
+	}
+
+	/**
+	 * close all pooled connections of this session and stop its background
+	 * threads, a later request opens new ones
+	 */
+	public void close() {
+		connector.stop();
+		dispatcher.stop();
+		synchronized (this) {
+			if (executor != null) {
+				executor.shutdownNow();
+				executor = null;
+			}
+		}
+	}
+
+	/**
+	 * returns the dispatcher asynchronous calls of this session go through
+	 * 
+	 * @return the dispatcher
+	 */
+	AsyncDispatcher getDispatcher() {
+		return dispatcher;
+	}
+
+	/**
+	 * returns whether the cluster was found to have no bulk delete endpoint
+	 * 
+	 * @return true once a bulk delete was refused
+	 */
+	boolean isBulkDeleteUnavailable() {
+		return bulkDeleteUnavailable;
+	}
+
+	/**
+	 * remember that the cluster has no bulk delete endpoint, so later deletes
+	 * go straight to single object requests
+	 */
+	void setBulkDeleteUnavailable() {
+		this.bulkDeleteUnavailable = true;
+	}
+
+	/**
+	 * returns the pool background work of this session runs on, such as
+	 * prefetching the next page of a listing
+	 * 
+	 * @return a pool of daemon threads
+	 */
+	synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			final AtomicInteger count = new AtomicInteger();
+			executor = Executors.newCachedThreadPool(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "objectstorage-"
+							+ count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * returns the pooled connector requests of this session are sent through
+	 * 
+	 * @return the started restlet connector
+	 * @throws IOException
+	 */
+	org.restlet.Client getConnector() throws IOException {
+		return connector.getClient();
+	}
+
+	/**
+	 * force a new auth call, callers racing with an auth already in flight
+	 * share its result
+	 * 
+	 * @throws IOException
+	 */
+	public void authenticate() throws IOException {
+		Credentials c = credentials;
+		refresh(c == null ? null : c.token);
+	}
+
+	/**
+	 * replace a token the server rejected, if another caller has already
+	 * replaced it this returns without another auth call
+	 * 
+	 * @param staleToken
+	 *            the token that was rejected (null if there was none)
+	 * @throws IOException
+	 */
+	void refresh(String staleToken) throws IOException {
+		synchronized (authLock) {
+			Credentials c = credentials;
+			if (c != null && !c.token.equals(staleToken) && !c.isExpired())
+				return;
+			credentials = login();
+			MetricsListener listener = metricsListener;
+			if (listener != null)
+				listener.onAuthRefresh();
+		}
+	}
+
+	/**
+	 * Utility for getting the current credentials, authenticating if needed
+	 * 
+	 * @return current credentials
+	 * @throws IOException
+	 */
+	private Credentials current() throws IOException {
+		Credentials c = credentials;
+		if (c == null || c.isExpired()) {
+			refresh(c == null ? null : c.token);
+			c = credentials;
+		}
+		return c;
+	}
+
+	/**
+	 * convenience method for making an auth call to objectstorage
+	 * 
+	 * @return freshly issued credentials
+	 * @throws IOException
+	 */
+	private Credentials login() throws IOException {
+		Hashtable<String, String> params = new Hashtable<String, String>();
+		params.put(Client.USERNAME, username);
+		params.put(Client.PASSWORD, password);
+
+		ClientResource client = new Client(this).auth(params, authurl);
+		Client.release(client);
+
+		String token = Client.getCustomHttpHeader(Client.X_AUTH_TOKEN, client);
+		if (token == null)
+			throw new IOException("auth response did not contain a token");
+
+		long ttl = tokenTimeToLive;
+		String expires = Client.getCustomHttpHeader(X_AUTH_TOKEN_EXPIRES,
+				client);
+		if (expires != null) {
+			try {
+				// short lived tokens give up at most half their lifetime
+				long lifetime = Long.parseLong(expires.trim()) * 1000L;
+				ttl = Math.max(MIN_TOKEN_TTL, lifetime
+						- Math.min(EXPIRY_MARGIN, lifetime / 2));
+			} catch (NumberFormatException e) {
+				// keep the default lifetime
+			}
+		}
+
+		return new Credentials(token, Client.getCustomHttpHeader(
+				Client.X_STORAGE_URL, client), Client.getCustomHttpHeader(
+				Client.X_CDN_MANAGEMENT_URL, client),
+				System.currentTimeMillis() + ttl);
+	}
+
+	/**
+	 * immutable snapshot of one auth response so token and urls are always
+	 * read together
+	 */
+	private static final class Credentials {
+		final String token;
+		final String storageurl;
+		final String cdnurl;
+		final long expiresAt;
+
+		Credentials(String token, String storageurl, String cdnurl,
+				long expiresAt) {
+			this.token = token;
+			this.storageurl = storageurl;
+			this.cdnurl = cdnurl;
+			this.expiresAt = expiresAt;
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() >= expiresAt;
+		}
+	}
+}
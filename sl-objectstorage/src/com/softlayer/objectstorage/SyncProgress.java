@@ -0,0 +1,222 @@
+package com.softlayer.objectstorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * progress and outcome of one ContainerSync run. The same instance is passed
+ * to the listener while the sync runs and returned when it ends. In a dry run
+ * the transferred and deleted lists hold what would have been done and no
+ * bytes are counted.
+ * 
+ * 
+ */
+public final class SyncProgress {
+
+	private final boolean dryRun;
+	private final long startedAt = System.nanoTime();
+	private volatile long finishedAt;
+	private volatile int toCheck = -1;
+	private final AtomicInteger checked = new AtomicInteger();
+	private final AtomicInteger unchanged = new AtomicInteger();
+	private final AtomicLong bytes = new AtomicLong();
+	private final List<String> transferred = Collections
+			.synchronizedList(new ArrayList<String>());
+	private final List<String> deleted = Collections
+			.synchronizedList(new ArrayList<String>());
+	private final Map<String, Exception> failures = Collections
+			.synchronizedMap(new TreeMap<String, Exception>());
+
+	/**
+	 * constructor for the progress of a new run
+	 * 
+	 * @param dryRun
+	 *            true if nothing is transferred or deleted
+	 */
+	SyncProgress(boolean dryRun) {
+		this.dryRun = dryRun;
+	}
+
+	/**
+	 * returns whether this was a dry run
+	 * 
+	 * @return true if nothing was transferred or deleted
+	 */
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	/**
+	 * returns whether the sync has ended
+	 * 
+	 * @return true once every object has been handled
+	 */
+	public boolean isFinished() {
+		return finishedAt != 0;
+	}
+
+	/**
+	 * returns the number of objects that have to be checked
+	 * 
+	 * @return the total, or -1 while the local tree and listing are still
+	 *         being read
+	 */
+	public int getObjectsToCheck() {
+		return toCheck;
+	}
+
+	/**
+	 * returns the number of objects checked so far
+	 * 
+	 * @return the number of objects handled
+	 */
+	public int getObjectsChecked() {
+		return checked.get();
+	}
+
+	/**
+	 * returns the number of objects that were already in sync
+	 * 
+	 * @return the number of objects left alone
+	 */
+	public int getUnchangedCount() {
+		return unchanged.get();
+	}
+
+	/**
+	 * returns the names of the objects uploaded or downloaded
+	 * 
+	 * @return a copy of the list, in completion order
+	 */
+	public List<String> getTransferred() {
+		synchronized (transferred) {
+			return new ArrayList<String>(transferred);
+		}
+	}
+
+	/**
+	 * returns the names of the objects or local files deleted
+	 * 
+	 * @return a copy of the list, in completion order
+	 */
+	public List<String> getDeleted() {
+		synchronized (deleted) {
+			return new ArrayList<String>(deleted);
+		}
+	}
+
+	/**
+	 * returns the objects that could not be synced and why
+	 * 
+	 * @return a copy of the failures by name, empty if all went well
+	 */
+	public Map<String, Exception> getFailures() {
+		synchronized (failures) {
+			return new TreeMap<String, Exception>(failures);
+		}
+	}
+
+	/**
+	 * returns the number of bytes uploaded or downloaded so far
+	 * 
+	 * @return bytes transferred
+	 */
+	public long getBytesTransferred() {
+		return bytes.get();
+	}
+
+	/**
+	 * returns the time the sync has been running, or ran
+	 * 
+	 * @return elapsed milliseconds
+	 */
+	public long getElapsedMillis() {
+		long end = finishedAt != 0 ? finishedAt : System.nanoTime();
+		return (end - startedAt) / 1000000L;
+	}
+
+	/**
+	 * returns the average transfer rate so far
+	 * 
+	 * @return bytes per second
+	 */
+	public double getBytesPerSecond() {
+		long millis = getElapsedMillis();
+		return millis == 0 ? 0 : bytes.get() * 1000.0 / millis;
+	}
+
+	void setObjectsToCheck(int count) {
+		this.toCheck = count;
+	}
+
+	void unchanged() {
+		unchanged.incrementAndGet();
+		checked.incrementAndGet();
+	}
+
+	void transferred(String name, long size) {
+		transferred.add(name);
+		if (!dryRun)
+			bytes.addAndGet(size);
+		checked.incrementAndGet();
+	}
+
+	void deleted(String name) {
+		deleted.add(name);
+		checked.incrementAndGet();
+	}
+
+	void failed(String name, Exception e) {
+		failures.put(name, e);
+		checked.incrementAndGet();
+	}
+
+	void finish() {
+		finishedAt = System.nanoTime();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("checked %d/%d, transferred %d (%d bytes), "
+				+ "deleted %d, unchanged %d, failed %d, %.0fB/s%s",
+				getObjectsChecked(), getObjectsToCheck(), transferred.size(),
+				getBytesTransferred(), deleted.size(), getUnchangedCount(),
+				failures.size(), getBytesPerSecond(), dryRun ? " (dry run)"
+						: "");
+	}
+
+}
@@ -0,0 +1,274 @@
+package com.softlayer.objectstorage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+
+import org.restlet.data.MediaType;
+import org.restlet.representation.OutputRepresentation;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * a tar archive of ArchiveEntry contents, written as it is sent. Entries use
+ * ustar headers; a name that is not plain ASCII or longer than the header
+ * allows, or a size too large for it, is carried in a PAX extended header
+ * as swift's extractor expects. The size of the archive is known in advance
+ * when the size of every entry is, so it can be sent with a fixed length.
+ * Content of unknown size is read ahead for its header, in memory up to 1MB
+ * and in a temporary file beyond that.
+ * 
+ * 
+ */
+final class TarRepresentation extends OutputRepresentation {
+
+	static final MediaType APPLICATION_TAR = new MediaType("application/x-tar");
+
+	private static final int BLOCK = 512;
+	private static final int NAME_LENGTH = 100;
+	private static final long MAX_OCTAL_SIZE = 077777777777L;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// content of unknown size held in memory, beyond it goes to a file
+	private static final int MEMORY_LIMIT = 1024 * 1024;
+
+	private final List<ArchiveEntry> entries;
+
+	/**
+	 * constructor
+	 * 
+	 * @param entries
+	 *            the entries to write, in order
+	 */
+	TarRepresentation(List<ArchiveEntry> entries) {
+		super(APPLICATION_TAR);
+		this.entries = entries;
+		long size = 2 * BLOCK;
+		boolean replayable = true;
+		for (ArchiveEntry entry : entries) {
+			replayable &= entry.isReplayable();
+			if (size < 0 || entry.getSize() < 0) {
+				size = -1;
+				continue;
+			}
+			byte[] pax = paxRecords(entry.getName(), entry.getSize());
+			if (pax != null)
+				size += BLOCK + padded(pax.length);
+			size += BLOCK + padded(entry.getSize());
+		}
+		this.setSize(size);
+		this.setTransient(!replayable);
+	}
+
+	@Override
+	public void write(OutputStream out) throws IOException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+		for (ArchiveEntry entry : entries) {
+			InputStream in = entry.open();
+			File spool = null;
+			try {
+				long size = entry.getSize();
+				if (size < 0) {
+					// the header needs the size before the content
+					ByteArrayOutputStream content = new ByteArrayOutputStream();
+					int n = 0;
+					while (content.size() <= MEMORY_LIMIT
+							&& (n = in.read(buffer)) != -1)
+						content.write(buffer, 0, n);
+					size = content.size();
+					if (n == -1) {
+						in.close();
+						in = new ByteArrayInputStream(content.toByteArray());
+					} else {
+						spool = File.createTempFile("archive", ".part");
+						OutputStream file = new FileOutputStream(spool);
+						try {
+							content.writeTo(file);
+							while ((n = in.read(buffer)) != -1) {
+								file.write(buffer, 0, n);
+								size += n;
+							}
+						} finally {
+							file.close();
+						}
+						in.close();
+						in = new FileInputStream(spool);
+					}
+				}
+				long mtime = entry.getLastModified() / 1000;
+				byte[] pax = paxRecords(entry.getName(), size);
+				if (pax != null) {
+					out.write(header("PaxHeaders/" + entry.getName(),
+							pax.length, 'x', mtime));
+					out.write(pax);
+					pad(out, pax.length);
+				}
+				out.write(header(entry.getName(), size, '0', mtime));
+				long left = size;
+				while (left > 0) {
+					int n = in.read(buffer, 0, (int) Math.min(buffer.length,
+							left));
+					if (n == -1)
+						throw new IOException(entry.getName()
+								+ " is shorter than its size");
+					out.write(buffer, 0, n);
+					left -= n;
+				}
+				pad(out, size);
+			} finally {
+				in.close();
+				if (spool != null)
+					spool.delete();
+			}
+		}
+		out.write(new byte[2 * BLOCK]);
+	}
+
+	/**
+	 * Utility for the PAX records an entry needs
+	 * 
+	 * @param name
+	 *            the entry name
+	 * @param size
+	 *            the entry size
+	 * @return the records, or null if the ustar header can hold both
+	 */
+	private static byte[] paxRecords(String name, long size) {
+		StringBuilder records = new StringBuilder();
+		if (!fitsHeader(name))
+			record(records, "path", name);
+		if (size > MAX_OCTAL_SIZE)
+			record(records, "size", Long.toString(size));
+		return records.length() == 0 ? null : utf8(records.toString());
+	}
+
+	/**
+	 * Utility for appending one PAX record, whose length counts itself
+	 */
+	private static void record(StringBuilder records, String key,
+			String value) {
+		int base = key.length() + utf8(value).length + 3;
+		int length = base + Integer.toString(base).length();
+		if (Integer.toString(length).length() + base != length)
+			length = base + Integer.toString(length).length();
+		records.append(length).append(' ').append(key).append('=')
+				.append(value).append('\n');
+	}
+
+	/**
+	 * Utility for whether a name can go in the ustar name field as is
+	 */
+	private static boolean fitsHeader(String name) {
+		if (name.length() > NAME_LENGTH)
+			return false;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c < 0x20 || c > 0x7e)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Utility for building a ustar header block, a name that does not fit is
+	 * cut down and replaced by the PAX path
+	 */
+	private static byte[] header(String name, long size, char type,
+			long mtime) {
+		byte[] block = new byte[BLOCK];
+		int length = Math.min(name.length(), NAME_LENGTH);
+		for (int i = 0; i < length; i++) {
+			char c = name.charAt(i);
+			block[i] = (byte) (c < 0x20 || c > 0x7e ? '_' : c);
+		}
+		octal(block, 100, 8, 0644);
+		octal(block, 108, 8, 0);
+		octal(block, 116, 8, 0);
+		octal(block, 124, 12, size > MAX_OCTAL_SIZE ? 0 : size);
+		octal(block, 136, 12, mtime);
+		block[156] = (byte) type;
+		ascii(block, 257, "ustar");
+		ascii(block, 263, "00");
+		// the checksum is taken with its own field as spaces
+		for (int i = 148; i < 156; i++)
+			block[i] = ' ';
+		long sum = 0;
+		for (byte b : block)
+			sum += b & 0xff;
+		octal(block, 148, 7, sum);
+		return block;
+	}
+
+	/**
+	 * Utility for writing a zero padded, NUL terminated octal field
+	 */
+	private static void octal(byte[] block, int offset, int length,
+			long value) {
+		String digits = Long.toOctalString(value);
+		int pad = length - 1 - digits.length();
+		for (int i = 0; i < pad; i++)
+			block[offset + i] = '0';
+		ascii(block, offset + pad, digits);
+		block[offset + length - 1] = 0;
+	}
+
+	private static void ascii(byte[] block, int offset, String value) {
+		for (int i = 0; i < value.length(); i++)
+			block[offset + i] = (byte) value.charAt(i);
+	}
+
+	/**
+	 * Utility for the UTF-8 bytes of a string
+	 */
+	private static byte[] utf8(String value) {
+		try {
+			return value.getBytes("UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static long padded(long size) {
+		return (size + BLOCK - 1) / BLOCK * BLOCK;
+	}
+
+	private static void pad(OutputStream out, long size) throws IOException {
+		int rest = (int) (padded(size) - size);
+		if (rest > 0)
+			out.write(new byte[rest]);
+	}
+
+}
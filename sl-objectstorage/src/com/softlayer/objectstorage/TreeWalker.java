@@ -0,0 +1,231 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.codec.EncoderException;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * walks the pseudo directory tree of a container in parallel. Each directory
+ * is listed with a delimiter and every directory found is queued as its own
+ * task on a fixed pool, so disjoint parts of the namespace are listed at the
+ * same time instead of in one marker scan over every name. The pages of a
+ * single directory are still read in order; the number of listing requests
+ * in flight never exceeds the parallelism.
+ * 
+ * Usage:
+ * 
+ * <pre>
+ * TreeWalker walker = new TreeWalker(container);
+ * walker.setParallelism(16);
+ * walker.walk(&quot;logs/&quot;, visitor);
+ * </pre>
+ * 
+ * 
+ */
+public final class TreeWalker {
+
+	private final Container container;
+	private String delimiter = "/";
+	private int parallelism = 8;
+	private int pageSize = Container.MAX_PAGE_SIZE;
+
+	/**
+	 * constructor for a walker of one container
+	 * 
+	 * @param container
+	 *            the container to walk
+	 */
+	public TreeWalker(Container container) {
+		this.container = container;
+	}
+
+	/**
+	 * set the delimiter names are split into directories at
+	 * 
+	 * @param delimiter
+	 *            the delimiter, "/" by default
+	 */
+	public void setDelimiter(String delimiter) {
+		if (delimiter == null || delimiter.length() == 0)
+			throw new IllegalArgumentException("delimiter is required");
+		this.delimiter = delimiter;
+	}
+
+	/**
+	 * set the number of directories listed at the same time
+	 * 
+	 * @param parallelism
+	 *            number of worker threads and listing requests, at least 1
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException(
+					"parallelism must be at least 1");
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * set the number of entries fetched per listing request
+	 * 
+	 * @param pageSize
+	 *            entries per page, at most {@link Container#MAX_PAGE_SIZE}
+	 */
+	public void setPageSize(int pageSize) {
+		if (pageSize <= 0 || pageSize > Container.MAX_PAGE_SIZE)
+			throw new IllegalArgumentException(
+					"page size must be between 1 and "
+							+ Container.MAX_PAGE_SIZE);
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * walk every directory under a prefix, returning once all of them have
+	 * been listed. The first failure, of a listing or of the visitor, stops
+	 * the walk and is rethrown.
+	 * 
+	 * @param prefix
+	 *            the directory to start at, ending in the delimiter, or null
+	 *            for the whole container
+	 * @param visitor
+	 *            receives every directory and object found
+	 * @return the number of objects visited
+	 * @throws IOException
+	 * @throws EncoderException
+	 */
+	public long walk(String prefix, TreeVisitor visitor) throws IOException,
+			EncoderException {
+		ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+		Walk walk = new Walk(executor, visitor);
+		try {
+			walk.start(prefix == null ? "" : prefix);
+			walk.done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("walk interrupted");
+		} finally {
+			executor.shutdownNow();
+		}
+		Exception e = walk.failure.get();
+		if (e instanceof IOException)
+			throw (IOException) e;
+		if (e instanceof EncoderException)
+			throw (EncoderException) e;
+		if (e instanceof RuntimeException)
+			throw (RuntimeException) e;
+		return walk.objects.get();
+	}
+
+	/**
+	 * state shared by the tasks of one walk, which is done once no directory
+	 * is left queued or being listed
+	 */
+	private final class Walk {
+
+		private final ExecutorService executor;
+		private final TreeVisitor visitor;
+		private final AtomicInteger pending = new AtomicInteger();
+		private final CountDownLatch done = new CountDownLatch(1);
+		private final AtomicLong objects = new AtomicLong();
+		private final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+
+		Walk(ExecutorService executor, TreeVisitor visitor) {
+			this.executor = executor;
+			this.visitor = visitor;
+		}
+
+		/**
+		 * Utility for queueing a directory to be listed
+		 */
+		private void start(String prefix) {
+			pending.incrementAndGet();
+			executor.execute(new Directory(prefix));
+		}
+
+		/**
+		 * lists one directory, visiting its objects page by page and queueing
+		 * each directory in it
+		 */
+		private final class Directory implements Runnable {
+
+			private final String prefix;
+
+			Directory(String prefix) {
+				this.prefix = prefix;
+			}
+
+			public void run() {
+				try {
+					String marker = null;
+					List<ObjectEntry> page;
+					do {
+						if (failure.get() != null)
+							break;
+						page = container.loadPage(prefix.length() == 0 ? null
+								: prefix, delimiter, marker, pageSize);
+						for (ObjectEntry entry : page)
+							this.visit(entry);
+						if (!page.isEmpty())
+							marker = page.get(page.size() - 1).getName();
+						// a short page is the last one
+					} while (page.size() == pageSize);
+				} catch (Exception e) {
+					failure.compareAndSet(null, e);
+				} finally {
+					if (pending.decrementAndGet() == 0)
+						done.countDown();
+				}
+			}
+
+			/**
+			 * Utility for handing an entry to the visitor, queueing a
+			 * directory it wants walked
+			 */
+			private void visit(ObjectEntry entry) {
+				if (!entry.isDirectory()) {
+					visitor.visitObject(entry);
+					objects.incrementAndGet();
+				} else if (visitor.preVisitDirectory(entry)) {
+					start(entry.getName());
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,282 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.net.ssl.HttpsURLConnection;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Parameter;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * one http exchange made through an HttpURLConnection. The connection is
+ * handed back to the JDK keep-alive cache, and its per-host permit released,
+ * once the response body has been read to the end or closed.
+ * 
+ * 
+ */
+class UrlConnectionCall extends MeteredCall {
+
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	private final UrlConnectionClientHelper helper;
+	private final HttpURLConnection connection;
+	private final AtomicBoolean released = new AtomicBoolean(true);
+	private Semaphore permits;
+	private OutputStream requestStream;
+	private boolean responseHeadersAdded;
+
+	/**
+	 * constructor for a new call
+	 * 
+	 * @param helper
+	 *            the connector making the call
+	 * @param method
+	 *            the http method name
+	 * @param requestUri
+	 *            the absolute url to call
+	 * @throws IOException
+	 */
+	UrlConnectionCall(UrlConnectionClientHelper helper, String method,
+			String requestUri) throws IOException {
+		super(helper, method, requestUri);
+		this.helper = helper;
+		URL url = new URL(requestUri);
+		this.connection = (HttpURLConnection) url.openConnection();
+		connection.setConnectTimeout(helper.getConnectTimeout());
+		connection.setReadTimeout(helper.getReadTimeout());
+		connection.setAllowUserInteraction(false);
+		connection.setInstanceFollowRedirects(false);
+		connection.setUseCaches(false);
+		if (connection instanceof HttpsURLConnection
+				&& helper.getSslSocketFactory() != null)
+			((HttpsURLConnection) connection).setSSLSocketFactory(helper
+					.getSslSocketFactory());
+		setServerAddress(url.getHost());
+		setServerPort(url.getPort() == -1 ? url.getDefaultPort() : url
+				.getPort());
+	}
+
+	@Override
+	public Status sendRequest(Request request) {
+		begin(request);
+		try {
+			permits = helper.getPermits(getServerAddress() + ":"
+					+ getServerPort());
+			if (!permits.tryAcquire(helper.getConnectTimeout(),
+					TimeUnit.MILLISECONDS)) {
+				statusCode = Status.CONNECTOR_ERROR_CONNECTION.getCode();
+				report();
+				return new Status(Status.CONNECTOR_ERROR_CONNECTION,
+						"no connection to " + getServerAddress()
+								+ " became available");
+			}
+			released.set(false);
+
+			connection.setRequestMethod(getMethod());
+			for (Parameter header : getRequestHeaders()) {
+				// the JDK sets these itself and ignores our values
+				if (!"Content-Length".equalsIgnoreCase(header.getName())
+						&& !"Transfer-Encoding"
+								.equalsIgnoreCase(header.getName())
+						&& !"Host".equalsIgnoreCase(header.getName())
+						&& !"Connection".equalsIgnoreCase(header.getName()))
+					connection.addRequestProperty(header.getName(),
+							header.getValue());
+			}
+
+			Representation entity = request.isEntityAvailable() ? request
+					.getEntity() : null;
+			if (entity != null) {
+				connection.setDoOutput(true);
+				long size = entity.getSize();
+				if (size >= 0 && size <= Integer.MAX_VALUE)
+					connection.setFixedLengthStreamingMode((int) size);
+				else
+					connection.setChunkedStreamingMode(CHUNK_SIZE);
+			} else if ("PUT".equals(getMethod())
+					|| "POST".equals(getMethod())) {
+				// send an explicit zero length, swift rejects a PUT without one
+				connection.setDoOutput(true);
+				connection.setFixedLengthStreamingMode(0);
+			}
+
+			connection.connect();
+			// includes any wait for a free connection to the host
+			connected();
+			if (entity == null && connection.getDoOutput())
+				connection.getOutputStream().close();
+
+			Status status = super.sendRequest(request);
+			if (status.isConnectorError()) {
+				statusCode = status.getCode();
+				release();
+			}
+			return status;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new Status(Status.CONNECTOR_ERROR_INTERNAL, e);
+		} catch (IOException e) {
+			statusCode = Status.CONNECTOR_ERROR_COMMUNICATION.getCode();
+			release();
+			return new Status(Status.CONNECTOR_ERROR_COMMUNICATION, e);
+		}
+	}
+
+	@Override
+	public Representation getResponseEntity(Response response) {
+		Representation entity = super.getResponseEntity(response);
+		if (entity == null || entity.getSize() == 0
+				|| "HEAD".equals(getMethod())) {
+			// nothing left to read, the connection can be reused right away
+			InputStream in = connection.getErrorStream();
+			try {
+				if (in == null && getStatusCode() < 400)
+					in = connection.getInputStream();
+				if (in != null)
+					in.close();
+			} catch (IOException e) {
+				// connection is discarded instead of reused
+			}
+			release();
+		}
+		return entity;
+	}
+
+	@Override
+	public int getStatusCode() throws IOException {
+		int code = connection.getResponseCode();
+		firstByte();
+		statusCode = code;
+		return code;
+	}
+
+	@Override
+	public String getReasonPhrase() {
+		try {
+			return connection.getResponseMessage();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public Series<Parameter> getResponseHeaders() {
+		Series<Parameter> result = super.getResponseHeaders();
+		if (!responseHeadersAdded) {
+			// index 0 is the status line
+			for (int i = 1; connection.getHeaderField(i) != null; i++) {
+				String name = connection.getHeaderFieldKey(i);
+				if (name != null)
+					result.add(name, connection.getHeaderField(i));
+			}
+			responseHeadersAdded = true;
+		}
+		return result;
+	}
+
+	@Override
+	public InputStream getResponseEntityStream(long size) {
+		InputStream in;
+		try {
+			in = connection.getInputStream();
+		} catch (IOException e) {
+			in = connection.getErrorStream();
+		}
+		if (in == null) {
+			release();
+			return null;
+		}
+		return meter(in);
+	}
+
+	@Override
+	public ReadableByteChannel getResponseEntityChannel(long size) {
+		return null;
+	}
+
+	@Override
+	public OutputStream getRequestEntityStream() {
+		if (requestStream == null) {
+			try {
+				requestStream = meter(connection.getOutputStream());
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return requestStream;
+	}
+
+	@Override
+	public WritableByteChannel getRequestEntityChannel() {
+		return null;
+	}
+
+	@Override
+	public OutputStream getRequestHeadStream() {
+		return null;
+	}
+
+	@Override
+	protected boolean isClientKeepAlive() {
+		return true;
+	}
+
+	@Override
+	protected boolean isServerKeepAlive() {
+		return true;
+	}
+
+	/**
+	 * Utility for giving back the host permit exactly once
+	 */
+	@Override
+	void release() {
+		if (permits != null && released.compareAndSet(false, true)) {
+			permits.release();
+			report();
+		}
+	}
+
+}
@@ -0,0 +1,191 @@
+package com.softlayer.objectstorage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.restlet.Client;
+import org.restlet.Request;
+import org.restlet.data.Parameter;
+import org.restlet.data.Protocol;
+import org.restlet.engine.http.ClientCall;
+import org.restlet.engine.http.HttpClientHelper;
+import org.restlet.util.Series;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * restlet client connector on top of the JDK HttpURLConnection. Unlike the
+ * restlet internal connector it can be shared by many threads for the whole
+ * life of a session: the JDK keeps finished connections alive and closes them
+ * once idle, the truststore is read once into a single SSL context so TLS
+ * sessions are resumed, and the number of connections in use per host is
+ * capped by the <code>maxConnectionsPerHost</code> context parameter.
+ * 
+ * 
+ */
+public class UrlConnectionClientHelper extends HttpClientHelper {
+
+	private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<String, Semaphore>();
+	private volatile SSLSocketFactory sslSocketFactory;
+	private volatile int maxConnectionsPerHost;
+	private volatile int readTimeout;
+
+	/**
+	 * constructor called by the restlet engine when the connector is created
+	 * 
+	 * @param client
+	 *            the restlet client connector to help
+	 */
+	public UrlConnectionClientHelper(Client client) {
+		super(client);
+		getProtocols().add(Protocol.HTTP);
+		getProtocols().add(Protocol.HTTPS);
+	}
+
+	@Override
+	public synchronized void start() throws Exception {
+		maxConnectionsPerHost = Integer.parseInt(getHelpedParameters()
+				.getFirstValue("maxConnectionsPerHost", "10"));
+		readTimeout = Integer.parseInt(getHelpedParameters().getFirstValue(
+				"readTimeout", "60000"));
+		sslSocketFactory = createSslSocketFactory();
+		super.start();
+	}
+
+	@Override
+	public synchronized void stop() throws Exception {
+		hosts.clear();
+		super.stop();
+	}
+
+	@Override
+	public ClientCall create(Request request) {
+		try {
+			return new UrlConnectionCall(this, request.getMethod().toString(),
+					request.getResourceRef().toString());
+		} catch (IOException e) {
+			throw new IllegalArgumentException("unable to open "
+					+ request.getResourceRef(), e);
+		}
+	}
+
+	/**
+	 * returns the socket factory shared by all https calls, null to use the
+	 * JVM default
+	 * 
+	 * @return the shared socket factory
+	 */
+	SSLSocketFactory getSslSocketFactory() {
+		return sslSocketFactory;
+	}
+
+	/**
+	 * returns the read timeout for each blocking read
+	 * 
+	 * @return timeout in milliseconds
+	 */
+	int getReadTimeout() {
+		return readTimeout;
+	}
+
+	/**
+	 * returns the permits for connections in use to one host
+	 * 
+	 * @param host
+	 *            host and port of the server
+	 * @return the semaphore guarding that host
+	 */
+	Semaphore getPermits(String host) {
+		Semaphore permits = hosts.get(host);
+		if (permits == null) {
+			Semaphore created = new Semaphore(maxConnectionsPerHost, true);
+			permits = hosts.putIfAbsent(host, created);
+			if (permits == null)
+				permits = created;
+		}
+		return permits;
+	}
+
+	/**
+	 * Utility for loading the configured truststore into one SSL context
+	 * 
+	 * @return the socket factory or null if no truststore is configured
+	 * @throws Exception
+	 */
+	private SSLSocketFactory createSslSocketFactory() throws Exception {
+		SSLContext context = loadSslContext(getHelpedParameters());
+		return context == null ? null : context.getSocketFactory();
+	}
+
+	/**
+	 * Utility for building an SSL context that trusts the truststore named
+	 * by the <code>truststorePath</code>, <code>truststorePassword</code>
+	 * and <code>truststoreType</code> connector parameters
+	 * 
+	 * @param parameters
+	 *            the connector parameters
+	 * @return the context or null if no truststore is configured
+	 * @throws Exception
+	 */
+	static SSLContext loadSslContext(Series<Parameter> parameters)
+			throws Exception {
+		String path = parameters.getFirstValue("truststorePath");
+		if (path == null || !new File(path).exists())
+			return null;
+
+		String password = parameters.getFirstValue("truststorePassword", "");
+		KeyStore truststore = KeyStore.getInstance(parameters.getFirstValue(
+				"truststoreType", KeyStore.getDefaultType()));
+		InputStream in = new FileInputStream(path);
+		try {
+			truststore.load(in, password.toCharArray());
+		} finally {
+			in.close();
+		}
+
+		TrustManagerFactory tmf = TrustManagerFactory
+				.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		tmf.init(truststore);
+		SSLContext context = SSLContext.getInstance("TLS");
+		context.init(null, tmf.getTrustManagers(), null);
+		return context;
+	}
+
+}
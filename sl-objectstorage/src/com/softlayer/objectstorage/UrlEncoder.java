@@ -0,0 +1,199 @@
+package com.softlayer.objectstorage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * table driven percent encoder for container and object names. It encodes
+ * exactly like URLCodec followed by turning '+' into "%20": letters, digits
+ * and "-_.*" are kept, a space becomes "%20" and every other character is
+ * written as its UTF-8 bytes in upper case hex, '/' included. Names that need
+ * no encoding are returned as they are, everything else is appended straight
+ * into the caller's builder.
+ * 
+ * 
+ */
+final class UrlEncoder {
+
+	private static final boolean[] SAFE = new boolean[128];
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	static {
+		for (char c = 'a'; c <= 'z'; c++)
+			SAFE[c] = true;
+		for (char c = 'A'; c <= 'Z'; c++)
+			SAFE[c] = true;
+		for (char c = '0'; c <= '9'; c++)
+			SAFE[c] = true;
+		SAFE['-'] = true;
+		SAFE['_'] = true;
+		SAFE['.'] = true;
+		SAFE['*'] = true;
+	}
+
+	private UrlEncoder() {
+	}
+
+	/**
+	 * encode a value
+	 * 
+	 * @param value
+	 *            the value to encode
+	 * @return the encoded value, the same instance if nothing needed encoding
+	 */
+	static String encode(String value) {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c >= 128 || !SAFE[c]) {
+				StringBuilder out = new StringBuilder(length + 16);
+				out.append(value, 0, i);
+				append(value, i, out);
+				return out.toString();
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * encode a value onto the end of a builder
+	 * 
+	 * @param value
+	 *            the value to encode
+	 * @param out
+	 *            the builder to append to
+	 * @return the builder
+	 */
+	static StringBuilder encode(String value, StringBuilder out) {
+		append(value, 0, out);
+		return out;
+	}
+
+	/**
+	 * decode a percent-encoded value as swift's error reports quote paths,
+	 * '+' standing for itself; an escape that is cut short or malformed is
+	 * kept as it is
+	 * 
+	 * @param value
+	 *            the value to decode
+	 * @return the decoded value, the same instance if nothing was escaped
+	 */
+	static String decode(String value) {
+		if (value.indexOf('%') < 0)
+			return value;
+		StringBuilder out = new StringBuilder(value.length());
+		ByteArrayOutputStream escaped = new ByteArrayOutputStream();
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			int high = c == '%' && i + 2 < length ? Character.digit(value
+					.charAt(i + 1), 16) : -1;
+			int low = high >= 0 ? Character.digit(value.charAt(i + 2), 16)
+					: -1;
+			if (low >= 0) {
+				escaped.write((high << 4) | low);
+				i += 2;
+			} else {
+				flush(escaped, out);
+				out.append(c);
+			}
+		}
+		flush(escaped, out);
+		return out.toString();
+	}
+
+	/**
+	 * Utility for appending a run of escaped bytes as UTF-8 text
+	 */
+	private static void flush(ByteArrayOutputStream escaped,
+			StringBuilder out) {
+		if (escaped.size() == 0)
+			return;
+		try {
+			out.append(escaped.toString("UTF-8"));
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		escaped.reset();
+	}
+
+	/**
+	 * Utility for encoding the value from a position onwards
+	 * 
+	 * @param value
+	 *            the value to encode
+	 * @param start
+	 *            index of the first character to encode
+	 * @param out
+	 *            the builder to append to
+	 */
+	private static void append(String value, int start, StringBuilder out) {
+		int length = value.length();
+		for (int i = start; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 128) {
+				if (SAFE[c])
+					out.append(c);
+				else if (c == ' ')
+					out.append("%20");
+				else
+					escape(c, out);
+			} else if (c < 0x800) {
+				escape(0xC0 | (c >> 6), out);
+				escape(0x80 | (c & 0x3F), out);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length
+					&& Character.isLowSurrogate(value.charAt(i + 1))) {
+				int code = Character.toCodePoint(c, value.charAt(++i));
+				escape(0xF0 | (code >> 18), out);
+				escape(0x80 | ((code >> 12) & 0x3F), out);
+				escape(0x80 | ((code >> 6) & 0x3F), out);
+				escape(0x80 | (code & 0x3F), out);
+			} else if (c >= Character.MIN_SURROGATE
+					&& c <= Character.MAX_SURROGATE) {
+				// an unpaired surrogate, String.getBytes writes '?' for it
+				escape('?', out);
+			} else {
+				escape(0xE0 | (c >> 12), out);
+				escape(0x80 | ((c >> 6) & 0x3F), out);
+				escape(0x80 | (c & 0x3F), out);
+			}
+		}
+	}
+
+	/**
+	 * Utility for writing one byte as %XX
+	 */
+	private static void escape(int b, StringBuilder out) {
+		out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.softlayer.objectstorage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * hashes a response body as the caller reads it and, on reaching its end,
+ * checks the MD5 against the ETag of the response; a mismatch is thrown from
+ * that last read. Skipped bytes are read and hashed too. A stream closed
+ * before its end is not checked.
+ * 
+ * 
+ */
+final class VerifyingInputStream extends DigestInputStream {
+
+	private final String etag;
+	private final String name;
+	private boolean verified;
+
+	/**
+	 * constructor
+	 * 
+	 * @param in
+	 *            the body
+	 * @param etag
+	 *            the ETag of the response, the MD5 of the whole body
+	 * @param name
+	 *            the object, for the error message
+	 */
+	VerifyingInputStream(InputStream in, String etag, String name) {
+		super(in, Digests.md5());
+		this.etag = etag;
+		this.name = name;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b < 0)
+			this.verify();
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n < 0)
+			this.verify();
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		byte[] buffer = new byte[(int) Math.min(n, 8192)];
+		long skipped = 0;
+		while (skipped < n) {
+			int read = this.read(buffer, 0,
+					(int) Math.min(buffer.length, n - skipped));
+			if (read < 0)
+				break;
+			skipped += read;
+		}
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	/**
+	 * Utility for checking the body once its end has been read
+	 */
+	private void verify() throws IOException {
+		if (verified)
+			return;
+		verified = true;
+		Digests.verify(etag, Digests.hex(getMessageDigest()), name);
+	}
+
+}
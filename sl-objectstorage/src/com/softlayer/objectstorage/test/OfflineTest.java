@@ -0,0 +1,1136 @@
+package com.softlayer.objectstorage.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.JUnit4TestAdapter;
+import junit.framework.TestCase;
+
+import org.apache.commons.codec.EncoderException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.resource.ResourceException;
+
+import com.softlayer.objectstorage.Account;
+import com.softlayer.objectstorage.ArchiveEntry;
+import com.softlayer.objectstorage.AsyncContainer;
+import com.softlayer.objectstorage.AsyncObjectFile;
+import com.softlayer.objectstorage.AccountStats;
+import com.softlayer.objectstorage.BatchResult;
+import com.softlayer.objectstorage.BulkUpload;
+import com.softlayer.objectstorage.Callback;
+import com.softlayer.objectstorage.Container;
+import com.softlayer.objectstorage.ContainerStats;
+import com.softlayer.objectstorage.ContainerSync;
+import com.softlayer.objectstorage.DirectoryListing;
+import com.softlayer.objectstorage.Governor;
+import com.softlayer.objectstorage.LatencyHistogram;
+import com.softlayer.objectstorage.ListingIndex;
+import com.softlayer.objectstorage.Metrics;
+import com.softlayer.objectstorage.ObjectEntry;
+import com.softlayer.objectstorage.ObjectFile;
+import com.softlayer.objectstorage.ObjectMetadata;
+import com.softlayer.objectstorage.Operation;
+import com.softlayer.objectstorage.RetryPolicy;
+import com.softlayer.objectstorage.Session;
+import com.softlayer.objectstorage.SyncProgress;
+import com.softlayer.objectstorage.Transport;
+import com.softlayer.objectstorage.TreeVisitor;
+import com.softlayer.objectstorage.TreeWalker;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * tests against an in-process SwiftStubServer, they need no network or
+ * credentials.
+ * 
+ * 
+ */
+public class OfflineTest extends TestCase {
+	SwiftStubServer server;
+	Session session;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new SwiftStubServer();
+		session = new Session(server.getBaseUrl(), "test", "test");
+	}
+
+	@After
+	public void tearDown() {
+		session.close();
+		server.stop();
+	}
+
+	public static junit.framework.Test suite() {
+		return new JUnit4TestAdapter(OfflineTest.class);
+	}
+
+	@Test
+	public void testContainerCreateAndList() throws IOException,
+			EncoderException {
+		new Container("alpha", session).create();
+		new Container("beta", session).create();
+		List<Container> containers = new Account(session).listAllContainers();
+		assertEquals(2, containers.size());
+		assertEquals("alpha", containers.get(0).getName());
+		assertTrue(server.hasContainer("beta"));
+	}
+
+	@Test
+	public void testUploadAndDownload() throws IOException, EncoderException {
+		new Container("files", session).create();
+		byte[] data = random(100000);
+		Map<String, String> tags = new HashMap<String, String>();
+		tags.put("owner", "test");
+		new ObjectFile("a b+c.bin", "files", session).uploadStream(
+				new ByteArrayInputStream(data), data.length, tags);
+		assertTrue(Arrays.equals(data, server.getObject("files", "a b+c.bin")));
+		assertEquals("test", server.getObjectMetadata("files", "a b+c.bin")
+				.get("owner"));
+		assertTrue(Arrays.equals(data, new ObjectFile("a b+c.bin", "files",
+				session).getBytes()));
+	}
+
+	@Test
+	public void testListingPages() throws IOException, EncoderException {
+		for (int i = 0; i < 25; i++)
+			server.putObject("pages", String.format("dir%d/obj%02d", i % 2,
+					i), new byte[] { (byte) i });
+		Container container = new Container("pages", session);
+		int count = 0;
+		for (ObjectEntry entry : container.listObjects(null, null, 4)) {
+			assertFalse(entry.isDirectory());
+			count++;
+		}
+		assertEquals(25, count);
+		count = 0;
+		for (ObjectEntry entry : container.listObjects("dir1/", null, 4)) {
+			assertTrue(entry.getName().startsWith("dir1/"));
+			count++;
+		}
+		assertEquals(12, count);
+		count = 0;
+		for (ObjectEntry entry : container.listObjects(null, "/")) {
+			assertTrue(entry.isDirectory());
+			count++;
+		}
+		assertEquals(2, count);
+	}
+
+	@Test
+	public void testListingIndex() {
+		for (int i = 0; i < 300; i++)
+			server.putObject("index", String.format("%s/%03d", i % 3 == 0 ? "b"
+					: "a", i), new byte[i]);
+		ListingIndex index = new Container("index", session).listIndex();
+		assertEquals(300, index.size());
+		int found = index.indexOf("b/042");
+		assertEquals("b/042", index.getName(found));
+		assertEquals(42, index.getSize(found));
+		assertTrue(index.getLastModified(found) > 0);
+		assertTrue(index.hasEtag(found, "\"" + index.getEtag(found) + "\""));
+		assertTrue(index.indexOf("b/043") < 0);
+		assertEquals(100, index.prefixEnd("b/") - index.prefixStart("b/"));
+		assertEquals(200, index.prefixStart("b/"));
+	}
+
+	@Test
+	public void testTreeWalk() throws IOException, EncoderException {
+		for (int i = 0; i < 200; i++)
+			server.putObject("tree", String.format("d%d/e%d/obj%03d", i % 4,
+					i % 5, i), new byte[] { (byte) i });
+		for (int i = 0; i < 3; i++)
+			server.putObject("tree", "top" + i, new byte[0]);
+		Container container = new Container("tree", session);
+
+		DirectoryListing top = container.listDirectory(null);
+		assertEquals(4, top.getDirectories().size());
+		assertEquals("d0/", top.getDirectories().get(0).getName());
+		assertEquals(3, top.getObjects().size());
+		DirectoryListing d0 = container.listDirectory("d0/");
+		assertEquals(5, d0.getDirectories().size());
+		assertEquals(0, d0.getObjects().size());
+
+		TreeWalker walker = new TreeWalker(container);
+		walker.setParallelism(4);
+		// small pages so directories are continued across markers
+		walker.setPageSize(3);
+		final Set<String> seen = Collections
+				.synchronizedSet(new HashSet<String>());
+		long count = walker.walk(null, new TreeVisitor() {
+			public boolean preVisitDirectory(ObjectEntry directory) {
+				return !directory.getName().equals("d1/");
+			}
+
+			public void visitObject(ObjectEntry object) {
+				assertTrue(seen.add(object.getName()));
+			}
+		});
+		assertEquals(153, count);
+		assertEquals(153, seen.size());
+		assertTrue(seen.contains("d2/e2/obj002"));
+		assertFalse(seen.contains("d1/e1/obj001"));
+	}
+
+	@Test
+	public void testLatencyHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(0.5));
+		List<Long> values = new ArrayList<Long>();
+		for (long i = 1; i <= 1000; i++)
+			values.add(i);
+		Collections.shuffle(values, new Random(1));
+		for (long value : values)
+			histogram.record(value);
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500.5, histogram.getMean(), 0.001);
+		assertEquals(1, histogram.getPercentile(0));
+		assertWithinBucket(500, histogram.getPercentile(0.5));
+		assertWithinBucket(990, histogram.getPercentile(0.99));
+		assertEquals(1000, histogram.getPercentile(1));
+
+		// values below the first power of two are counted exactly
+		histogram = new LatencyHistogram();
+		for (long i = 0; i < 10; i++)
+			histogram.record(i);
+		assertEquals(4, histogram.getPercentile(0.5));
+		assertEquals(9, histogram.getPercentile(0.99));
+
+		// a slow tail shows in p99.9 but not in p50 or p99
+		histogram = new LatencyHistogram();
+		for (int i = 0; i < 990; i++)
+			histogram.record(100);
+		for (int i = 0; i < 10; i++)
+			histogram.record(10000);
+		assertWithinBucket(100, histogram.getPercentile(0.5));
+		assertWithinBucket(100, histogram.getPercentile(0.99));
+		assertEquals(10000, histogram.getPercentile(0.999));
+		assertEquals(10000, histogram.getMax());
+	}
+
+	@Test
+	public void testMetadataAndStats() throws IOException, EncoderException {
+		new Container("stats", session).create();
+		new Container("empty", session).create();
+		byte[] data = random(500000);
+		Map<String, String> tags = new HashMap<String, String>();
+		tags.put("owner", "test");
+		new ObjectFile("big", "stats", session).uploadStream(
+				new ByteArrayInputStream(data), data.length, tags);
+		server.putObject("stats", "small", new byte[100]);
+
+		Metrics metrics = new Metrics();
+		session.setMetricsListener(metrics);
+		ObjectFile file = new ObjectFile("big", "stats", session);
+		ObjectMetadata meta = file.getMetadata();
+		assertEquals(data.length, meta.getSize());
+		assertEquals(DigestUtils.md5Hex(data), meta.getEtag());
+		assertEquals("test", meta.getMetadata().get("Owner"));
+		assertTrue(Math.abs(meta.getLastModified()
+				- System.currentTimeMillis()) < 60000);
+		assertFalse(meta.isLargeObject());
+		assertNotNull(new ObjectFile("big", "stats", session).getMetaTags());
+		assertEquals(0, metrics.getStats(Operation.GET).getRequests());
+		assertEquals(2, metrics.getStats(Operation.HEAD).getRequests());
+		assertTrue(metrics.getStats(Operation.HEAD).getBytesReceived() < 1000);
+
+		ContainerStats stats = new Container("stats", session).getStats();
+		assertEquals(2, stats.getObjectCount());
+		assertEquals(data.length + 100, stats.getBytesUsed());
+
+		AccountStats account = new Account(session).getStats(2);
+		assertEquals(2, account.getContainerCount());
+		assertEquals(2, account.getObjectCount());
+		assertEquals(data.length + 100, account.getBytesUsed());
+		assertEquals("empty", account.getContainers().get(0).getName());
+		assertEquals(0, account.getContainers().get(0).getObjectCount());
+	}
+
+	@Test
+	public void testMetaTags() throws IOException, EncoderException {
+		Container container = new Container("tags", session);
+		container.create();
+		byte[] data = random(50000);
+		Map<String, String> tags = new HashMap<String, String>();
+		tags.put("owner", "test");
+		tags.put("color", "red");
+		new ObjectFile("plain", "tags", session).uploadStream(
+				new ByteArrayInputStream(data), data.length, tags);
+		assertEquals(2, tags.size());
+
+		Metrics metrics = new Metrics();
+		session.setMetricsListener(metrics);
+		Map<String, String> replace = new HashMap<String, String>();
+		replace.put("color", "blue");
+		new ObjectFile("plain", "tags", session).setMetaTags(replace);
+		assertEquals("blue", server.getObjectMetadata("tags", "plain").get(
+				"color"));
+		assertNull(server.getObjectMetadata("tags", "plain").get("owner"));
+		assertEquals(0, metrics.getStats(Operation.PUT).getRequests());
+		assertTrue(Arrays.equals(data, server.getObject("tags", "plain")));
+
+		// the encoding and manifest have to survive a change of tags
+		ObjectFile compressed = new ObjectFile("compressed", "tags", session);
+		compressed.setCompressed(true);
+		compressed.uploadStream(new ByteArrayInputStream(data), data.length,
+				tags);
+		File file = File.createTempFile("offline", ".bin");
+		try {
+			write(file, data);
+			new ObjectFile("large", "tags", session).uploadLargeFile(file,
+					tags, 20000, 2, false);
+		} finally {
+			file.delete();
+		}
+		Map<String, String> change = new HashMap<String, String>();
+		change.put("color", "green");
+		change.put("owner", null);
+		Map<String, Map<String, String>> changes = new HashMap<String, Map<String, String>>();
+		changes.put("compressed", change);
+		changes.put("large", change);
+		changes.put("missing", change);
+		BatchResult result = container.updateMetaTags(changes, 2);
+		assertFalse(result.isSuccess());
+		assertEquals(2, result.getSucceeded().size());
+		assertTrue(result.getFailures().containsKey("missing"));
+		for (String name : new String[] { "compressed", "large" }) {
+			ObjectMetadata meta = new ObjectFile(name, "tags", session)
+					.getMetadata();
+			assertEquals("green", meta.getMetadata().get("color"));
+			assertFalse(meta.getMetadata().containsKey("owner"));
+			assertTrue(Arrays.equals(data, new ObjectFile(name, "tags",
+					session).getBytes()));
+		}
+		assertNotNull(new ObjectFile("compressed", "tags", session)
+				.getMetadata().getMetadata().get(ObjectFile.ORIGINAL_LENGTH));
+	}
+
+	@Test
+	public void testBulkDelete() throws IOException, EncoderException {
+		List<String> names = new ArrayList<String>();
+		for (int i = 0; i < 25; i++) {
+			String name = String.format("dir/a b+c %02d \u00e9", i);
+			server.putObject("bulk", name, new byte[] { (byte) i });
+			names.add(name);
+		}
+		Container container = new Container("bulk", session);
+		List<String> some = new ArrayList<String>(names.subList(0, 20));
+		some.add("missing");
+		BatchResult result = container.deleteObjects(some);
+		assertTrue(result.isSuccess());
+		assertEquals(21, result.getSucceeded().size());
+		assertEquals(1, server.getBulkDeleteCount());
+		assertNull(server.getObject("bulk", names.get(0)));
+		assertNotNull(server.getObject("bulk", names.get(24)));
+
+		assertTrue(container.removeRecursive().isSuccess());
+		assertFalse(server.hasContainer("bulk"));
+		assertEquals(2, server.getBulkDeleteCount());
+
+		// a refused nested name is reported quoted with '/' kept
+		server.putObject("nested", names.get(0), new byte[1]);
+		server.putObject("nested", names.get(1), new byte[1]);
+		server.protectObject("nested", names.get(1));
+		result = new Container("nested", session).deleteObjects(names
+				.subList(0, 2));
+		assertEquals(Arrays.asList(names.get(0)), result.getSucceeded());
+		assertEquals(Collections.singleton(names.get(1)), result
+				.getFailures().keySet());
+		assertNotNull(server.getObject("nested", names.get(1)));
+
+		// without the endpoint each object is deleted on its own
+		server.setBulkDelete(false);
+		for (int i = 0; i < 30; i++)
+			server.putObject("single", "obj" + i, new byte[] { (byte) i });
+		container = new Container("single", session);
+		assertTrue(container.deleteObjects(Arrays.asList("obj0")).isSuccess());
+		assertNull(server.getObject("single", "obj0"));
+		server.resetCounters();
+		server.failNext(1, 403);
+		result = container.deleteObjects(Arrays.asList("obj1", "obj2",
+				"obj3"), 1);
+		assertEquals(3, server.getRequestCount());
+		assertEquals(1, result.getFailures().size());
+		assertEquals(2, result.getSucceeded().size());
+		result = container.removeRecursive();
+		assertTrue(result.isSuccess());
+		assertEquals(27, result.getSucceeded().size());
+		assertFalse(server.hasContainer("single"));
+		assertEquals(0, server.getBulkDeleteCount());
+	}
+
+	@Test
+	public void testBulkUpload() throws IOException {
+		File root = File.createTempFile("offline", ".dir");
+		try {
+			root.delete();
+			byte[] big = random(5000);
+			write(new File(root, "big.bin"), big);
+			for (int i = 0; i < 24; i++)
+				write(new File(root, "d" + i % 3 + "/f " + i + ".txt"), ("file "
+						+ i).getBytes());
+			BulkUpload upload = new BulkUpload(new Container("tar", session));
+			upload.setEntriesPerArchive(4);
+			upload.setThreads(3);
+			BatchResult result = upload.upload(root);
+			assertTrue(result.getFailures().toString(), result.isSuccess());
+			assertEquals(25, result.getSucceeded().size());
+			assertEquals(7, server.getExtractCount());
+			assertTrue(Arrays.equals(big, server.getObject("tar", "big.bin")));
+			assertEquals("file 13", new String(server.getObject("tar",
+					"d1/f 13.txt")));
+		} finally {
+			delete(root);
+		}
+
+		// long and non-ASCII names travel in PAX headers
+		StringBuilder longName = new StringBuilder("deep/");
+		while (longName.length() < 150)
+			longName.append("\u00e9t\u00e9/");
+		longName.append("end");
+		StringBuilder tooLong = new StringBuilder();
+		while (tooLong.length() <= 1100)
+			tooLong.append("x");
+		List<ArchiveEntry> entries = new ArrayList<ArchiveEntry>();
+		entries.add(new ArchiveEntry("known", new ByteArrayInputStream(
+				"known".getBytes()), 5));
+		entries.add(new ArchiveEntry("unknown", new ByteArrayInputStream(
+				"unknown".getBytes()), -1));
+		entries.add(new ArchiveEntry(longName.toString(),
+				new ByteArrayInputStream(new byte[0]), 0));
+		entries.add(new ArchiveEntry(tooLong.toString(),
+				new ByteArrayInputStream("x".getBytes()), 1));
+		server.resetCounters();
+		BulkUpload upload = new BulkUpload(new Container("tar", session));
+		BatchResult result = upload.upload(entries.iterator());
+		assertEquals(1, server.getExtractCount());
+		assertEquals(3, result.getSucceeded().size());
+		assertEquals(Collections.singleton(tooLong.toString()), result
+				.getFailures().keySet());
+		assertEquals("unknown", new String(server.getObject("tar", "unknown")));
+		assertEquals(0, server.getObject("tar", longName.toString()).length);
+
+		// cut short in the report, the error names both; the short name
+		// they start with is not touched by it
+		StringBuilder longer = new StringBuilder(tooLong);
+		while (longer.length() <= 1300)
+			longer.append("x");
+		entries.clear();
+		entries.add(new ArchiveEntry("x", new ByteArrayInputStream("x"
+				.getBytes()), 1));
+		entries.add(new ArchiveEntry(longer + "a", new ByteArrayInputStream(
+				"a".getBytes()), 1));
+		entries.add(new ArchiveEntry(longer + "b", new ByteArrayInputStream(
+				"b".getBytes()), 1));
+		result = upload.upload(entries.iterator());
+		assertEquals(Arrays.asList("x"), result.getSucceeded());
+		assertEquals(2, result.getFailures().size());
+
+		// reported quoted with '/' kept, in full and cut short
+		entries.clear();
+		entries.add(new ArchiveEntry("a b/" + tooLong,
+				new ByteArrayInputStream("a".getBytes()), 1));
+		entries.add(new ArchiveEntry("\u00e9 b/" + longer,
+				new ByteArrayInputStream("b".getBytes()), 1));
+		result = upload.upload(entries.iterator());
+		assertTrue(result.getSucceeded().isEmpty());
+		assertEquals(2, result.getFailures().size());
+
+		// content of unknown size beyond the memory limit goes to a file
+		byte[] large = random(3 * 1024 * 1024);
+		entries.clear();
+		entries.add(new ArchiveEntry("large", new ByteArrayInputStream(large),
+				-1));
+		assertTrue(upload.upload(entries.iterator()).isSuccess());
+		assertTrue(Arrays.equals(large, server.getObject("tar", "large")));
+
+		// a small byte limit sends each entry in its own archive
+		server.resetCounters();
+		upload.setBytesPerArchive(1);
+		entries.clear();
+		for (int i = 0; i < 5; i++)
+			entries.add(new ArchiveEntry("one/" + i, new ByteArrayInputStream(
+					new byte[] { (byte) i }), 1));
+		assertTrue(upload.upload(entries.iterator()).isSuccess());
+		assertEquals(5, server.getExtractCount());
+		assertEquals(4, server.getObject("tar", "one/4")[0]);
+	}
+
+	@Test
+	public void testIntegrity() throws IOException, EncoderException {
+		new Container("checked", session).create();
+		File file = File.createTempFile("offline", ".bin");
+		try {
+			byte[] data = random(20000);
+			write(file, data);
+			Map<String, String> tags = new HashMap<String, String>();
+			try {
+				new ObjectFile("wrong", "checked", session).uploadFile(file,
+						tags, "00000000000000000000000000000000");
+				fail("upload with a wrong MD5 was accepted");
+			} catch (ResourceException e) {
+				assertEquals(422, e.getStatus().getCode());
+			}
+			assertNull(server.getObject("checked", "wrong"));
+
+			new ObjectFile("right", "checked", session).uploadFile(file, tags,
+					DigestUtils.md5Hex(data));
+			assertTrue(Arrays.equals(data, server.getObject("checked",
+					"right")));
+
+			server.corruptObject("checked", "right");
+			try {
+				new ObjectFile("right", "checked", session).getBytes();
+				fail("corrupt download was not detected");
+			} catch (IOException e) {
+				assertTrue(e.getMessage().indexOf("does not match") >= 0);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testCompression() throws IOException, EncoderException {
+		new Container("gzip", session).create();
+		StringBuilder csv = new StringBuilder();
+		for (int i = 0; i < 5000; i++)
+			csv.append(i).append(",sensor-").append(i % 7).append(",ok\n");
+		byte[] data = csv.toString().getBytes("UTF-8");
+		File file = File.createTempFile("offline", ".csv");
+		try {
+			write(file, data);
+			ObjectFile object = new ObjectFile("data.csv", "gzip", session);
+			object.setCompressed(true);
+			object.uploadFile(file, new HashMap<String, String>());
+			byte[] stored = server.getObject("gzip", "data.csv");
+			assertTrue(stored.length * 5 < data.length);
+			assertTrue(Arrays.equals(data, gunzip(stored)));
+			assertEquals(String.valueOf(data.length), server
+					.getObjectMetadata("gzip", "data.csv").get(
+							"original-length"));
+			assertTrue(Arrays.equals(data, new ObjectFile("data.csv", "gzip",
+					session).getBytes()));
+
+			ObjectFile stream = new ObjectFile("stream.csv", "gzip", session);
+			stream.setCompressed(true);
+			stream.uploadStream(new ByteArrayInputStream(data), -1,
+					new HashMap<String, String>());
+			assertTrue(Arrays.equals(data, gunzip(server.getObject("gzip",
+					"stream.csv"))));
+			assertNull(server.getObjectMetadata("gzip", "stream.csv").get(
+					"original-length"));
+			assertTrue(Arrays.equals(data, new ObjectFile("stream.csv",
+					"gzip", session).getBytes()));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testGovernor() throws Exception {
+		new Container("limited", session).create();
+		byte[] data = random(400 * 1024);
+		FakeClock clock = new FakeClock();
+		Governor governor = new Governor(clock);
+		governor.setUploadBytesPerSecond(1024 * 1024);
+		governor.setDownloadBytesPerSecond(1024 * 1024);
+		session.setGovernor(governor);
+
+		// 400KB at 1MB/s is 390ms, less the cost of the last piece
+		new ObjectFile("big", "limited", session).uploadStream(
+				new ByteArrayInputStream(data), data.length,
+				new HashMap<String, String>());
+		long slept = clock.sleptMillis();
+		assertTrue(slept + "ms", slept >= 320 && slept <= 390);
+		clock.reset();
+		// idle all through the upload, so the 100ms burst comes first
+		assertTrue(Arrays.equals(data, new ObjectFile("big", "limited",
+				session).getBytes()));
+		slept = clock.sleptMillis();
+		assertTrue(slept + "ms", slept >= 220 && slept <= 290);
+
+		// with the clock stopped every reservation stays outstanding
+		clock.reset();
+		clock.stop();
+		governor = new Governor(clock);
+		governor.setRequestsPerSecond(10);
+		session.setGovernor(governor);
+		server.putObject("limited", "small", "x".getBytes());
+		for (int i = 0; i < 15; i++)
+			new ObjectFile("bulk" + i, "limited", session).uploadStream(
+					new ByteArrayInputStream(data, 0, 10), 10,
+					new HashMap<String, String>());
+		assertEquals(1400, clock.lastSleptMillis());
+		// the read does not wait behind the 15 bulk puts
+		clock.reset();
+		assertEquals("x", new String(new ObjectFile("small", "limited",
+				session).getBytes()));
+		assertEquals(0, clock.sleptMillis());
+		// but it is charged to them
+		new ObjectFile("bulk15", "limited", session).uploadStream(
+				new ByteArrayInputStream(data, 0, 10), 10,
+				new HashMap<String, String>());
+		assertEquals(1600, clock.lastSleptMillis());
+	}
+
+	@Test
+	public void testCopy() throws IOException, EncoderException {
+		server.putObject("src", "original", "copied".getBytes());
+		new Container("dst", session).create();
+		new ObjectFile("copy", "dst", session).copyFrom("src", "original");
+		assertEquals("copied", new String(server.getObject("dst", "copy")));
+	}
+
+	@Test
+	public void testHttpClientTransport() throws Exception {
+		session.setTransport(Transport.HTTP_CLIENT);
+		new Container("h2", session).create();
+		byte[] data = random(300000);
+		Map<String, String> tags = new HashMap<String, String>();
+		tags.put("owner", "test");
+		new ObjectFile("data", "h2", session).uploadStream(
+				new ByteArrayInputStream(data), data.length, tags);
+		assertTrue(Arrays.equals(data, server.getObject("h2", "data")));
+		assertEquals("test", server.getObjectMetadata("h2", "data").get(
+				"owner"));
+		assertTrue(Arrays.equals(data, new ObjectFile("data", "h2", session)
+				.getBytes()));
+		assertEquals(1, new Container("h2", session).listObjectFiles().size());
+
+		File file = File.createTempFile("offline", ".bin");
+		try {
+			write(file, data);
+			new ObjectFile("data", "h2", session).uploadFile(file, tags,
+					"00000000000000000000000000000000");
+			fail("upload with a wrong MD5 was accepted");
+		} catch (ResourceException e) {
+			assertEquals(422, e.getStatus().getCode());
+		} finally {
+			file.delete();
+		}
+
+		server.failNext(1, 503);
+		assertTrue(Arrays.equals(data, new ObjectFile("data", "h2", session)
+				.getBytes()));
+
+		Session limited = new Session(server.getBaseUrl(), "test", "test");
+		try {
+			limited.setTransport(Transport.HTTP_CLIENT);
+			limited.setReadTimeout(300);
+			limited.setMaxConnectionsPerHost(2);
+			limited.setMaxInFlight(8);
+			// the read timeout starts once the body is sent, not before
+			Governor governor = new Governor();
+			governor.setUploadBytesPerSecond(100000);
+			limited.setGovernor(governor);
+			new ObjectFile("slow", "h2", limited).uploadStream(
+					new ByteArrayInputStream(data, 0, 60000), 60000, tags);
+			limited.setGovernor(null);
+			assertNotNull(server.getObject("h2", "slow"));
+
+			server.setLatency(30);
+			server.resetCounters();
+			AsyncObjectFile object = new AsyncContainer("h2", limited)
+					.getObjectFile("slow");
+			List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+			for (int i = 0; i < 8; i++)
+				results.add(object.getBytes(null));
+			for (Future<byte[]> result : results)
+				assertEquals(60000, result.get().length);
+			int max = server.getMaxConcurrentRequests();
+			assertTrue("max per host " + max, max >= 1 && max <= 2);
+		} finally {
+			limited.close();
+		}
+	}
+
+	@Test
+	public void testLargeFileRoundTrip() throws IOException, EncoderException {
+		new Container("large", session).create();
+		File file = File.createTempFile("offline", ".bin");
+		File copy = new File(file.getPath() + ".copy");
+		try {
+			byte[] data = random(1000000);
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(data);
+			} finally {
+				out.close();
+			}
+			Map<String, String> tags = new HashMap<String, String>();
+			new ObjectFile("dynamic", "large", session).uploadLargeFile(file,
+					tags, 300000, 3, false);
+			new ObjectFile("static", "large", session).uploadLargeFile(file,
+					tags, 300000, 3, true);
+			assertTrue(Arrays.equals(data, new ObjectFile("dynamic", "large",
+					session).getBytes()));
+
+			assertEquals(data.length, new ObjectFile("static", "large",
+					session).downloadLargeFile(copy, 128 * 1024, 4));
+			assertTrue(Arrays.equals(data, read(copy)));
+		} finally {
+			file.delete();
+			copy.delete();
+		}
+	}
+
+	@Test
+	public void testLargeFileReplace() throws IOException, EncoderException {
+		new Container("replace", session).create();
+		File file = File.createTempFile("offline", ".bin");
+		try {
+			byte[] data = random(1000000);
+			OutputStream out = new FileOutputStream(file);
+			try {
+				out.write(data);
+			} finally {
+				out.close();
+			}
+			Map<String, String> tags = new HashMap<String, String>();
+			ObjectFile object = new ObjectFile("static", "replace", session);
+			object.uploadLargeFile(file, tags, 300000, 3, true);
+			assertEquals(4, server.getObjectCount("replace_segments"));
+			// the old segments go once the new manifest is written
+			object.uploadLargeFile(file, tags, 400000, 3, true);
+			assertEquals(3, server.getObjectCount("replace_segments"));
+			ObjectFile dynamic = new ObjectFile("dynamic", "replace", session);
+			dynamic.uploadLargeFile(file, tags, 500000, 3, false);
+			assertEquals(5, server.getObjectCount("replace_segments"));
+			dynamic.uploadLargeFile(file, tags, 250000, 3, false);
+			assertEquals(7, server.getObjectCount("replace_segments"));
+			assertTrue(Arrays.equals(data, object.getBytes()));
+			assertTrue(Arrays.equals(data, dynamic.getBytes()));
+
+			// limits are checked before anything is sent
+			server.resetCounters();
+			try {
+				object.uploadLargeFile(file, tags, 999, 3, true);
+				fail("static manifest over 1000 segments");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+			try {
+				object.uploadLargeFile(file, tags, 6L * 1024 * 1024 * 1024,
+						3, true);
+				fail("segment over 5GB");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+			assertEquals(0, server.getRequestCount());
+			object.uploadLargeFile(file, tags, 1000, 3, true);
+			assertEquals(1000 + 4, server.getObjectCount("replace_segments"));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testRangedDownloadResume() throws IOException,
+			EncoderException {
+		byte[] data = random(100000);
+		server.putObject("ranged", "object", data);
+		session.setRetryPolicy(new RetryPolicy(1, 0, 0, 0));
+		File copy = File.createTempFile("offline", ".bin");
+		File checkpoint = new File(copy.getPath() + ".part");
+		try {
+			ObjectFile object = new ObjectFile("object", "ranged", session);
+			// the HEAD and four ranges go through, the fifth range fails
+			server.failAfter(5, 1, 500);
+			try {
+				object.downloadLargeFile(copy, 10000, 1);
+				fail("download went through a failed range");
+			} catch (Exception e) {
+				// expected
+			}
+			assertTrue(checkpoint.isFile());
+			Properties state = new Properties();
+			InputStream in = new FileInputStream(checkpoint);
+			try {
+				state.load(in);
+			} finally {
+				in.close();
+			}
+			int done = state.getProperty("done").split(",").length;
+			assertTrue(state.toString(), done >= 4 && done < 10);
+
+			server.resetCounters();
+			assertEquals(data.length, object.downloadLargeFile(copy, 10000,
+					1));
+			// one HEAD, then only the ranges the checkpoint lacked
+			assertEquals(1 + 10 - done, server.getRequestCount());
+			assertTrue(Arrays.equals(data, read(copy)));
+			assertFalse(checkpoint.exists());
+		} finally {
+			copy.delete();
+			checkpoint.delete();
+		}
+	}
+
+	@Test
+	public void testRetryAndReauth() throws IOException, EncoderException {
+		server.putObject("retry", "object", "payload".getBytes());
+		assertEquals("payload", new String(new ObjectFile("object", "retry",
+				session).getBytes()));
+
+		server.failNext(2, 503);
+		assertEquals("payload", new String(new ObjectFile("object", "retry",
+				session).getBytes()));
+
+		int auths = server.getAuthCount();
+		server.expireTokens();
+		assertEquals("payload", new String(new ObjectFile("object", "retry",
+				session).getBytes()));
+		assertEquals(auths + 1, server.getAuthCount());
+
+		// a token shorter lived than the expiry margin is still reused
+		server.setTokenLifetime(30);
+		Session shortLived = new Session(server.getBaseUrl(), "test", "test");
+		try {
+			auths = server.getAuthCount();
+			for (int i = 0; i < 3; i++)
+				new ObjectFile("object", "retry", shortLived).getBytes();
+			assertEquals(auths + 1, server.getAuthCount());
+		} finally {
+			shortLived.close();
+		}
+	}
+
+	@Test
+	public void testAsync() throws Exception {
+		for (int i = 0; i < 20; i++)
+			server.putObject("async", "obj" + i, ("data " + i).getBytes());
+		new Container("async", session).getStats();
+		session.setMaxInFlight(3);
+		server.setLatency(30);
+		server.resetCounters();
+
+		final AtomicInteger succeeded = new AtomicInteger();
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		final CountDownLatch done = new CountDownLatch(21);
+		Callback<byte[]> callback = new Callback<byte[]>() {
+			public void onSuccess(byte[] result) {
+				succeeded.incrementAndGet();
+				done.countDown();
+			}
+
+			public void onFailure(Throwable error) {
+				failure.set(error);
+				done.countDown();
+			}
+		};
+		AsyncContainer container = new AsyncContainer("async", session);
+		List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+		for (int i = 0; i < 20; i++)
+			results.add(container.getObjectFile("obj" + i).getBytes(callback));
+		Future<byte[]> missing = container.getObjectFile("missing").getBytes(
+				callback);
+		for (int i = 0; i < 20; i++)
+			assertEquals("data " + i, new String(results.get(i).get()));
+		assertTrue(done.await(30, TimeUnit.SECONDS));
+
+		assertEquals(20, succeeded.get());
+		assertTrue(failure.get() instanceof ResourceException);
+		assertEquals(404, ((ResourceException) failure.get()).getStatus()
+				.getCode());
+		try {
+			missing.get();
+			fail("missing object was downloaded");
+		} catch (ExecutionException e) {
+			assertSame(failure.get(), e.getCause());
+		}
+		int max = server.getMaxConcurrentRequests();
+		assertTrue("max in flight " + max, max >= 2 && max <= 3);
+	}
+
+	@Test
+	public void testCdn() throws IOException, EncoderException {
+		Container container = new Container("cdn", session);
+		container.create();
+		container.enableCDN(600);
+		assertEquals(600, server.getCdnTtl("cdn"));
+		container.updateCDNTTL(900);
+		assertEquals(900, server.getCdnTtl("cdn"));
+		container.disableCDN();
+		assertEquals(-1, server.getCdnTtl("cdn"));
+		container.purgeCDN();
+		assertEquals(1, server.getPurgeCount());
+	}
+
+	@Test
+	public void testSync() throws IOException, EncoderException {
+		File root = File.createTempFile("offline", ".dir");
+		File mirror = new File(root.getPath() + ".mirror");
+		try {
+			root.delete();
+			write(new File(root, "a.txt"), "alpha".getBytes());
+			write(new File(root, "sub/b.txt"), "bravo".getBytes());
+			write(new File(root, "sub/deep/c.bin"), random(5000));
+			server.putObject("sync", "stale", "gone".getBytes());
+
+			ContainerSync sync = new ContainerSync(new Container("sync",
+					session), root);
+			sync.setDelete(true);
+			sync.setDryRun(true);
+			SyncProgress progress = sync.upload();
+			assertEquals(3, progress.getTransferred().size());
+			assertEquals(Arrays.asList("stale"), progress.getDeleted());
+			assertNotNull(server.getObject("sync", "stale"));
+
+			sync.setDryRun(false);
+			progress = sync.upload();
+			assertEquals(3, progress.getTransferred().size());
+			assertEquals(1, progress.getDeleted().size());
+			assertTrue(progress.getFailures().isEmpty());
+			assertEquals(5000 + 10, progress.getBytesTransferred());
+			assertEquals("bravo", new String(server.getObject("sync",
+					"sub/b.txt")));
+			assertNull(server.getObject("sync", "stale"));
+
+			// same size, newer than the object: decided by MD5
+			File b = new File(root, "sub/b.txt");
+			b.setLastModified(System.currentTimeMillis() + 60000);
+			new File(root, "a.txt").setLastModified(
+					System.currentTimeMillis() + 60000);
+			write(b, "BRAVO".getBytes());
+			b.setLastModified(System.currentTimeMillis() + 60000);
+			progress = sync.upload();
+			assertEquals(Arrays.asList("sub/b.txt"), progress.getTransferred());
+			assertEquals(2, progress.getUnchangedCount());
+			assertEquals(3, progress.getObjectsChecked());
+
+			ContainerSync back = new ContainerSync(new Container("sync",
+					session), mirror);
+			mirror.mkdirs();
+			progress = back.download();
+			assertEquals(3, progress.getTransferred().size());
+			assertTrue(Arrays.equals(read(new File(root, "sub/deep/c.bin")),
+					read(new File(mirror, "sub/deep/c.bin"))));
+			progress = back.download();
+			assertEquals(3, progress.getUnchangedCount());
+			assertTrue(progress.getTransferred().isEmpty());
+		} finally {
+			delete(root);
+			delete(mirror);
+		}
+	}
+
+	@Test
+	public void testSyncLargeObjects() throws IOException, EncoderException {
+		File root = File.createTempFile("offline", ".dir");
+		try {
+			root.delete();
+			File big = new File(root, "big.bin");
+			write(big, random(25000));
+			ContainerSync sync = new ContainerSync(new Container("slo",
+					session), root);
+			sync.setSegmentSize(10000);
+			sync.setDelete(true);
+			SyncProgress progress = sync.upload();
+			assertEquals(Arrays.asList("big.bin"), progress.getTransferred());
+			assertEquals(3, server.getObjectCount("slo_segments"));
+
+			// the manifest ETag is not the file's MD5, Sync-Md5 is compared
+			sync.setChecksum(true);
+			progress = sync.upload();
+			assertEquals(1, progress.getUnchangedCount());
+			assertTrue(progress.getTransferred().isEmpty());
+
+			// replaced by a plain object, then as segments again
+			write(big, random(5000));
+			progress = sync.upload();
+			assertEquals(Arrays.asList("big.bin"), progress.getTransferred());
+			assertEquals(0, server.getObjectCount("slo_segments"));
+			write(big, random(12000));
+			sync.upload();
+			assertEquals(2, server.getObjectCount("slo_segments"));
+			write(big, random(31000));
+			sync.upload();
+			assertEquals(4, server.getObjectCount("slo_segments"));
+
+			File mirror = new File(root, "mirror");
+			ContainerSync back = new ContainerSync(new Container("slo",
+					session), mirror);
+			back.setChecksum(true);
+			mirror.mkdirs();
+			back.download();
+			assertTrue(Arrays.equals(random(31000), read(new File(mirror,
+					"big.bin"))));
+			progress = back.download();
+			assertEquals(1, progress.getUnchangedCount());
+			delete(mirror);
+
+			assertTrue(big.delete());
+			progress = sync.upload();
+			assertEquals(Arrays.asList("big.bin"), progress.getDeleted());
+			assertTrue(progress.getFailures().isEmpty());
+			assertNull(server.getObject("slo", "big.bin"));
+			assertEquals(0, server.getObjectCount("slo_segments"));
+		} finally {
+			delete(root);
+		}
+	}
+
+	/**
+	 * a clock that only moves when it is slept on, or not at all once
+	 * stopped, recording the waits
+	 */
+	private static class FakeClock implements Governor.Clock {
+		private long now;
+		private long slept;
+		private long last;
+		private boolean stopped;
+
+		public synchronized long nanoTime() {
+			return now;
+		}
+
+		public synchronized void sleep(long nanos) {
+			if (!stopped)
+				now += nanos;
+			slept += nanos;
+			last = nanos;
+		}
+
+		synchronized void stop() {
+			stopped = true;
+		}
+
+		synchronized void reset() {
+			slept = 0;
+			last = 0;
+		}
+
+		synchronized long sleptMillis() {
+			return slept / 1000000L;
+		}
+
+		synchronized long lastSleptMillis() {
+			return last / 1000000L;
+		}
+	}
+
+	/**
+	 * Utility for checking a percentile against the exact value, buckets
+	 * are at most 1/16 of their values wide
+	 */
+	private static void assertWithinBucket(long expected, long actual) {
+		assertTrue(expected + " reported as " + actual, actual >= expected
+				&& actual <= expected + expected / 16);
+	}
+
+	/**
+	 * Utility for generating test data
+	 */
+	private static byte[] random(int size) {
+		byte[] data = new byte[size];
+		new Random(size).nextBytes(data);
+		return data;
+	}
+
+	/**
+	 * Utility for writing a local file, creating its directory
+	 */
+	private static void write(File file, byte[] data) throws IOException {
+		file.getParentFile().mkdirs();
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(data);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Utility for removing a local directory tree
+	 */
+	private static void delete(File file) {
+		File[] children = file.listFiles();
+		if (children != null)
+			for (File child : children)
+				delete(child);
+		file.delete();
+	}
+
+	/**
+	 * Utility for decompressing stored bytes
+	 */
+	private static byte[] gunzip(byte[] data) throws IOException {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int n;
+		while ((n = in.read(buffer)) != -1)
+			out.write(buffer, 0, n);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Utility for reading a whole local file
+	 */
+	private static byte[] read(File file) throws IOException {
+		byte[] data = new byte[(int) file.length()];
+		DataInputStream in = new DataInputStream(new FileInputStream(file));
+		try {
+			in.readFully(data);
+		} finally {
+			in.close();
+		}
+		return data;
+	}
+
+}
@@ -0,0 +1,1516 @@
+package com.softlayer.objectstorage.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TimeZone;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.codec.binary.Hex;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Unless otherwise noted, all files are released under the MIT license,
+ * exceptions contain licensing information in them.
+ * 
+ * Copyright (C) 2012 SoftLayer Technologies, Inc.
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * Except as contained in this notice, the name of SoftLayer Technologies, Inc.
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization from
+ * SoftLayer Technologies, Inc.
+ * 
+ * 
+ * in-memory object storage server speaking the subset of the Swift API this
+ * client uses: auth, account, container and object GET/PUT/HEAD/DELETE/POST,
+ * copies, paged listings, byte ranges, dynamic and static large objects and
+ * the CDN management paths. It runs on the loopback interface so tests and
+ * load runs need no network or credentials.
+ * 
+ * Latency, a per request bandwidth cap and error rates can be injected to
+ * exercise the client's retry, concurrency and throughput behaviour. Faults
+ * apply to storage and CDN requests, never to auth.
+ * 
+ * 
+ */
+public class SwiftStubServer {
+
+	public static final String ACCOUNT = "AUTH_test";
+	private static final String AUTH_PATH = "/auth/v1.0";
+	private static final String STORAGE_PATH = "/v1/" + ACCOUNT;
+	private static final String CDN_PATH = "/cdn/" + ACCOUNT;
+	private static final String X_OBJECT_META = "X-Object-Meta-";
+	private static final int DEFAULT_LIMIT = 10000;
+	private static final int BULK_DELETE_LIMIT = 10000;
+	private static final int MAX_OBJECT_NAME_LENGTH = 1024;
+	// like swift, longer paths are cut short in extract archive errors
+	private static final int MAX_PATH_LENGTH = MAX_OBJECT_NAME_LENGTH + 258;
+	private static final int TAR_BLOCK = 512;
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	static {
+		// without it small responses wait out the peer's delayed ACK
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final SortedMap<String, StoredContainer> containers = new TreeMap<String, StoredContainer>();
+	private final Set<String> tokens = Collections
+			.synchronizedSet(new HashSet<String>());
+	private final Set<String> protectedPaths = Collections
+			.synchronizedSet(new HashSet<String>());
+	private final AtomicInteger tokenCount = new AtomicInteger();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final AtomicInteger purges = new AtomicInteger();
+	private final AtomicInteger bulkDeletes = new AtomicInteger();
+	private final AtomicInteger extracts = new AtomicInteger();
+	private final Random random = new Random(42);
+
+	private volatile long latency;
+	private volatile long bandwidth;
+	private volatile double errorRate;
+	private volatile int errorStatus = 503;
+	private volatile long tokenLifetime = 86400;
+	private volatile boolean bulkDelete = true;
+	private int failures;
+	private int passing;
+	private int failureStatus;
+
+	/**
+	 * constructor starting the server on a free loopback port
+	 * 
+	 * @throws IOException
+	 */
+	public SwiftStubServer() throws IOException {
+		this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "swift-stub");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0),
+				128);
+		this.server.setExecutor(executor);
+		this.server.createContext("/", new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					SwiftStubServer.this.handle(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		this.server.start();
+	}
+
+	/**
+	 * returns the base url to give a session, auth is at /auth/v1.0 under it
+	 * 
+	 * @return the base url of the server
+	 */
+	public String getBaseUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	/**
+	 * stop the server and its threads
+	 */
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * delay every storage and CDN response
+	 * 
+	 * @param millis
+	 *            delay in milliseconds, 0 for none
+	 */
+	public void setLatency(long millis) {
+		this.latency = millis;
+	}
+
+	/**
+	 * cap how fast each request body is read and each response body written
+	 * 
+	 * @param bytesPerSecond
+	 *            cap per request, 0 for no cap
+	 */
+	public void setBandwidth(long bytesPerSecond) {
+		this.bandwidth = bytesPerSecond;
+	}
+
+	/**
+	 * answer a random share of storage and CDN requests with an error; the
+	 * random sequence is seeded so runs repeat
+	 * 
+	 * @param rate
+	 *            share of requests to fail, between 0 and 1
+	 * @param status
+	 *            the HTTP status to fail with, for example 503
+	 */
+	public void setErrorRate(double rate, int status) {
+		this.errorStatus = status;
+		this.errorRate = rate;
+	}
+
+	/**
+	 * answer the next storage or CDN requests with an error
+	 * 
+	 * @param count
+	 *            number of requests to fail
+	 * @param status
+	 *            the HTTP status to fail with
+	 */
+	public synchronized void failNext(int count, int status) {
+		this.failAfter(0, count, status);
+	}
+
+	/**
+	 * serve some storage or CDN requests and answer the ones after them
+	 * with an error
+	 * 
+	 * @param passing
+	 *            number of requests to serve first
+	 * @param count
+	 *            number of requests to fail after those
+	 * @param status
+	 *            the HTTP status to fail with
+	 */
+	public synchronized void failAfter(int passing, int count, int status) {
+		this.passing = passing;
+		this.failures = count;
+		this.failureStatus = status;
+	}
+
+	/**
+	 * refuse to delete an object, a DELETE of it is answered 403 and a bulk
+	 * delete reports it as forbidden
+	 * 
+	 * @param container
+	 *            the container name
+	 * @param name
+	 *            the object name
+	 */
+	public void protectObject(String container, String name) {
+		protectedPaths.add(container + "/" + name);
+	}
+
+	/**
+	 * set the lifetime announced for tokens issued from now on
+	 * 
+	 * @param seconds
+	 *            the X-Auth-Token-Expires value, a day by default
+	 */
+	public void setTokenLifetime(long seconds) {
+		this.tokenLifetime = seconds;
+	}
+
+	/**
+	 * turn the bulk delete endpoint on or off, when off a bulk delete is
+	 * answered like a plain account POST
+	 * 
+	 * @param enabled
+	 *            true to serve bulk deletes, the default
+	 */
+	public void setBulkDelete(boolean enabled) {
+		this.bulkDelete = enabled;
+	}
+
+	/**
+	 * invalidate every token issued so far, the next request of each client
+	 * is answered 401
+	 */
+	public void expireTokens() {
+		tokens.clear();
+	}
+
+	/**
+	 * returns the number of requests served, auth included
+	 * 
+	 * @return the request count
+	 */
+	public int getRequestCount() {
+		return requests.get();
+	}
+
+	/**
+	 * returns the number of tokens issued
+	 * 
+	 * @return the auth count
+	 */
+	public int getAuthCount() {
+		return tokenCount.get();
+	}
+
+	/**
+	 * returns the most requests that were being served at the same time
+	 * 
+	 * @return the peak concurrency
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxInFlight.get();
+	}
+
+	/**
+	 * returns the number of CDN purges requested
+	 * 
+	 * @return the purge count
+	 */
+	public int getPurgeCount() {
+		return purges.get();
+	}
+
+	/**
+	 * returns the number of bulk delete requests served
+	 * 
+	 * @return the bulk delete count
+	 */
+	public int getBulkDeleteCount() {
+		return bulkDeletes.get();
+	}
+
+	/**
+	 * returns the number of archives extracted
+	 * 
+	 * @return the extract archive count
+	 */
+	public int getExtractCount() {
+		return extracts.get();
+	}
+
+	/**
+	 * reset the request, auth, concurrency, purge, bulk delete and extract
+	 * counters
+	 */
+	public void resetCounters() {
+		requests.set(0);
+		tokenCount.set(0);
+		maxInFlight.set(0);
+		purges.set(0);
+		bulkDeletes.set(0);
+		extracts.set(0);
+	}
+
+	/**
+	 * store an object directly, creating its container if needed
+	 * 
+	 * @param container
+	 *            the container name
+	 * @param name
+	 *            the object name
+	 * @param data
+	 *            the object contents
+	 */
+	public void putObject(String container, String name, byte[] data) {
+		synchronized (containers) {
+			StoredContainer c = containers.get(container);
+			if (c == null) {
+				c = new StoredContainer();
+				containers.put(container, c);
+			}
+			c.objects.put(name, new StoredObject(data, md5(data),
+					"application/octet-stream", null,
+					new TreeMap<String, String>(), null, null));
+		}
+	}
+
+	/**
+	 * flips a bit of a stored object while keeping its ETag, as a disk or
+	 * network fault would
+	 * 
+	 * @param container
+	 *            the container name
+	 * @param name
+	 *            the object name, it must exist and not be empty
+	 */
+	public void corruptObject(String container, String name) {
+		synchronized (containers) {
+			StoredContainer c = containers.get(container);
+			StoredObject o = c.objects.get(name);
+			byte[] data = o.data.clone();
+			data[data.length / 2] ^= 1;
+			c.objects.put(name, new StoredObject(data, o.etag, o.contentType,
+					o.contentEncoding, o.meta, o.manifest, o.segments));
+		}
+	}
+
+	/**
+	 * returns the stored contents of an object, large objects are not
+	 * joined
+	 * 
+	 * @param container
+	 *            the container name
+	 * @param name
+	 *            the object name
+	 * @return the object contents, or null if there is no such object
+	 */
+	public byte[] getObject(String container, String name) {
+		synchronized (containers) {
+			StoredContainer c = containers.get(container);
+			StoredObject o = c == null ? null : c.objects.get(name);
+			return o == null ? null : o.data;
+		}
+	}
+
+	/**
+	 * returns the metadata of an object without the X-Object-Meta- prefix
+	 * 
+	 * @param container
+	 *            the container name
+	 * @param name
+	 *            the object name
+	 * @return the metadata, or null if there is no such object
+	 */
+	public Map<String, String> getObjectMetadata(String container,
+			String name) {
+		synchronized (containers) {
+			StoredContainer c = containers.get(container);
+			StoredObject o = c == null ? null : c.objects.get(name);
+			return o == null ? null : new TreeMap<String, String>(o.meta);
+		}
+	}
+
+	/**
+	 * returns whether a container exists
+	 * 
+	 * @param container
+	 *            the container name
+	 * @return true if the container exists
+	 */
+	public boolean hasContainer(String container) {
+		synchronized (containers) {
+			return containers.containsKey(container);
+		}
+	}
+
+	/**
+	 * returns the number of objects in a container
+	 * 
+	 * @param container
+	 *            the container name
+	 * @return the object count, 0 if the container does not exist
+	 */
+	public int getObjectCount(String container) {
+		synchronized (containers) {
+			StoredContainer c = containers.get(container);
+			return c == null ? 0 : c.objects.size();
+		}
+	}
+
+	/**
+	 * returns the CDN TTL of a container
+	 * 
+	 * @param container
+	 *            the container name
+	 * @return the TTL in seconds, or -1 if CDN is not enabled
+	 */
+	public int getCdnTtl(String container) {
+		synchronized (containers) {
+			StoredContainer c = containers.get(container);
+			return c == null || !c.cdnEnabled ? -1 : c.cdnTtl;
+		}
+	}
+
+	/**
+	 * Utility for answering one request
+	 * 
+	 * @param exchange
+	 *            the request and its response
+	 * @throws IOException
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		int now = inFlight.incrementAndGet();
+		for (int max = maxInFlight.get(); now > max
+				&& !maxInFlight.compareAndSet(max, now); max = maxInFlight
+				.get())
+			;
+		try {
+			byte[] body = read(exchange.getRequestBody());
+			String path = exchange.getRequestURI().getRawPath();
+			if (path.equals(AUTH_PATH)) {
+				auth(exchange);
+				return;
+			}
+			if (latency > 0)
+				Thread.sleep(latency);
+			int fault = fault();
+			if (fault > 0) {
+				empty(exchange, fault);
+				return;
+			}
+			String token = exchange.getRequestHeaders().getFirst(
+					"X-Auth-Token");
+			if (token == null || !tokens.contains(token)) {
+				empty(exchange, 401);
+				return;
+			}
+			Map<String, String> query = query(exchange.getRequestURI()
+					.getRawQuery());
+			if (path.startsWith(STORAGE_PATH))
+				storage(exchange, path.substring(STORAGE_PATH.length()),
+						query, body);
+			else if (path.startsWith(CDN_PATH))
+				cdn(exchange, path.substring(CDN_PATH.length()));
+			else
+				empty(exchange, 404);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (JSONException e) {
+			empty(exchange, 400);
+		} finally {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Utility for deciding whether to inject an error into this request
+	 * 
+	 * @return the status to fail with, or 0 to serve the request
+	 */
+	private synchronized int fault() {
+		if (failures > 0 && passing > 0) {
+			passing--;
+		} else if (failures > 0) {
+			failures--;
+			return failureStatus;
+		}
+		if (errorRate > 0 && random.nextDouble() < errorRate)
+			return errorStatus;
+		return 0;
+	}
+
+	/**
+	 * Utility for issuing a token, any user and key are accepted
+	 * 
+	 * @param exchange
+	 *            the auth request
+	 * @throws IOException
+	 */
+	private void auth(HttpExchange exchange) throws IOException {
+		Headers in = exchange.getRequestHeaders();
+		if (in.getFirst("X-Auth-User") == null
+				|| in.getFirst("X-Auth-Key") == null) {
+			empty(exchange, 401);
+			return;
+		}
+		String token = "AUTH_tk" + tokenCount.incrementAndGet();
+		tokens.add(token);
+		Headers out = exchange.getResponseHeaders();
+		out.add("X-Auth-Token", token);
+		out.add("X-Storage-Url", getBaseUrl() + STORAGE_PATH);
+		out.add("X-CDN-Management-URL", getBaseUrl() + CDN_PATH);
+		out.add("X-Auth-Token-Expires", String.valueOf(tokenLifetime));
+		empty(exchange, 200);
+	}
+
+	/**
+	 * Utility for routing a storage request to the account, a container or
+	 * an object
+	 */
+	private void storage(HttpExchange exchange, String path,
+			Map<String, String> query, byte[] body) throws IOException,
+			JSONException {
+		if (path.length() <= 1) {
+			account(exchange, query, body);
+			return;
+		}
+		int slash = path.indexOf('/', 1);
+		String container = decode(slash < 0 ? path.substring(1) : path
+				.substring(1, slash));
+		String name = slash < 0 || slash == path.length() - 1 ? null
+				: decode(path.substring(slash + 1));
+		if (name == null)
+			container(exchange, container, query, body);
+		else
+			object(exchange, container, name, query, body);
+	}
+
+	/**
+	 * Utility for account requests: container listings, stats, CDN urls,
+	 * search and bulk deletes
+	 */
+	private void account(HttpExchange exchange, Map<String, String> query,
+			byte[] body) throws IOException, JSONException {
+		String method = exchange.getRequestMethod();
+		Headers in = exchange.getRequestHeaders();
+		if (method.equals("POST")) {
+			if (bulkDelete && query.containsKey("bulk-delete"))
+				bulkDelete(exchange, body);
+			else
+				empty(exchange, 204);
+			return;
+		}
+		boolean cdn = "cdn".equalsIgnoreCase(in.getFirst("X-Content"));
+		if (method.equals("HEAD")) {
+			Headers out = exchange.getResponseHeaders();
+			if (cdn) {
+				out.add("X-CDN-URL", "http://cdn.example.com");
+				out.add("X-CDN-SSL-URL", "https://cdn.example.com");
+				out.add("X-CDN-Stream-Http-URL", "http://stream.example.com");
+				out.add("X-CDN-Stream-Flash-URL", "rtmp://stream.example.com");
+			}
+			synchronized (containers) {
+				long objects = 0;
+				long bytes = 0;
+				for (StoredContainer c : containers.values()) {
+					objects += c.objects.size();
+					bytes += c.bytes();
+				}
+				out.add("X-Account-Container-Count", String
+						.valueOf(containers.size()));
+				out.add("X-Account-Object-Count", String.valueOf(objects));
+				out.add("X-Account-Bytes-Used", String.valueOf(bytes));
+			}
+			empty(exchange, 204);
+			return;
+		}
+		if (!method.equals("GET")) {
+			empty(exchange, 405);
+			return;
+		}
+		if ("search".equalsIgnoreCase(in.getFirst("X-Context"))) {
+			search(exchange, query);
+			return;
+		}
+		boolean json = "json".equals(query.get("format"));
+		JSONArray array = new JSONArray();
+		StringBuilder text = new StringBuilder();
+		synchronized (containers) {
+			for (String name : page(containers, query)) {
+				StoredContainer c = containers.get(name);
+				if (cdn && !c.cdnEnabled)
+					continue;
+				if (json) {
+					JSONObject entry = new JSONObject();
+					entry.put("name", name);
+					entry.put("count", c.objects.size());
+					entry.put("bytes", c.bytes());
+					array.put(entry);
+				} else {
+					text.append(name).append('\n');
+				}
+			}
+		}
+		listing(exchange, json, array, text);
+	}
+
+	/**
+	 * Utility for deleting the objects and empty containers named one per
+	 * line, answering in the format swift's bulk middleware uses
+	 */
+	private void bulkDelete(HttpExchange exchange, byte[] body)
+			throws IOException, JSONException {
+		bulkDeletes.incrementAndGet();
+		String[] lines = new String(body, "UTF-8").split("\n");
+		int deleted = 0;
+		int notFound = 0;
+		JSONArray errors = new JSONArray();
+		String status = "200 OK";
+		if (lines.length > BULK_DELETE_LIMIT) {
+			status = "413 Request Entity Too Large";
+			lines = new String[0];
+		}
+		synchronized (containers) {
+			for (String line : lines) {
+				if (line.trim().length() == 0)
+					continue;
+				String path = decode(line.trim());
+				int slash = path.indexOf('/', 1);
+				StoredContainer c = containers.get(slash < 0 ? path
+						.substring(1) : path.substring(1, slash));
+				String name = slash < 0 ? null : path.substring(slash + 1);
+				if (c == null || name != null
+						&& !c.objects.containsKey(name)) {
+					notFound++;
+				} else if (protectedPaths.contains(path.substring(1))) {
+					errors.put(new JSONArray().put(quote(path)).put(
+							"403 Forbidden"));
+				} else if (name != null) {
+					c.objects.remove(name);
+					deleted++;
+				} else if (!c.objects.isEmpty()) {
+					errors.put(new JSONArray().put(quote(path)).put(
+							"409 Conflict"));
+				} else {
+					containers.values().remove(c);
+					deleted++;
+				}
+			}
+		}
+		if (errors.length() > 0)
+			status = "400 Bad Request";
+		String accept = exchange.getRequestHeaders().getFirst("Accept");
+		if (accept != null && accept.contains("application/json")) {
+			JSONObject result = new JSONObject();
+			result.put("Number Deleted", deleted);
+			result.put("Number Not Found", notFound);
+			result.put("Response Body", "");
+			result.put("Response Status", status);
+			result.put("Errors", errors);
+			body(exchange, 200, result.toString().getBytes("UTF-8"),
+					"application/json; charset=utf-8");
+		} else {
+			StringBuilder text = new StringBuilder();
+			text.append("Number Deleted: ").append(deleted).append('\n');
+			text.append("Number Not Found: ").append(notFound).append('\n');
+			text.append("Response Body: \nResponse Status: ").append(status)
+					.append("\nErrors:\n");
+			for (int i = 0; i < errors.length(); i++)
+				text.append(errors.getJSONArray(i).join(", ")).append('\n');
+			body(exchange, 200, text.toString().getBytes("UTF-8"),
+					"text/plain; charset=utf-8");
+		}
+	}
+
+	/**
+	 * Utility for answering a search with the paths of matching objects
+	 */
+	private void search(HttpExchange exchange, Map<String, String> query)
+			throws IOException {
+		String q = query.get("q");
+		StringBuilder text = new StringBuilder();
+		synchronized (containers) {
+			for (Map.Entry<String, StoredContainer> c : containers.entrySet()) {
+				for (String name : c.getValue().objects.keySet()) {
+					String path = c.getKey() + "/" + name;
+					if (q == null
+							|| path.toLowerCase(Locale.ENGLISH).contains(
+									q.toLowerCase(Locale.ENGLISH)))
+						text.append(path).append('\n');
+				}
+			}
+		}
+		body(exchange, 200, text.toString().getBytes("UTF-8"), "text/plain");
+	}
+
+	/**
+	 * Utility for container requests
+	 */
+	private void container(HttpExchange exchange, String name,
+			Map<String, String> query, byte[] body) throws IOException,
+			JSONException {
+		String method = exchange.getRequestMethod();
+		if (method.equals("PUT")
+				&& "tar".equals(query.get("extract-archive"))) {
+			extractArchive(exchange, name, body);
+			return;
+		}
+		synchronized (containers) {
+			StoredContainer c = containers.get(name);
+			if (method.equals("PUT")) {
+				boolean created = c == null;
+				if (created) {
+					c = new StoredContainer();
+					containers.put(name, c);
+				}
+				meta(exchange.getRequestHeaders(), "X-Container-Meta-", c.meta);
+				empty(exchange, created ? 201 : 202);
+				return;
+			}
+			if (c == null) {
+				empty(exchange, 404);
+				return;
+			}
+			if (method.equals("POST")) {
+				meta(exchange.getRequestHeaders(), "X-Container-Meta-", c.meta);
+				empty(exchange, 204);
+			} else if (method.equals("DELETE")) {
+				if (!c.objects.isEmpty()) {
+					empty(exchange, 409);
+					return;
+				}
+				containers.remove(name);
+				empty(exchange, 204);
+			} else if (method.equals("HEAD")) {
+				Headers out = exchange.getResponseHeaders();
+				out.add("X-Container-Object-Count", String.valueOf(c.objects
+						.size()));
+				out.add("X-Container-Bytes-Used", String.valueOf(c.bytes()));
+				for (Map.Entry<String, String> m : c.meta.entrySet())
+					out.add("X-Container-Meta-" + m.getKey(), m.getValue());
+				empty(exchange, 204);
+			} else if (method.equals("GET")) {
+				objectListing(exchange, c, query);
+			} else {
+				empty(exchange, 405);
+			}
+		}
+	}
+
+	/**
+	 * Utility for storing each file of a ustar archive as an object,
+	 * answering in the format swift's bulk middleware uses
+	 */
+	private void extractArchive(HttpExchange exchange, String name,
+			byte[] body) throws IOException, JSONException {
+		extracts.incrementAndGet();
+		int created = 0;
+		JSONArray errors = new JSONArray();
+		String status = "201 Created";
+		synchronized (containers) {
+			StoredContainer c = containers.get(name);
+			if (c == null) {
+				c = new StoredContainer();
+				containers.put(name, c);
+			}
+			String paxPath = null;
+			for (int pos = 0; pos + TAR_BLOCK <= body.length
+					&& body[pos] != 0;) {
+				long sum = 0;
+				for (int i = 0; i < TAR_BLOCK; i++)
+					sum += i >= 148 && i < 156 ? ' ' : body[pos + i] & 0xff;
+				if (!"ustar".equals(field(body, pos + 257, 6))
+						|| sum != Long.parseLong(field(body, pos + 148, 8)
+								.trim(), 8)) {
+					status = "400 Bad Request";
+					errors = new JSONArray();
+					created = 0;
+					break;
+				}
+				int size = Integer.parseInt(field(body, pos + 124, 12).trim(),
+						8);
+				char type = (char) body[pos + 156];
+				int data = pos + TAR_BLOCK;
+				byte[] content = Arrays.copyOfRange(body, data, data + size);
+				String path = paxPath != null ? paxPath : field(body, pos, 100);
+				pos = data + (size + TAR_BLOCK - 1) / TAR_BLOCK * TAR_BLOCK;
+				paxPath = null;
+				if (type == 'x') {
+					paxPath = paxPath(content);
+					continue;
+				}
+				if (type != '0' && type != 0)
+					continue;
+				if (path.getBytes("UTF-8").length > MAX_OBJECT_NAME_LENGTH) {
+					String reported = name + "/" + path;
+					if (reported.length() > MAX_PATH_LENGTH)
+						reported = reported.substring(0, MAX_PATH_LENGTH);
+					errors.put(new JSONArray().put(quote(reported)).put(
+							"400 Bad Request"));
+					continue;
+				}
+				c.objects.put(path, new StoredObject(content, md5(content),
+						"application/octet-stream", null,
+						new TreeMap<String, String>(), null, null));
+				created++;
+			}
+		}
+		if (errors.length() > 0)
+			status = "400 Bad Request";
+		JSONObject result = new JSONObject();
+		result.put("Number Files Created", created);
+		result.put("Response Body", "");
+		result.put("Response Status", status);
+		result.put("Errors", errors);
+		body(exchange, 200, result.toString().getBytes("UTF-8"),
+				"application/json; charset=utf-8");
+	}
+
+	/**
+	 * Utility for quoting a path in an error report as swift does, with '/'
+	 * left as it is
+	 */
+	private static String quote(String path)
+			throws UnsupportedEncodingException {
+		return URLEncoder.encode(path, "UTF-8").replace("+", "%20").replace(
+				"*", "%2A").replace("%7E", "~").replace("%2F", "/");
+	}
+
+	/**
+	 * Utility for reading a NUL terminated tar header field
+	 */
+	private static String field(byte[] block, int offset, int length)
+			throws UnsupportedEncodingException {
+		int end = offset;
+		while (end < offset + length && block[end] != 0)
+			end++;
+		return new String(block, offset, end - offset, "UTF-8");
+	}
+
+	/**
+	 * Utility for the path record of a PAX extended header
+	 */
+	private static String paxPath(byte[] records)
+			throws UnsupportedEncodingException {
+		int pos = 0;
+		while (pos < records.length) {
+			int space = pos;
+			while (records[space] != ' ')
+				space++;
+			int length = Integer.parseInt(new String(records, pos, space
+					- pos, "UTF-8"));
+			String record = new String(records, space + 1, length
+					- (space - pos) - 2, "UTF-8");
+			if (record.startsWith("path="))
+				return record.substring(5);
+			pos += length;
+		}
+		return null;
+	}
+
+	/**
+	 * Utility for listing the objects of a container with prefix, delimiter,
+	 * marker and limit
+	 */
+	private void objectListing(HttpExchange exchange, StoredContainer c,
+			Map<String, String> query) throws IOException, JSONException {
+		boolean json = "json".equals(query.get("format"));
+		String prefix = query.get("prefix");
+		String delimiter = query.get("delimiter");
+		JSONArray array = new JSONArray();
+		StringBuilder text = new StringBuilder();
+		int limit = limit(query);
+		int count = 0;
+		String marker = query.get("marker");
+		// like swift, a marker naming a directory is not listed again
+		String lastSubdir = marker;
+		SortedMap<String, StoredObject> tail = marker == null ? c.objects
+				: c.objects.tailMap(marker + "\0");
+		for (Map.Entry<String, StoredObject> e : tail.entrySet()) {
+			if (count >= limit)
+				break;
+			String name = e.getKey();
+			if (prefix != null && !name.startsWith(prefix)) {
+				if (name.compareTo(prefix) > 0)
+					break;
+				continue;
+			}
+			int start = prefix == null ? 0 : prefix.length();
+			int cut = delimiter == null ? -1 : name.indexOf(delimiter, start);
+			if (cut >= 0) {
+				String subdir = name.substring(0, cut + delimiter.length());
+				if (subdir.equals(lastSubdir))
+					continue;
+				lastSubdir = subdir;
+				count++;
+				if (json) {
+					JSONObject entry = new JSONObject();
+					entry.put("subdir", subdir);
+					array.put(entry);
+				} else {
+					text.append(subdir).append('\n');
+				}
+				continue;
+			}
+			count++;
+			if (json) {
+				StoredObject o = e.getValue();
+				JSONObject entry = new JSONObject();
+				entry.put("name", name);
+				entry.put("hash", o.etag);
+				// like swift, a static large object is listed by its content
+				entry.put("bytes", o.segments != null ? join(o).length
+						: o.data.length);
+				entry.put("content_type", o.contentType);
+				entry.put("last_modified", listingDate(o.lastModified));
+				array.put(entry);
+			} else {
+				text.append(name).append('\n');
+			}
+		}
+		listing(exchange, json, array, text);
+	}
+
+	/**
+	 * Utility for object requests
+	 */
+	private void object(HttpExchange exchange, String container, String name,
+			Map<String, String> query, byte[] body) throws IOException,
+			JSONException {
+		String method = exchange.getRequestMethod();
+		Headers in = exchange.getRequestHeaders();
+		if (method.equals("PUT")) {
+			putObject(exchange, container, name, query, body);
+			return;
+		}
+		byte[] data;
+		StoredObject o;
+		JSONObject report = null;
+		JSONArray manifest = null;
+		synchronized (containers) {
+			StoredContainer c = containers.get(container);
+			o = c == null ? null : c.objects.get(name);
+			if (o == null) {
+				empty(exchange, 404);
+				return;
+			}
+			boolean slo = o.segments != null;
+			String multipart = query.get("multipart-manifest");
+			if (method.equals("DELETE")) {
+				if (protectedPaths.contains(container + "/" + name)) {
+					empty(exchange, 403);
+					return;
+				}
+				c.objects.remove(name);
+				if (!slo || !"delete".equals(multipart)) {
+					empty(exchange, 204);
+					return;
+				}
+				int deleted = 1;
+				int notFound = 0;
+				for (String path : o.segments) {
+					String p = path.substring(1);
+					int slash = p.indexOf('/');
+					StoredContainer sc = containers.get(p.substring(0, slash));
+					if (sc != null && sc.objects.remove(p.substring(slash + 1))
+							!= null)
+						deleted++;
+					else
+						notFound++;
+				}
+				report = new JSONObject();
+				report.put("Number Deleted", deleted);
+				report.put("Number Not Found", notFound);
+				report.put("Response Body", "");
+				report.put("Response Status", "200 OK");
+				report.put("Errors", new JSONArray());
+			} else if (slo && "get".equals(multipart)) {
+				manifest = new JSONArray();
+				for (String path : o.segments) {
+					StoredObject segment = resolve(path);
+					JSONObject entry = new JSONObject();
+					entry.put("name", path);
+					entry.put("hash", segment == null ? "" : segment.etag);
+					entry.put("bytes", segment == null ? 0
+							: segment.data.length);
+					manifest.put(entry);
+				}
+			}
+			if (method.equals("POST")) {
+				Map<String, String> meta = new TreeMap<String, String>(
+						String.CASE_INSENSITIVE_ORDER);
+				meta(in, X_OBJECT_META, meta);
+				String type = in.getFirst("Content-Type");
+				// like swift, these are replaced with what the POST sends
+				c.objects.put(name, new StoredObject(o.data, o.etag,
+						type != null ? type : o.contentType, in
+								.getFirst("Content-Encoding"), meta, in
+								.getFirst("X-Object-Manifest"), o.segments));
+				empty(exchange, 202);
+				return;
+			}
+			data = join(o);
+		}
+		if (report != null) {
+			body(exchange, 200, report.toString().getBytes("UTF-8"),
+					"application/json; charset=utf-8");
+			return;
+		}
+		if (manifest != null && method.equals("GET")) {
+			body(exchange, 200, manifest.toString().getBytes("UTF-8"),
+					"application/json; charset=utf-8");
+			return;
+		}
+		if (!method.equals("GET") && !method.equals("HEAD")) {
+			empty(exchange, 405);
+			return;
+		}
+
+		Headers out = exchange.getResponseHeaders();
+		out.add("Accept-Ranges", "bytes");
+		out.add("Last-Modified", httpDate(o.lastModified));
+		out.add("ETag", "\"" + o.etag + "\"");
+		if (o.manifest != null)
+			out.add("X-Object-Manifest", o.manifest);
+		if (o.segments != null)
+			out.add("X-Static-Large-Object", "True");
+		for (Map.Entry<String, String> m : o.meta.entrySet())
+			out.add(X_OBJECT_META + m.getKey(), m.getValue());
+
+		int from = 0;
+		int to = data.length;
+		int status = 200;
+		String range = in.getFirst("Range");
+		if (range != null && range.startsWith("bytes=")
+				&& range.indexOf(',') < 0) {
+			String spec = range.substring(6).trim();
+			int dash = spec.indexOf('-');
+			try {
+				if (dash == 0) {
+					from = Math.max(0, data.length
+							- Integer.parseInt(spec.substring(1)));
+				} else {
+					from = Integer.parseInt(spec.substring(0, dash));
+					if (dash < spec.length() - 1)
+						to = Math.min(data.length, Integer.parseInt(spec
+								.substring(dash + 1)) + 1);
+				}
+			} catch (NumberFormatException e) {
+				from = 0;
+				to = data.length;
+			}
+			if (from >= data.length || from >= to) {
+				out.add("Content-Range", "bytes */" + data.length);
+				empty(exchange, 416);
+				return;
+			}
+			status = 206;
+			out.add("Content-Range", "bytes " + from + "-" + (to - 1) + "/"
+					+ data.length);
+		}
+		out.add("Content-Type", o.contentType);
+		if (o.contentEncoding != null)
+			out.add("Content-Encoding", o.contentEncoding);
+		if (method.equals("HEAD")) {
+			out.add("Content-Length", String.valueOf(to - from));
+			exchange.sendResponseHeaders(status, -1);
+			return;
+		}
+		exchange.sendResponseHeaders(status, to - from);
+		write(exchange.getResponseBody(), data, from, to - from);
+	}
+
+	/**
+	 * Utility for storing an object, a copy or a large object manifest
+	 */
+	private void putObject(HttpExchange exchange, String container,
+			String name, Map<String, String> query, byte[] body)
+			throws IOException, JSONException {
+		Headers in = exchange.getRequestHeaders();
+		Map<String, String> meta = new TreeMap<String, String>(
+				String.CASE_INSENSITIVE_ORDER);
+		String type = in.getFirst("Content-Type");
+		if (type == null)
+			type = "application/octet-stream";
+		synchronized (containers) {
+			StoredContainer c = containers.get(container);
+			if (c == null) {
+				empty(exchange, 404);
+				return;
+			}
+			StoredObject o;
+			String copyFrom = in.getFirst("X-Copy-From");
+			if (copyFrom != null) {
+				String source = copyFrom.startsWith("/") ? copyFrom
+						.substring(1) : copyFrom;
+				int slash = source.indexOf('/');
+				StoredContainer sc = slash < 0 ? null : containers
+						.get(decode(source.substring(0, slash)));
+				StoredObject so = sc == null ? null : sc.objects
+						.get(decode(source.substring(slash + 1)));
+				if (so == null) {
+					empty(exchange, 404);
+					return;
+				}
+				meta.putAll(so.meta);
+				meta(in, X_OBJECT_META, meta);
+				o = new StoredObject(so.data, so.etag, so.contentType,
+						so.contentEncoding, meta, so.manifest, so.segments);
+			} else if ("put".equals(query.get("multipart-manifest"))) {
+				List<String> segments = new ArrayList<String>();
+				StringBuilder etags = new StringBuilder();
+				JSONArray manifest = new JSONArray(new String(body, "UTF-8"));
+				for (int i = 0; i < manifest.length(); i++) {
+					JSONObject segment = manifest.getJSONObject(i);
+					String path = segment.getString("path");
+					StoredObject so = resolve(path);
+					String etag = segment.optString("etag", null);
+					long size = segment.optLong("size_bytes", -1);
+					if (so == null || (etag != null && !so.etag
+							.equalsIgnoreCase(etag))
+							|| (size >= 0 && so.data.length != size)) {
+						empty(exchange, 400);
+						return;
+					}
+					segments.add(path);
+					etags.append(so.etag);
+				}
+				meta(in, X_OBJECT_META, meta);
+				o = new StoredObject(new byte[0], md5(etags.toString()
+						.getBytes("UTF-8")), type, null, meta, null, segments);
+			} else {
+				String etag = md5(body);
+				String expected = in.getFirst("ETag");
+				if (expected != null
+						&& !etag.equalsIgnoreCase(expected.replace("\"", ""))) {
+					empty(exchange, 422);
+					return;
+				}
+				meta(in, X_OBJECT_META, meta);
+				o = new StoredObject(body, etag, type, in
+						.getFirst("Content-Encoding"), meta, in
+						.getFirst("X-Object-Manifest"), null);
+			}
+			c.objects.put(name, o);
+			exchange.getResponseHeaders().add("ETag", "\"" + o.etag + "\"");
+		}
+		empty(exchange, 201);
+	}
+
+	/**
+	 * Utility for CDN management requests on a container or object
+	 */
+	private void cdn(HttpExchange exchange, String path) throws IOException {
+		String method = exchange.getRequestMethod();
+		Headers in = exchange.getRequestHeaders();
+		int slash = path.indexOf('/', 1);
+		String container = decode(slash < 0 ? path.substring(1) : path
+				.substring(1, slash));
+		synchronized (containers) {
+			StoredContainer c = containers.get(container);
+			if (c == null) {
+				empty(exchange, 404);
+				return;
+			}
+			if (method.equals("DELETE")) {
+				purges.incrementAndGet();
+				empty(exchange, 204);
+				return;
+			}
+			String ttl = in.getFirst("X-TTL");
+			if (ttl != null)
+				c.cdnTtl = Integer.parseInt(ttl.trim());
+			if (method.equals("PUT")) {
+				c.cdnEnabled = true;
+				empty(exchange, 201);
+			} else if (method.equals("POST")) {
+				String enabled = in.getFirst("X-CDN-Enabled");
+				if (enabled != null)
+					c.cdnEnabled = Boolean.parseBoolean(enabled.trim());
+				empty(exchange, 202);
+			} else if (method.equals("HEAD")) {
+				Headers out = exchange.getResponseHeaders();
+				out.add("X-CDN-Enabled", String.valueOf(c.cdnEnabled));
+				out.add("X-TTL", String.valueOf(c.cdnTtl));
+				out.add("X-CDN-URI", "http://cdn.example.com/" + container);
+				empty(exchange, 204);
+			} else {
+				empty(exchange, 405);
+			}
+		}
+	}
+
+	/**
+	 * Utility for finding the object behind a "/container/object" path
+	 */
+	private StoredObject resolve(String path) {
+		String p = path.startsWith("/") ? path.substring(1) : path;
+		int slash = p.indexOf('/');
+		if (slash < 0)
+			return null;
+		StoredContainer c = containers.get(p.substring(0, slash));
+		return c == null ? null : c.objects.get(p.substring(slash + 1));
+	}
+
+	/**
+	 * Utility for the contents of an object, joining the segments of a
+	 * large object; callers hold the lock on containers
+	 */
+	private byte[] join(StoredObject o) {
+		if (o.manifest == null && o.segments == null)
+			return o.data;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		if (o.segments != null) {
+			for (String path : o.segments) {
+				StoredObject segment = resolve(path);
+				if (segment != null)
+					out.write(segment.data, 0, segment.data.length);
+			}
+			return out.toByteArray();
+		}
+		String manifest = o.manifest;
+		int slash = manifest.indexOf('/');
+		StoredContainer c = containers.get(decode(slash < 0 ? manifest
+				: manifest.substring(0, slash)));
+		String prefix = slash < 0 ? "" : decode(manifest.substring(slash + 1));
+		if (c != null) {
+			for (Map.Entry<String, StoredObject> e : c.objects.tailMap(prefix)
+					.entrySet()) {
+				if (!e.getKey().startsWith(prefix))
+					break;
+				out.write(e.getValue().data, 0, e.getValue().data.length);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Utility for the names of one page of a sorted listing
+	 */
+	private static List<String> page(SortedMap<String, ?> map,
+			Map<String, String> query) {
+		String prefix = query.get("prefix");
+		String marker = query.get("marker");
+		int limit = limit(query);
+		List<String> names = new ArrayList<String>();
+		for (String name : (marker == null ? map : map.tailMap(marker + "\0"))
+				.keySet()) {
+			if (names.size() >= limit)
+				break;
+			if (prefix == null || name.startsWith(prefix))
+				names.add(name);
+		}
+		return names;
+	}
+
+	/**
+	 * Utility for the page size asked for, capped like Swift does
+	 */
+	private static int limit(Map<String, String> query) {
+		String limit = query.get("limit");
+		try {
+			return limit == null ? DEFAULT_LIMIT : Math.min(DEFAULT_LIMIT,
+					Integer.parseInt(limit));
+		} catch (NumberFormatException e) {
+			return DEFAULT_LIMIT;
+		}
+	}
+
+	/**
+	 * Utility for sending a listing, an empty plain listing is a 204
+	 */
+	private void listing(HttpExchange exchange, boolean json, JSONArray array,
+			StringBuilder text) throws IOException {
+		if (json)
+			body(exchange, 200, array.toString().getBytes("UTF-8"),
+					"application/json; charset=utf-8");
+		else if (text.length() == 0)
+			empty(exchange, 204);
+		else
+			body(exchange, 200, text.toString().getBytes("UTF-8"),
+					"text/plain; charset=utf-8");
+	}
+
+	/**
+	 * Utility for copying request headers with a prefix into a metadata map
+	 */
+	private static void meta(Headers in, String prefix,
+			Map<String, String> meta) {
+		for (Map.Entry<String, List<String>> h : in.entrySet()) {
+			if (h.getKey() != null
+					&& h.getKey().regionMatches(true, 0, prefix, 0,
+							prefix.length()) && !h.getValue().isEmpty())
+				meta.put(h.getKey().substring(prefix.length()), h.getValue()
+						.get(0));
+		}
+	}
+
+	/**
+	 * Utility for sending a response without a body
+	 */
+	private static void empty(HttpExchange exchange, int status)
+			throws IOException {
+		if (status == 204)
+			exchange.getResponseHeaders().add("Content-Length", "0");
+		exchange.sendResponseHeaders(status, -1);
+	}
+
+	/**
+	 * Utility for sending a response with a body
+	 */
+	private void body(HttpExchange exchange, int status, byte[] data,
+			String contentType) throws IOException {
+		exchange.getResponseHeaders().add("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, data.length);
+		write(exchange.getResponseBody(), data, 0, data.length);
+	}
+
+	/**
+	 * Utility for writing a response body within the bandwidth cap
+	 */
+	private void write(OutputStream out, byte[] data, int offset, int length)
+			throws IOException {
+		long started = System.nanoTime();
+		for (int done = 0; done < length;) {
+			int n = Math.min(CHUNK_SIZE, length - done);
+			out.write(data, offset + done, n);
+			done += n;
+			pace(started, done);
+		}
+	}
+
+	/**
+	 * Utility for reading a request body within the bandwidth cap
+	 */
+	private byte[] read(InputStream in) throws IOException {
+		long started = System.nanoTime();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[CHUNK_SIZE];
+		for (int n; (n = in.read(buffer)) >= 0;) {
+			out.write(buffer, 0, n);
+			pace(started, out.size());
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Utility for sleeping until a transfer is back under the bandwidth cap
+	 */
+	private void pace(long started, long bytes) throws IOException {
+		long cap = bandwidth;
+		if (cap <= 0)
+			return;
+		long due = started + bytes * 1000000000L / cap;
+		long wait = due - System.nanoTime();
+		if (wait <= 0)
+			return;
+		try {
+			Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted");
+		}
+	}
+
+	/**
+	 * Utility for splitting a raw query string into decoded parameters
+	 */
+	private static Map<String, String> query(String raw) {
+		Map<String, String> query = new HashMap<String, String>();
+		if (raw == null)
+			return query;
+		for (String pair : raw.split("&")) {
+			int eq = pair.indexOf('=');
+			if (eq < 0)
+				query.put(decode(pair), "");
+			else
+				query.put(decode(pair.substring(0, eq)), decode(pair
+						.substring(eq + 1)));
+		}
+		return query;
+	}
+
+	/**
+	 * Utility for decoding one percent encoded path or query part
+	 */
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value.replace("+", "%2B"), "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Utility for the hex MD5 of some bytes
+	 */
+	private static String md5(byte[] data) {
+		try {
+			return new String(Hex.encodeHex(MessageDigest.getInstance("MD5")
+					.digest(data)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Utility for the date format of Last-Modified
+	 */
+	private static String httpDate(long time) {
+		SimpleDateFormat format = new SimpleDateFormat(
+				"EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(new Date(time));
+	}
+
+	/**
+	 * Utility for the date format of JSON listings
+	 */
+	private static String listingDate(long time) {
+		SimpleDateFormat format = new SimpleDateFormat(
+				"yyyy-MM-dd'T'HH:mm:ss.SSS'000'", Locale.US);
+		format.setTimeZone(TimeZone.getTimeZone("GMT"));
+		return format.format(new Date(time));
+	}
+
+	/**
+	 * one container and its objects, guarded by the lock on containers
+	 */
+	private static final class StoredContainer {
+		final SortedMap<String, StoredObject> objects = new TreeMap<String, StoredObject>();
+		final Map<String, String> meta = new TreeMap<String, String>(
+				String.CASE_INSENSITIVE_ORDER);
+		boolean cdnEnabled;
+		int cdnTtl = 259200;
+
+		long bytes() {
+			long bytes = 0;
+			for (StoredObject o : objects.values())
+				bytes += o.data.length;
+			return bytes;
+		}
+	}
+
+	/**
+	 * one immutable stored object, large objects keep their manifest and
+	 * are joined when read
+	 */
+	private static final class StoredObject {
+		final byte[] data;
+		final String etag;
+		final String contentType;
+		final String contentEncoding;
+		final Map<String, String> meta;
+		final String manifest;
+		final List<String> segments;
+		final long lastModified = System.currentTimeMillis();
+
+		StoredObject(byte[] data, String etag, String contentType,
+				String contentEncoding, Map<String, String> meta,
+				String manifest, List<String> segments) {
+			this.data = data;
+			this.etag = etag;
+			this.contentType = contentType;
+			this.contentEncoding = contentEncoding;
+			this.meta = meta;
+			this.manifest = manifest;
+			this.segments = segments;
+		}
+	}
+
+}